@@ -0,0 +1,34 @@
+-- Tables as Hibernate created them before migrations existed. Databases from
+-- that time are baselined at version 0, so every script here runs on them too
+-- and has to be a no-op for anything that is already in place.
+
+CREATE TABLE IF NOT EXISTS users (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    username VARCHAR(255) NOT NULL,
+    email VARCHAR(255) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    full_name VARCHAR(255),
+    created_at DATETIME(6),
+    updated_at DATETIME(6),
+    role ENUM('USER', 'ADMIN'),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_users_username UNIQUE (username),
+    CONSTRAINT uk_users_email UNIQUE (email)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS expenses (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    user_id BIGINT NOT NULL,
+    title VARCHAR(255) NOT NULL,
+    description TEXT,
+    amount DECIMAL(10, 2) NOT NULL,
+    category ENUM('FOOD', 'TRANSPORTATION', 'UTILITIES', 'ENTERTAINMENT', 'HEALTHCARE', 'SHOPPING',
+                  'EDUCATION', 'TRAVEL', 'HOUSING', 'INSURANCE', 'SAVINGS', 'OTHER') NOT NULL,
+    expense_date DATE NOT NULL,
+    payment_method ENUM('CASH', 'CREDIT_CARD', 'DEBIT_CARD', 'BANK_TRANSFER', 'DIGITAL_WALLET', 'OTHER') NOT NULL,
+    vendor VARCHAR(255),
+    created_at DATETIME(6),
+    updated_at DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT fk_expenses_user FOREIGN KEY (user_id) REFERENCES users (id)
+) ENGINE = InnoDB;
@@ -0,0 +1,24 @@
+-- Composite indexes backing GET /api/expenses/search. Every query is scoped to
+-- one user, so user_id leads; the range/sort column comes last.
+--
+-- Guarded because databases created by Hibernate may already have them.
+
+SET @ddl = (SELECT IF(
+    NOT EXISTS (SELECT 1 FROM information_schema.statistics
+                WHERE table_schema = DATABASE() AND table_name = 'expenses'
+                  AND index_name = 'idx_expenses_user_date'),
+    'CREATE INDEX idx_expenses_user_date ON expenses (user_id, expense_date)',
+    'DO 0'));
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl = (SELECT IF(
+    NOT EXISTS (SELECT 1 FROM information_schema.statistics
+                WHERE table_schema = DATABASE() AND table_name = 'expenses'
+                  AND index_name = 'idx_expenses_user_category_date'),
+    'CREATE INDEX idx_expenses_user_category_date ON expenses (user_id, category, expense_date)',
+    'DO 0'));
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
@@ -0,0 +1,19 @@
+-- Per-expense currency and per-user base currency; existing rows are INR.
+
+SET @ddl = (SELECT IF(
+    NOT EXISTS (SELECT 1 FROM information_schema.columns
+                WHERE table_schema = DATABASE() AND table_name = 'expenses' AND column_name = 'currency'),
+    'ALTER TABLE expenses ADD COLUMN currency VARCHAR(3) NOT NULL DEFAULT ''INR''',
+    'DO 0'));
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl = (SELECT IF(
+    NOT EXISTS (SELECT 1 FROM information_schema.columns
+                WHERE table_schema = DATABASE() AND table_name = 'users' AND column_name = 'base_currency'),
+    'ALTER TABLE users ADD COLUMN base_currency VARCHAR(3) NOT NULL DEFAULT ''INR''',
+    'DO 0'));
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
@@ -0,0 +1,16 @@
+-- Receipt attachments. The file lives in the blob store under its sha256; rows
+-- with the same hash share it.
+
+CREATE TABLE IF NOT EXISTS receipts (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    user_id BIGINT NOT NULL,
+    expense_id BIGINT NOT NULL,
+    sha256 VARCHAR(64) NOT NULL,
+    content_type VARCHAR(255) NOT NULL,
+    file_name VARCHAR(255),
+    size BIGINT NOT NULL,
+    created_at DATETIME(6),
+    PRIMARY KEY (id),
+    INDEX idx_receipts_expense (expense_id),
+    INDEX idx_receipts_sha256 (sha256)
+) ENGINE = InnoDB;
@@ -0,0 +1,39 @@
+-- Delta sync: a per-user change version on every expense, tombstones for
+-- deletes, and each user's last issued version and tombstone floor.
+
+SET @ddl = (SELECT IF(
+    NOT EXISTS (SELECT 1 FROM information_schema.columns
+                WHERE table_schema = DATABASE() AND table_name = 'expenses' AND column_name = 'sync_version'),
+    'ALTER TABLE expenses ADD COLUMN sync_version BIGINT NOT NULL DEFAULT 0',
+    'DO 0'));
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl = (SELECT IF(
+    NOT EXISTS (SELECT 1 FROM information_schema.statistics
+                WHERE table_schema = DATABASE() AND table_name = 'expenses'
+                  AND index_name = 'idx_expenses_user_sync_version'),
+    'CREATE INDEX idx_expenses_user_sync_version ON expenses (user_id, sync_version)',
+    'DO 0'));
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+CREATE TABLE IF NOT EXISTS expense_tombstones (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    user_id BIGINT NOT NULL,
+    expense_id BIGINT NOT NULL,
+    sync_version BIGINT NOT NULL,
+    deleted_at DATETIME(6),
+    PRIMARY KEY (id),
+    INDEX idx_tombstones_user_version (user_id, sync_version),
+    INDEX idx_tombstones_deleted_at (deleted_at)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS expense_sync_state (
+    user_id BIGINT NOT NULL,
+    last_version BIGINT NOT NULL,
+    tombstone_floor BIGINT NOT NULL,
+    PRIMARY KEY (user_id)
+) ENGINE = InnoDB;
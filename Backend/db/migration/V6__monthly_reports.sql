@@ -0,0 +1,26 @@
+-- Precomputed closed-month analysis reports and the nightly job's per-partition
+-- progress.
+
+CREATE TABLE IF NOT EXISTS monthly_reports (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    user_id BIGINT NOT NULL,
+    report_month VARCHAR(7) NOT NULL,
+    currency VARCHAR(3),
+    rate_version VARCHAR(255),
+    report_json LONGTEXT,
+    computed_at DATETIME(6),
+    invalidated_at DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_monthly_reports_user_month UNIQUE (user_id, report_month)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS report_job_checkpoints (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    run_date DATE NOT NULL,
+    partition_index INTEGER NOT NULL,
+    partitions INTEGER NOT NULL,
+    last_user_id BIGINT NOT NULL,
+    completed BIT NOT NULL,
+    updated_at DATETIME(6),
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
@@ -0,0 +1,10 @@
+-- User to shard directory. Only used on the directory shard, but created on
+-- every shard so they all share one schema.
+
+CREATE TABLE IF NOT EXISTS shard_assignments (
+    user_id BIGINT NOT NULL,
+    shard INTEGER NOT NULL,
+    status ENUM('ACTIVE', 'MOVING') NOT NULL,
+    updated_at DATETIME(6),
+    PRIMARY KEY (user_id)
+) ENGINE = InnoDB;
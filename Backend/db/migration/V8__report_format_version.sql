@@ -0,0 +1,12 @@
+-- Shape of the stored analysis, so reports written before a format change are
+-- recomputed. Existing rows stay NULL and count as stale.
+
+SET @ddl = (SELECT IF(
+    NOT EXISTS (SELECT 1 FROM information_schema.columns
+                WHERE table_schema = DATABASE() AND table_name = 'monthly_reports'
+                  AND column_name = 'format_version'),
+    'ALTER TABLE monthly_reports ADD COLUMN format_version INTEGER',
+    'DO 0'));
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
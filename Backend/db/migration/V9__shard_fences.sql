@@ -0,0 +1,10 @@
+-- Per-user write fence on each shard. Writers hold a shared lock on the user's
+-- row for the length of their transaction; a move sets fenced on the source,
+-- which waits for those writers and turns away every later one.
+
+CREATE TABLE IF NOT EXISTS shard_fences (
+    user_id BIGINT NOT NULL,
+    fenced BIT NOT NULL,
+    updated_at DATETIME(6),
+    PRIMARY KEY (user_id)
+) ENGINE = InnoDB;
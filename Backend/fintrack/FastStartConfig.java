@@ -0,0 +1,39 @@
+package com.fintrack;
+
+import com.fintrack.repository.ShardSchemaInitializer;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.ReflectionUtils;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The fast-start profile turns on lazy bean initialization (see
+ * application-fast-start.properties), so the OpenAI integration, receipt storage
+ * and most controllers are built on first use instead of at boot. Beans that must
+ * exist before the first request stay eager: anything with @Scheduled methods,
+ * which would otherwise never be registered, and the shard schema setup.
+ */
+@Configuration
+@Profile("fast-start")
+public class FastStartConfig {
+    
+    @Bean
+    static LazyInitializationExcludeFilter eagerBackgroundBeans() {
+        return (beanName, definition, beanType) ->
+            beanType != null
+                && (ShardSchemaInitializer.class.isAssignableFrom(beanType) || hasScheduledMethods(beanType));
+    }
+    
+    private static boolean hasScheduledMethods(Class<?> beanType) {
+        AtomicBoolean found = new AtomicBoolean();
+        ReflectionUtils.doWithMethods(beanType,
+            method -> found.set(true),
+            method -> !found.get() && AnnotatedElementUtils.hasAnnotation(method, Scheduled.class));
+        return found.get();
+    }
+}
@@ -2,11 +2,19 @@ package com.fintrack;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.Map;
 
 @SpringBootApplication
+@EnableScheduling
 public class FinTrackApplication {
     
     public static void main(String[] args) {
-        SpringApplication.run(FinTrackApplication.class, args);
+        SpringApplication application = new SpringApplication(FinTrackApplication.class);
+        // Shard routing binds a connection per transaction; an EntityManager held
+        // open for the whole request would pin the first shard it touched.
+        application.setDefaultProperties(Map.of("spring.jpa.open-in-view", "false"));
+        application.run(args);
     }
 }
@@ -0,0 +1,116 @@
+package com.fintrack.controller;
+
+import com.fintrack.model.User;
+import com.fintrack.repository.ExpenseRepository;
+import com.fintrack.repository.ShardRouter;
+import com.fintrack.repository.UserRepository;
+import com.fintrack.service.PlatformAnalyticsService;
+import com.fintrack.service.ShardRebalanceService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+@RestController
+@RequestMapping("/api/admin")
+@CrossOrigin(origins = "*")
+public class AdminController {
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Autowired
+    private ShardRebalanceService shardRebalanceService;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private ExpenseRepository expenseRepository;
+    
+    @Autowired
+    private PlatformAnalyticsService platformAnalyticsService;
+    
+    // Row counts per shard, gathered in parallel. Shard 0's user count includes
+    // every user, since it is also the login directory.
+    @GetMapping("/shards")
+    public ResponseEntity<List<Map<String, Object>>> getShards() {
+        List<Map<String, Object>> shards = shardRouter.scatter(shard -> Map.of(
+            "shard", shard,
+            "users", userRepository.count(),
+            "expenses", expenseRepository.count()));
+        return ResponseEntity.ok(shards);
+    }
+    
+    /**
+     * Platform-wide spend report as a server-sent event stream: "progress"
+     * events with completed and total ranges (at most one per percent), then
+     * one "result" or "error" event. Closing the stream stops the scan.
+     */
+    @GetMapping(value = "/analytics", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter getAnalytics(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+                                   @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+                                   @AuthenticationPrincipal User user) {
+        SseEmitter emitter = new SseEmitter(0L);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        emitter.onCompletion(() -> cancelled.set(true));
+        emitter.onTimeout(() -> cancelled.set(true));
+        emitter.onError(e -> cancelled.set(true));
+        
+        AtomicInteger lastPercent = new AtomicInteger(-1);
+        BiConsumer<Integer, Integer> progress = (completed, total) -> {
+            int percent = total == 0 ? 100 : completed * 100 / total;
+            int last = lastPercent.get();
+            if (percent > last && lastPercent.compareAndSet(last, percent)) {
+                send(emitter, "progress", Map.of("completed", completed, "total", total), cancelled);
+            }
+        };
+        
+        try {
+            platformAnalyticsService.analyze(user, startDate, endDate, progress, cancelled)
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        Throwable cause = error.getCause() != null ? error.getCause() : error;
+                        send(emitter, "error", Map.of("error", String.valueOf(cause.getMessage())), cancelled);
+                    } else {
+                        send(emitter, "result", result, cancelled);
+                    }
+                    emitter.complete();
+                });
+        } catch (RuntimeException e) {
+            send(emitter, "error", Map.of("error", e.getMessage()), cancelled);
+            emitter.complete();
+        }
+        return emitter;
+    }
+    
+    private void send(SseEmitter emitter, String name, Object data, AtomicBoolean cancelled) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            // The client went away; stop scanning for it.
+            cancelled.set(true);
+        }
+    }
+    
+    @PostMapping("/shards/move")
+    public ResponseEntity<?> moveUser(@RequestParam Long userId, @RequestParam int targetShard) {
+        try {
+            int rows = shardRebalanceService.moveUser(userId, targetShard);
+            return ResponseEntity.ok(Map.of("userId", userId, "shard", targetShard, "rowsMoved", rows));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package com.fintrack.controller;
 
 import com.fintrack.model.User;
-import com.fintrack.service.AIAnalysisService;
+import com.fintrack.service.MonthlyReportService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
@@ -17,14 +17,14 @@ import java.util.Map;
 public class AnalysisController {
     
     @Autowired
-    private AIAnalysisService aiAnalysisService;
+    private MonthlyReportService monthlyReportService;
     
     @GetMapping
     public ResponseEntity<Map<String, Object>> getExpenseAnalysis(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
             @AuthenticationPrincipal User user) {
-        Map<String, Object> analysis = aiAnalysisService.generateExpenseAnalysis(user, startDate, endDate);
+        Map<String, Object> analysis = monthlyReportService.getAnalysis(user, startDate, endDate);
         return ResponseEntity.ok(analysis);
     }
 }
@@ -3,12 +3,18 @@ package com.fintrack.controller;
 import com.fintrack.dto.AuthResponse;
 import com.fintrack.dto.LoginRequest;
 import com.fintrack.dto.RegisterRequest;
+import com.fintrack.security.ServiceOverloadedException;
 import com.fintrack.service.AuthService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 @RestController
 @RequestMapping("/api/auth")
 @CrossOrigin(origins = "*")
@@ -18,23 +24,39 @@ public class AuthController {
     private AuthService authService;
     
     @PostMapping("/register")
-    public ResponseEntity<?> register(@Valid @RequestBody RegisterRequest request) {
-        try {
-            AuthResponse response = authService.register(request);
-            return ResponseEntity.ok(response);
-        } catch (RuntimeException e) {
-            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
-        }
+    public CompletableFuture<ResponseEntity<?>> register(@Valid @RequestBody RegisterRequest request) {
+        return authService.registerAsync(request)
+            .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+            .exceptionally(e -> {
+                Throwable cause = unwrap(e);
+                if (cause instanceof ServiceOverloadedException) {
+                    return overloaded((ServiceOverloadedException) cause);
+                }
+                return ResponseEntity.badRequest().body(Map.of("error", cause.getMessage()));
+            });
     }
     
     @PostMapping("/login")
-    public ResponseEntity<?> login(@Valid @RequestBody LoginRequest request) {
-        try {
-            AuthResponse response = authService.login(request);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(Map.of("error", "Invalid credentials"));
-        }
+    public CompletableFuture<ResponseEntity<?>> login(@Valid @RequestBody LoginRequest request) {
+        return authService.loginAsync(request)
+            .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+            .exceptionally(e -> {
+                Throwable cause = unwrap(e);
+                if (cause instanceof ServiceOverloadedException) {
+                    return overloaded((ServiceOverloadedException) cause);
+                }
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid credentials"));
+            });
+    }
+    
+    private ResponseEntity<?> overloaded(ServiceOverloadedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+            .body(Map.of("error", e.getMessage()));
+    }
+    
+    private Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
     }
     
     private static class Map {
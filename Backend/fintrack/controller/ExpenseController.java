@@ -1,20 +1,44 @@
 package com.fintrack.controller;
 
+import com.fintrack.dto.ExpenseFields;
+import com.fintrack.dto.ExpenseImportRequest;
+import com.fintrack.dto.ExpenseImportResponse;
 import com.fintrack.dto.ExpenseRequest;
 import com.fintrack.dto.ExpenseResponse;
+import com.fintrack.dto.ExpenseSearchRequest;
+import com.fintrack.dto.ExpenseSyncResponse;
 import com.fintrack.model.Expense;
 import com.fintrack.model.User;
+import com.fintrack.repository.UserMovingException;
+import com.fintrack.service.CategorySuggestionService;
+import com.fintrack.service.DuplicateDetectionService;
+import com.fintrack.service.DuplicateExpenseException;
+import com.fintrack.service.ExpenseAutocompleteService;
+import com.fintrack.service.ExpenseEventBroadcaster;
+import com.fintrack.service.ExpenseJournal;
 import com.fintrack.service.ExpenseService;
+import com.fintrack.service.ExpenseSyncService;
+import com.fintrack.service.JournalEntry;
+import com.fintrack.service.SpendForecastService;
+import com.fintrack.service.SpendingDistributionService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.stream.Collectors;
 
@@ -26,8 +50,33 @@ public class ExpenseController {
     @Autowired
     private ExpenseService expenseService;
     
+    @Autowired
+    private ExpenseEventBroadcaster expenseEventBroadcaster;
+    
+    @Autowired
+    private ExpenseSyncService expenseSyncService;
+    
+    @Autowired
+    private ExpenseAutocompleteService expenseAutocompleteService;
+    
+    @Autowired
+    private CategorySuggestionService categorySuggestionService;
+    
+    @Autowired
+    private SpendingDistributionService spendingDistributionService;
+    
+    @Autowired
+    private SpendForecastService spendForecastService;
+    
+    @Autowired
+    private ExpenseJournal expenseJournal;
+    
     @GetMapping
-    public ResponseEntity<List<ExpenseResponse>> getAllExpenses(@AuthenticationPrincipal User user) {
+    public ResponseEntity<?> getAllExpenses(@RequestParam(required = false) String fields,
+                                            @AuthenticationPrincipal User user) {
+        if (fields != null) {
+            return searchExpenses(new ExpenseSearchRequest(), fields, user);
+        }
         List<Expense> expenses = expenseService.getAllExpenses(user);
         List<ExpenseResponse> responses = expenses.stream()
             .map(ExpenseResponse::fromExpense)
@@ -35,18 +84,95 @@ public class ExpenseController {
         return ResponseEntity.ok(responses);
     }
     
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@AuthenticationPrincipal User user) {
+        return expenseEventBroadcaster.subscribe(user);
+    }
+    
+    @GetMapping("/search")
+    public ResponseEntity<?> searchExpenses(@ModelAttribute ExpenseSearchRequest request,
+                                            @RequestParam(required = false) String fields,
+                                            @AuthenticationPrincipal User user) {
+        try {
+            if (fields != null) {
+                return ResponseEntity.ok(
+                    expenseService.searchExpenseFields(user, request, ExpenseFields.parse(fields)));
+            }
+            List<ExpenseResponse> responses = expenseService.searchExpenses(user, request).stream()
+                .map(ExpenseResponse::fromExpense)
+                .collect(Collectors.toList());
+            return ResponseEntity.ok(responses);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/autocomplete")
+    public ResponseEntity<?> autocomplete(@RequestParam String field,
+                                          @RequestParam(defaultValue = "") String prefix,
+                                          @RequestParam(required = false) Integer limit,
+                                          @AuthenticationPrincipal User user) {
+        ExpenseAutocompleteService.Field indexField;
+        try {
+            indexField = ExpenseAutocompleteService.Field.valueOf(field.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "field must be vendor or title"));
+        }
+        return ResponseEntity.ok(expenseAutocompleteService.suggest(user, indexField, prefix, limit));
+    }
+    
+    @GetMapping("/suggest-category")
+    public ResponseEntity<List<Expense.Category>> suggestCategory(
+            @RequestParam(required = false) String title,
+            @RequestParam(required = false) String vendor,
+            @RequestParam(required = false) Expense.PaymentMethod paymentMethod,
+            @RequestParam(required = false) BigDecimal amount,
+            @RequestParam(required = false) String currency,
+            @AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(categorySuggestionService.suggest(user, title, vendor, paymentMethod, amount, currency));
+    }
+    
+    @GetMapping("/sync")
+    public ResponseEntity<ExpenseSyncResponse> syncExpenses(@RequestParam(required = false) Long cursor,
+                                                            @RequestParam(required = false) Integer limit,
+                                                            @AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(expenseSyncService.getChanges(user, cursor, limit));
+    }
+    
     @GetMapping("/{id}")
-    public ResponseEntity<ExpenseResponse> getExpenseById(@PathVariable Long id, 
-                                                          @AuthenticationPrincipal User user) {
+    public ResponseEntity<?> getExpenseById(@PathVariable Long id,
+                                            @RequestParam(required = false) String fields,
+                                            @AuthenticationPrincipal User user) {
+        if (fields != null) {
+            try {
+                return ResponseEntity.ok(expenseService.getExpenseFields(id, user, ExpenseFields.parse(fields)));
+            } catch (RuntimeException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            }
+        }
         Expense expense = expenseService.getExpenseById(id, user);
         return ResponseEntity.ok(ExpenseResponse.fromExpense(expense));
     }
     
     @PostMapping
-    public ResponseEntity<ExpenseResponse> createExpense(@Valid @RequestBody ExpenseRequest request,
-                                                         @AuthenticationPrincipal User user) {
-        Expense expense = expenseService.createExpense(request, user);
-        return ResponseEntity.ok(ExpenseResponse.fromExpense(expense));
+    public ResponseEntity<?> createExpense(@Valid @RequestBody ExpenseRequest request,
+                                           @RequestParam(required = false) DuplicateDetectionService.Policy onDuplicate,
+                                           @AuthenticationPrincipal User user) {
+        try {
+            Expense expense = expenseService.createExpense(request, user, onDuplicate);
+            return ResponseEntity.ok(ExpenseResponse.fromExpense(expense));
+        } catch (DuplicateExpenseException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", e.getMessage(), "duplicates", e.getDuplicateIds()));
+        }
+    }
+    
+    @PostMapping("/import")
+    public ResponseEntity<ExpenseImportResponse> importExpenses(
+            @Valid @RequestBody ExpenseImportRequest request,
+            @RequestParam(required = false) DuplicateDetectionService.Policy onDuplicate,
+            @AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(expenseService.importExpenses(request.getExpenses(), user, onDuplicate));
     }
     
     @PutMapping("/{id}")
@@ -101,12 +227,56 @@ public class ExpenseController {
         return ResponseEntity.ok(Map.of("total", total));
     }
     
+    // Audit trail of this user's changes from the expense journal, oldest first.
+    @GetMapping("/history")
+    public ResponseEntity<List<Map<String, Object>>> getHistory(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @AuthenticationPrincipal User user) {
+        ZoneId zone = ZoneId.systemDefault();
+        List<JournalEntry> entries = expenseJournal.getHistory(user,
+            startDate.atStartOfDay(zone).toInstant().toEpochMilli(),
+            endDate.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli() - 1);
+        List<Map<String, Object>> history = entries.stream().map(entry -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("sequence", entry.getSequence());
+            item.put("timestamp", Instant.ofEpochMilli(entry.getTimestamp()));
+            item.put("type", entry.getType());
+            item.put("expense", ExpenseResponse.fromExpense(entry.getExpense()));
+            if (entry.getPrevious() != null) {
+                item.put("previous", ExpenseResponse.fromExpense(entry.getPrevious()));
+            }
+            return item;
+        }).collect(Collectors.toList());
+        return ResponseEntity.ok(history);
+    }
+    
+    @GetMapping("/forecast")
+    public ResponseEntity<Map<String, Object>> getForecast(@AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(spendForecastService.getForecast(user));
+    }
+    
+    @GetMapping("/distribution")
+    public ResponseEntity<Map<String, Object>> getDistribution(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(spendingDistributionService.getDistribution(user, startDate, endDate));
+    }
+    
     @GetMapping("/category-summary")
-    public ResponseEntity<Map<String, BigDecimal>> getCategoryWiseExpenses(
+    public ResponseEntity<Map<String, Object>> getCategoryWiseExpenses(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
             @AuthenticationPrincipal User user) {
-        Map<String, BigDecimal> categoryExpenses = expenseService.getCategoryWiseExpenses(user, startDate, endDate);
-        return ResponseEntity.ok(categoryExpenses);
+        return ResponseEntity.ok(spendingDistributionService.getCategorySummary(user, startDate, endDate));
+    }
+    
+    // A write that reached the user's old shard during or after a move.
+    @ExceptionHandler(UserMovingException.class)
+    public ResponseEntity<Map<String, String>> userMoving(UserMovingException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+            .body(Map.of("error", e.getMessage()));
     }
 }
@@ -0,0 +1,161 @@
+package com.fintrack.controller;
+
+import com.fintrack.dto.ReceiptResponse;
+import com.fintrack.model.Receipt;
+import com.fintrack.model.User;
+import com.fintrack.repository.UserMovingException;
+import com.fintrack.service.ReceiptService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/expenses/{expenseId}/receipts")
+@CrossOrigin(origins = "*")
+public class ReceiptController {
+    
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    
+    @Autowired
+    private ReceiptService receiptService;
+    
+    @GetMapping
+    public ResponseEntity<List<ReceiptResponse>> getReceipts(@PathVariable Long expenseId,
+                                                             @AuthenticationPrincipal User user) {
+        List<ReceiptResponse> responses = receiptService.getReceipts(expenseId, user).stream()
+            .map(ReceiptResponse::fromReceipt)
+            .collect(Collectors.toList());
+        return ResponseEntity.ok(responses);
+    }
+    
+    // The body is the raw file (Content-Type: image/* or application/pdf), not multipart,
+    // so it can be streamed straight from the socket to the blob store.
+    @PostMapping
+    public ResponseEntity<?> uploadReceipt(@PathVariable Long expenseId,
+                                           @RequestParam(required = false) String fileName,
+                                           HttpServletRequest request,
+                                           @AuthenticationPrincipal User user) throws IOException {
+        try {
+            String contentType = null;
+            if (request.getContentType() != null) {
+                MediaType mediaType = MediaType.parseMediaType(request.getContentType());
+                contentType = mediaType.getType() + "/" + mediaType.getSubtype();
+            }
+            Receipt receipt = receiptService.addReceipt(expenseId, contentType, fileName,
+                request.getInputStream(), user);
+            return ResponseEntity.ok(ReceiptResponse.fromReceipt(receipt));
+        } catch (UserMovingException e) {
+            return userMoving(e);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/{receiptId}")
+    public void downloadReceipt(@PathVariable Long expenseId,
+                                @PathVariable Long receiptId,
+                                @AuthenticationPrincipal User user,
+                                HttpServletRequest request,
+                                HttpServletResponse response) throws IOException {
+        Receipt receipt = receiptService.getReceipt(expenseId, receiptId, user);
+        Path file = receiptService.getReceiptFile(receipt);
+        long length = receipt.getSize();
+        String etag = "\"" + receipt.getSha256() + "\"";
+        
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=31536000, immutable");
+        if (etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+        
+        long start = 0;
+        long end = length - 1;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+                // Multi-range requests are answered with the whole file, which RFC 9110 allows.
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(length);
+                    end = ranges.get(0).getRangeEnd(length);
+                    response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+                }
+            } catch (IllegalArgumentException e) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return;
+            }
+        }
+        
+        response.setContentType(receipt.getContentType());
+        response.setContentLengthLong(end - start + 1);
+        if (receipt.getFileName() != null) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.inline()
+                .filename(receipt.getFileName(), StandardCharsets.UTF_8).build().toString());
+        }
+        
+        // Let Tomcat's NIO connector send the file with sendfile (FileChannel.transferTo
+        // to the socket) after this method returns; no bytes pass through the heap.
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = end - start + 1;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+    
+    @DeleteMapping("/{receiptId}")
+    public ResponseEntity<?> deleteReceipt(@PathVariable Long expenseId,
+                                           @PathVariable Long receiptId,
+                                           @AuthenticationPrincipal User user) {
+        receiptService.deleteReceipt(expenseId, receiptId, user);
+        return ResponseEntity.ok().body(Map.of("message", "Receipt deleted successfully"));
+    }
+    
+    // A write that reached the user's old shard during or after a move.
+    @ExceptionHandler(UserMovingException.class)
+    public ResponseEntity<Map<String, String>> userMoving(UserMovingException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+            .body(Map.of("error", e.getMessage()));
+    }
+}
@@ -14,12 +14,15 @@ public class AuthResponse {
     private String username;
     private String email;
     private String fullName;
+    private String baseCurrency;
     
-    public AuthResponse(String token, Long id, String username, String email, String fullName) {
+    public AuthResponse(String token, Long id, String username, String email, String fullName,
+                        String baseCurrency) {
         this.token = token;
         this.id = id;
         this.username = username;
         this.email = email;
         this.fullName = fullName;
+        this.baseCurrency = baseCurrency;
     }
 }
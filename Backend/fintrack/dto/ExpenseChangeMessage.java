@@ -0,0 +1,31 @@
+package com.fintrack.dto;
+
+import com.fintrack.service.ExpenseChangeEvent;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpenseChangeMessage {
+    private ExpenseChangeEvent.Type type;
+    private Long expenseId;
+    private ExpenseResponse expense;
+    private List<CategoryDelta> deltas;
+    private Map<String, BigDecimal> monthTotals;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CategoryDelta {
+        private String month;
+        private String category;
+        private BigDecimal amount;
+        private int count;
+    }
+}
@@ -0,0 +1,74 @@
+package com.fintrack.dto;
+
+import com.fintrack.model.Expense;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The fields a client can pick with {@code fields=} on the expense list, detail
+ * and search endpoints, named as in {@link ExpenseResponse}. The id is always
+ * included. Every field except {@code archived} is a column, so a selection can
+ * be pushed down into the query.
+ */
+public final class ExpenseFields {
+    
+    public static final String ARCHIVED = "archived";
+    
+    private static final Map<String, Function<Expense, Object>> ACCESSORS = new LinkedHashMap<>();
+    
+    static {
+        ACCESSORS.put("id", Expense::getId);
+        ACCESSORS.put("title", Expense::getTitle);
+        ACCESSORS.put("description", Expense::getDescription);
+        ACCESSORS.put("amount", Expense::getAmount);
+        ACCESSORS.put("currency", Expense::getCurrency);
+        ACCESSORS.put("category", Expense::getCategory);
+        ACCESSORS.put("expenseDate", Expense::getExpenseDate);
+        ACCESSORS.put("paymentMethod", Expense::getPaymentMethod);
+        ACCESSORS.put("vendor", Expense::getVendor);
+        ACCESSORS.put("createdAt", Expense::getCreatedAt);
+        ACCESSORS.put("updatedAt", Expense::getUpdatedAt);
+        ACCESSORS.put(ARCHIVED, Expense::isArchived);
+    }
+    
+    private ExpenseFields() {
+    }
+    
+    // Comma-separated names, returned in response order with the id first.
+    public static Set<String> parse(String fields) {
+        Set<String> requested = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!ACCESSORS.containsKey(name)) {
+                throw new RuntimeException("Unknown field: " + name);
+            }
+            requested.add(name);
+        }
+        Set<String> selected = new LinkedHashSet<>();
+        ACCESSORS.keySet().stream()
+            .filter(name -> name.equals("id") || requested.contains(name))
+            .forEach(selected::add);
+        return selected;
+    }
+    
+    public static Set<String> columns(Set<String> fields) {
+        Set<String> columns = new LinkedHashSet<>(fields);
+        columns.remove(ARCHIVED);
+        return columns;
+    }
+    
+    public static Map<String, Object> project(Expense expense, Set<String> fields) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (String field : fields) {
+            row.put(field, ACCESSORS.get(field).apply(expense));
+        }
+        return row;
+    }
+}
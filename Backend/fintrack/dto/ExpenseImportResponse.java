@@ -0,0 +1,25 @@
+package com.fintrack.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpenseImportResponse {
+    private List<ExpenseResponse> created = new ArrayList<>();
+    private List<SkippedRow> skipped = new ArrayList<>();
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class SkippedRow {
+        private int index;
+        private String reason;
+        private List<Long> duplicates;
+    }
+}
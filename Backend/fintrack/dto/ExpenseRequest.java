@@ -4,6 +4,7 @@ import com.fintrack.model.Expense;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -25,6 +26,9 @@ public class ExpenseRequest {
     @DecimalMin(value = "0.01", message = "Amount must be greater than 0")
     private BigDecimal amount;
     
+    @Pattern(regexp = "[A-Z]{3}", message = "Currency must be a 3-letter ISO code")
+    private String currency;
+    
     @NotNull(message = "Category is required")
     private Expense.Category category;
     
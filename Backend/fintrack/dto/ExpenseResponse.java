@@ -1,5 +1,6 @@
 package com.fintrack.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fintrack.model.Expense;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -8,6 +9,7 @@ import lombok.NoArgsConstructor;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @NoArgsConstructor
@@ -17,12 +19,20 @@ public class ExpenseResponse {
     private String title;
     private String description;
     private BigDecimal amount;
+    private String currency;
     private Expense.Category category;
     private LocalDate expenseDate;
     private Expense.PaymentMethod paymentMethod;
     private String vendor;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    private boolean archived;
+    
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean possibleDuplicate;
+    
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<Long> possibleDuplicates;
     
     public static ExpenseResponse fromExpense(Expense expense) {
         return new ExpenseResponse(
@@ -30,12 +40,16 @@ public class ExpenseResponse {
             expense.getTitle(),
             expense.getDescription(),
             expense.getAmount(),
+            expense.getCurrency(),
             expense.getCategory(),
             expense.getExpenseDate(),
             expense.getPaymentMethod(),
             expense.getVendor(),
             expense.getCreatedAt(),
-            expense.getUpdatedAt()
+            expense.getUpdatedAt(),
+            expense.isArchived(),
+            expense.isPossibleDuplicate(),
+            expense.getPossibleDuplicates()
         );
     }
 }
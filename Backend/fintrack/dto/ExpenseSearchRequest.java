@@ -0,0 +1,40 @@
+package com.fintrack.dto;
+
+import com.fintrack.model.Expense;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+// Bound from query parameters; every field is optional. List parameters are
+// comma separated, e.g. categories=FOOD,TRAVEL.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpenseSearchRequest {
+    
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate startDate;
+    
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate endDate;
+    
+    private List<Expense.Category> categories;
+    
+    private List<Expense.PaymentMethod> paymentMethods;
+    
+    // Prefix match
+    private String vendor;
+    
+    // In each expense's own currency
+    private BigDecimal minAmount;
+    
+    private BigDecimal maxAmount;
+    
+    // field,direction; field is one of expenseDate, amount, title, createdAt
+    private String sort = "expenseDate,desc";
+}
@@ -0,0 +1,19 @@
+package com.fintrack.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpenseSyncResponse {
+    private long cursor;
+    // true when this is a full snapshot and the client should replace its local copy
+    private boolean reset;
+    private boolean hasMore;
+    private List<ExpenseResponse> changed;
+    private List<Long> deleted;
+}
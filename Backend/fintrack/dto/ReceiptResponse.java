@@ -0,0 +1,33 @@
+package com.fintrack.dto;
+
+import com.fintrack.model.Receipt;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceiptResponse {
+    private Long id;
+    private Long expenseId;
+    private String fileName;
+    private String contentType;
+    private Long size;
+    private String sha256;
+    private LocalDateTime createdAt;
+    
+    public static ReceiptResponse fromReceipt(Receipt receipt) {
+        return new ReceiptResponse(
+            receipt.getId(),
+            receipt.getExpenseId(),
+            receipt.getFileName(),
+            receipt.getContentType(),
+            receipt.getSize(),
+            receipt.getSha256(),
+            receipt.getCreatedAt()
+        );
+    }
+}
@@ -2,6 +2,7 @@ package com.fintrack.dto;
 
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -25,4 +26,7 @@ public class RegisterRequest {
     private String password;
     
     private String fullName;
+    
+    @Pattern(regexp = "[A-Z]{3}", message = "Currency must be a 3-letter ISO code")
+    private String baseCurrency;
 }
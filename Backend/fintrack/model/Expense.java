@@ -8,9 +8,14 @@ import lombok.NoArgsConstructor;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Entity
-@Table(name = "expenses")
+@Table(name = "expenses", indexes = {
+    @Index(name = "idx_expenses_user_date", columnList = "user_id, expense_date"),
+    @Index(name = "idx_expenses_user_category_date", columnList = "user_id, category, expense_date"),
+    @Index(name = "idx_expenses_user_sync_version", columnList = "user_id, sync_version")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -33,6 +38,9 @@ public class Expense {
     @Column(nullable = false, precision = 10, scale = 2)
     private BigDecimal amount;
     
+    @Column(nullable = false, length = 3, columnDefinition = "varchar(3) not null default 'INR'")
+    private String currency;
+    
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private Category category;
@@ -52,6 +60,22 @@ public class Expense {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
+    // Per-user change version, assigned on every write; see ExpenseSyncService.
+    @Column(name = "sync_version", columnDefinition = "bigint not null default 0")
+    private Long syncVersion = 0L;
+    
+    @Transient
+    private boolean archived;
+    
+    // Set when it was created under the FLAG duplicate policy: whether it may
+    // duplicate another expense, and the ids of those that already existed. A
+    // match that was itself still being created has no id yet.
+    @Transient
+    private boolean possibleDuplicate;
+    
+    @Transient
+    private List<Long> possibleDuplicates;
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -0,0 +1,27 @@
+package com.fintrack.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Per-user change counter. Every write takes the next version under this row's
+// lock, so versions commit in the order they were handed out.
+@Entity
+@Table(name = "expense_sync_state")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpenseSyncState {
+    
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+    
+    @Column(name = "last_version", nullable = false)
+    private long lastVersion;
+    
+    // Cursors below this point may have missed a compacted tombstone.
+    @Column(name = "tombstone_floor", nullable = false)
+    private long tombstoneFloor;
+}
@@ -0,0 +1,40 @@
+package com.fintrack.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "expense_tombstones", indexes = {
+    @Index(name = "idx_tombstones_user_version", columnList = "user_id, sync_version"),
+    @Index(name = "idx_tombstones_deleted_at", columnList = "deleted_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpenseTombstone {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    @Column(name = "expense_id", nullable = false)
+    private Long expenseId;
+    
+    @Column(name = "sync_version", nullable = false)
+    private Long syncVersion;
+    
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        deletedAt = LocalDateTime.now();
+    }
+}
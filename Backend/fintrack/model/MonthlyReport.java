@@ -0,0 +1,53 @@
+package com.fintrack.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
+
+import java.time.LocalDateTime;
+
+// Precomputed analysis for one user's closed month. Dynamic updates so storing a
+// report never overwrites an invalidation written concurrently.
+@Entity
+@Table(name = "monthly_reports", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_monthly_reports_user_month", columnNames = {"user_id", "report_month"})
+})
+@DynamicUpdate
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MonthlyReport {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    // yyyy-MM
+    @Column(name = "report_month", nullable = false, length = 7)
+    private String month;
+    
+    @Column(length = 3)
+    private String currency;
+    
+    @Column(name = "rate_version")
+    private String rateVersion;
+    
+    // MonthlyReportService.FORMAT_VERSION when the report was stored.
+    @Column(name = "format_version")
+    private Integer formatVersion;
+    
+    @Column(name = "report_json", columnDefinition = "LONGTEXT")
+    private String reportJson;
+    
+    // Set to when the computation started, not when it finished.
+    @Column(name = "computed_at", columnDefinition = "datetime(6)")
+    private LocalDateTime computedAt;
+    
+    @Column(name = "invalidated_at", columnDefinition = "datetime(6)")
+    private LocalDateTime invalidatedAt;
+}
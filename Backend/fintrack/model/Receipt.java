@@ -0,0 +1,51 @@
+package com.fintrack.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "receipts", indexes = {
+    @Index(name = "idx_receipts_expense", columnList = "expense_id"),
+    @Index(name = "idx_receipts_sha256", columnList = "sha256")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Receipt {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    // Plain columns rather than associations: receipts outlive their expense row
+    // when it is moved to the archive tier.
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    @Column(name = "expense_id", nullable = false)
+    private Long expenseId;
+    
+    @Column(nullable = false, length = 64)
+    private String sha256;
+    
+    @Column(name = "content_type", nullable = false)
+    private String contentType;
+    
+    @Column(name = "file_name")
+    private String fileName;
+    
+    @Column(nullable = false)
+    private Long size;
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,47 @@
+package com.fintrack.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Progress of one partition of a monthly report run: users are split by id
+// modulo `partitions` and each partition walks its users in id order.
+@Entity
+@Table(name = "report_job_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReportJobCheckpoint {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "run_date", nullable = false)
+    private LocalDate runDate;
+    
+    @Column(name = "partition_index", nullable = false)
+    private int partitionIndex;
+    
+    @Column(nullable = false)
+    private int partitions;
+    
+    @Column(name = "last_user_id", nullable = false)
+    private long lastUserId;
+    
+    @Column(nullable = false)
+    private boolean completed;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,43 @@
+package com.fintrack.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Lives on the directory shard only. Users without a row predate sharding and
+// are on shard 0.
+@Entity
+@Table(name = "shard_assignments")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShardAssignment {
+    
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+    
+    @Column(nullable = false)
+    private int shard;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+    
+    public enum Status {
+        ACTIVE,
+        MOVING
+    }
+}
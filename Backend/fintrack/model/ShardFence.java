@@ -0,0 +1,28 @@
+package com.fintrack.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// One per user on each shard that has held the user's data. Fenced while the
+// user is being moved off this shard and for good once they have left it.
+@Entity
+@Table(name = "shard_fences")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShardFence {
+    
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+    
+    @Column(nullable = false)
+    private boolean fenced;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
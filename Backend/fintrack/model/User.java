@@ -41,6 +41,9 @@ public class User implements UserDetails {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
+    @Column(name = "base_currency", length = 3, columnDefinition = "varchar(3) not null default 'INR'")
+    private String baseCurrency = "INR";
+    
     @Enumerated(EnumType.STRING)
     private Role role = Role.USER;
     
@@ -2,17 +2,23 @@ package com.fintrack.repository;
 
 import com.fintrack.model.Expense;
 import com.fintrack.model.User;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface ExpenseRepository extends JpaRepository<Expense, Long> {
+public interface ExpenseRepository extends JpaRepository<Expense, Long>, JpaSpecificationExecutor<Expense>,
+                                           ExpenseRepositoryCustom {
     List<Expense> findByUserOrderByExpenseDateDesc(User user);
     
     List<Expense> findByUserAndExpenseDateBetweenOrderByExpenseDateDesc(
@@ -21,20 +27,94 @@ public interface ExpenseRepository extends JpaRepository<Expense, Long> {
     List<Expense> findByUserAndCategoryOrderByExpenseDateDesc(
         User user, Expense.Category category);
     
-    @Query("SELECT SUM(e.amount) FROM Expense e WHERE e.user = :user")
-    BigDecimal getTotalExpensesByUser(@Param("user") User user);
+    @Query("SELECT e.currency, SUM(e.amount) FROM Expense e WHERE e.user = :user GROUP BY e.currency")
+    List<Object[]> getTotalExpensesByUser(@Param("user") User user);
     
-    @Query("SELECT SUM(e.amount) FROM Expense e WHERE e.user = :user " +
-           "AND e.expenseDate BETWEEN :startDate AND :endDate")
-    BigDecimal getTotalExpensesByUserAndDateRange(
+    @Query("SELECT e.currency, SUM(e.amount) FROM Expense e WHERE e.user = :user " +
+           "AND e.expenseDate BETWEEN :startDate AND :endDate GROUP BY e.currency")
+    List<Object[]> getTotalExpensesByUserAndDateRange(
         @Param("user") User user,
         @Param("startDate") LocalDate startDate,
         @Param("endDate") LocalDate endDate);
     
-    @Query("SELECT e.category, SUM(e.amount) FROM Expense e WHERE e.user = :user " +
-           "AND e.expenseDate BETWEEN :startDate AND :endDate GROUP BY e.category")
+    @Query("SELECT e.category, e.currency, SUM(e.amount) FROM Expense e WHERE e.user = :user " +
+           "AND e.expenseDate BETWEEN :startDate AND :endDate GROUP BY e.category, e.currency")
     List<Object[]> getCategoryWiseExpenses(
         @Param("user") User user,
         @Param("startDate") LocalDate startDate,
         @Param("endDate") LocalDate endDate);
+    
+    List<Expense> findByUserAndExpenseDateBefore(User user, LocalDate cutoff);
+    
+    @Query("SELECT e.id FROM Expense e WHERE e.user = :user AND e.expenseDate < :cutoff")
+    List<Long> findIdsByUserAndExpenseDateBefore(@Param("user") User user, @Param("cutoff") LocalDate cutoff);
+    
+    @Query("SELECT e.id FROM Expense e WHERE e.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+    
+    @Modifying
+    @Query("DELETE FROM Expense e WHERE e.id = :id AND e.syncVersion = :syncVersion")
+    int deleteIfUnchanged(@Param("id") Long id, @Param("syncVersion") Long syncVersion);
+    
+    List<Expense> findByUserAndSyncVersionGreaterThanOrderBySyncVersionAsc(
+        User user, Long syncVersion, Pageable pageable);
+    
+    @Query("SELECT e.vendor, COUNT(e), MAX(e.updatedAt) FROM Expense e WHERE e.user = :user " +
+           "AND e.vendor IS NOT NULL GROUP BY e.vendor")
+    List<Object[]> getVendorUsage(@Param("user") User user);
+    
+    @Query("SELECT e.title, COUNT(e), MAX(e.updatedAt) FROM Expense e WHERE e.user = :user GROUP BY e.title")
+    List<Object[]> getTitleUsage(@Param("user") User user);
+    
+    @Query("SELECT e.expenseDate, e.category, e.currency, SUM(e.amount) FROM Expense e WHERE e.user = :user " +
+           "AND e.expenseDate >= :from GROUP BY e.expenseDate, e.category, e.currency")
+    List<Object[]> getDailyTotalsSince(@Param("user") User user, @Param("from") LocalDate from);
+    
+    @Query("SELECT e.id, e.amount, e.currency, e.expenseDate, e.vendor, e.title FROM Expense e WHERE e.user = :user")
+    List<Object[]> getDuplicateFingerprints(@Param("user") User user);
+    
+    @Query(value = "SELECT DISTINCT DATE_FORMAT(expense_date, '%Y-%m') FROM expenses " +
+                   "WHERE user_id = :userId AND expense_date < :before", nativeQuery = true)
+    List<String> findExpenseMonthsBefore(@Param("userId") Long userId, @Param("before") LocalDate before);
+    
+    @Query("SELECT DISTINCT e.user FROM Expense e WHERE e.expenseDate < :cutoff")
+    List<User> findUsersWithExpensesBefore(@Param("cutoff") LocalDate cutoff);
+    
+    // Platform-wide scans over one user id range at a time; see PlatformAnalyticsService.
+    @Query("SELECT MIN(e.user.id), MAX(e.user.id) FROM Expense e")
+    List<Object[]> getUserIdBounds();
+    
+    @QueryHints(@QueryHint(name = "jakarta.persistence.query.timeout", value = "60000"))
+    @Query(value = "SELECT DATE_FORMAT(expense_date, '%Y-%m') AS month, category, currency, SUM(amount), COUNT(*) " +
+                   "FROM expenses WHERE user_id BETWEEN :fromUserId AND :toUserId " +
+                   "AND expense_date BETWEEN :startDate AND :endDate GROUP BY month, category, currency",
+           nativeQuery = true)
+    List<Object[]> getPlatformMonthlyTotals(@Param("fromUserId") long fromUserId,
+                                            @Param("toUserId") long toUserId,
+                                            @Param("startDate") LocalDate startDate,
+                                            @Param("endDate") LocalDate endDate);
+    
+    // The rollup row (month NULL) counts users active at any point in the range.
+    @QueryHints(@QueryHint(name = "jakarta.persistence.query.timeout", value = "60000"))
+    @Query(value = "SELECT DATE_FORMAT(expense_date, '%Y-%m') AS month, COUNT(DISTINCT user_id) " +
+                   "FROM expenses WHERE user_id BETWEEN :fromUserId AND :toUserId " +
+                   "AND expense_date BETWEEN :startDate AND :endDate GROUP BY month WITH ROLLUP",
+           nativeQuery = true)
+    List<Object[]> getPlatformActiveUsers(@Param("fromUserId") long fromUserId,
+                                          @Param("toUserId") long toUserId,
+                                          @Param("startDate") LocalDate startDate,
+                                          @Param("endDate") LocalDate endDate);
+    
+    // Amounts grouped into QuantileSketch buckets in the database, so only
+    // bucket counts are returned rather than every row.
+    @QueryHints(@QueryHint(name = "jakarta.persistence.query.timeout", value = "60000"))
+    @Query(value = "SELECT currency, CEIL(LN(amount) / :logGamma) AS bucket, COUNT(*) " +
+                   "FROM expenses WHERE user_id BETWEEN :fromUserId AND :toUserId " +
+                   "AND expense_date BETWEEN :startDate AND :endDate AND amount > 0 GROUP BY currency, bucket",
+           nativeQuery = true)
+    List<Object[]> getPlatformAmountBuckets(@Param("fromUserId") long fromUserId,
+                                            @Param("toUserId") long toUserId,
+                                            @Param("startDate") LocalDate startDate,
+                                            @Param("endDate") LocalDate endDate,
+                                            @Param("logGamma") double logGamma);
 }
@@ -0,0 +1,15 @@
+package com.fintrack.repository;
+
+import com.fintrack.model.Expense;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface ExpenseRepositoryCustom {
+    
+    // Selects only the named columns, one map per row keyed by attribute name.
+    List<Map<String, Object>> findColumns(Specification<Expense> spec, Sort sort, Set<String> columns);
+}
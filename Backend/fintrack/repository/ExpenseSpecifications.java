@@ -0,0 +1,59 @@
+package com.fintrack.repository;
+
+import com.fintrack.dto.ExpenseSearchRequest;
+import com.fintrack.model.Expense;
+import com.fintrack.model.User;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the WHERE clause for expense searches. The user and date predicates are
+ * always plain comparisons on the leading columns of idx_expenses_user_date /
+ * idx_expenses_user_category_date, so MySQL can range-scan instead of filtering
+ * the user's whole history.
+ */
+public final class ExpenseSpecifications {
+    
+    private ExpenseSpecifications() {
+    }
+    
+    public static Specification<Expense> matching(User user, ExpenseSearchRequest request) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            predicates.add(cb.equal(root.get("user"), user));
+            
+            if (request.getStartDate() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("expenseDate"), request.getStartDate()));
+            }
+            if (request.getEndDate() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("expenseDate"), request.getEndDate()));
+            }
+            if (request.getCategories() != null && !request.getCategories().isEmpty()) {
+                predicates.add(root.get("category").in(request.getCategories()));
+            }
+            if (request.getPaymentMethods() != null && !request.getPaymentMethods().isEmpty()) {
+                predicates.add(root.get("paymentMethod").in(request.getPaymentMethods()));
+            }
+            if (request.getVendor() != null && !request.getVendor().isBlank()) {
+                // Relies on the column's case-insensitive collation rather than lower(),
+                // which would hide the column from any index.
+                predicates.add(cb.like(root.get("vendor"), escapeLike(request.getVendor().trim()) + "%", '\\'));
+            }
+            if (request.getMinAmount() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("amount"), request.getMinAmount()));
+            }
+            if (request.getMaxAmount() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("amount"), request.getMaxAmount()));
+            }
+            
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+    
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,27 @@
+package com.fintrack.repository;
+
+import com.fintrack.model.ExpenseSyncState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ExpenseSyncStateRepository extends JpaRepository<ExpenseSyncState, Long> {
+    
+    // Creates the row on a user's first write; either way the row stays locked
+    // until the surrounding transaction commits.
+    @Modifying
+    @Query(value = "INSERT INTO expense_sync_state (user_id, last_version, tombstone_floor) VALUES (:userId, 1, 0) " +
+                   "ON DUPLICATE KEY UPDATE last_version = last_version + 1", nativeQuery = true)
+    void incrementVersion(@Param("userId") Long userId);
+    
+    @Query("SELECT s.lastVersion FROM ExpenseSyncState s WHERE s.userId = :userId")
+    Long getLastVersion(@Param("userId") Long userId);
+    
+    @Modifying
+    @Query("UPDATE ExpenseSyncState s SET s.tombstoneFloor = :floor " +
+           "WHERE s.userId = :userId AND s.tombstoneFloor < :floor")
+    int raiseTombstoneFloor(@Param("userId") Long userId, @Param("floor") long floor);
+}
@@ -0,0 +1,26 @@
+package com.fintrack.repository;
+
+import com.fintrack.model.ExpenseTombstone;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ExpenseTombstoneRepository extends JpaRepository<ExpenseTombstone, Long> {
+    List<ExpenseTombstone> findByUserIdAndSyncVersionGreaterThanOrderBySyncVersionAsc(
+        Long userId, Long syncVersion, Pageable pageable);
+    
+    @Query("SELECT t.userId, MAX(t.syncVersion) FROM ExpenseTombstone t " +
+           "WHERE t.deletedAt < :cutoff GROUP BY t.userId")
+    List<Object[]> findCompactionFloors(@Param("cutoff") LocalDateTime cutoff);
+    
+    @Modifying
+    @Query("DELETE FROM ExpenseTombstone t WHERE t.userId = :userId AND t.deletedAt < :cutoff")
+    int deleteOlderThan(@Param("userId") Long userId, @Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,25 @@
+package com.fintrack.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.flyway.FlywayConfigurationCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MigrationConfig {
+    
+    @Value("${fintrack.migrations.location:filesystem:db/migration}")
+    private String location;
+    
+    // The versioned scripts own the schema, starting from an empty database.
+    // Existing databases were created by Hibernate with no history table; baseline
+    // them at version 0 so every script still runs once (each one is written to
+    // skip what is already there).
+    @Bean
+    public FlywayConfigurationCustomizer flywayConfigurationCustomizer() {
+        return configuration -> configuration
+            .locations(location)
+            .baselineOnMigrate(true)
+            .baselineVersion("0");
+    }
+}
@@ -0,0 +1,26 @@
+package com.fintrack.repository;
+
+import com.fintrack.model.MonthlyReport;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface MonthlyReportRepository extends JpaRepository<MonthlyReport, Long> {
+    Optional<MonthlyReport> findByUserIdAndMonth(Long userId, String month);
+    
+    // Upsert, so a computation already in flight for a month with no row yet
+    // still lands as stale.
+    @Modifying
+    @Query(value = "INSERT INTO monthly_reports (user_id, report_month, invalidated_at) " +
+                   "VALUES (:userId, :month, :invalidatedAt) " +
+                   "ON DUPLICATE KEY UPDATE invalidated_at = VALUES(invalidated_at)", nativeQuery = true)
+    void invalidate(@Param("userId") Long userId,
+                    @Param("month") String month,
+                    @Param("invalidatedAt") LocalDateTime invalidatedAt);
+}
@@ -0,0 +1,14 @@
+package com.fintrack.repository;
+
+import com.fintrack.model.Receipt;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ReceiptRepository extends JpaRepository<Receipt, Long> {
+    List<Receipt> findByExpenseIdAndUserIdOrderByCreatedAtAsc(Long expenseId, Long userId);
+    
+    long countBySha256(String sha256);
+}
@@ -0,0 +1,22 @@
+package com.fintrack.repository;
+
+import com.fintrack.model.ReportJobCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface ReportJobCheckpointRepository extends JpaRepository<ReportJobCheckpoint, Long> {
+    List<ReportJobCheckpoint> findByCompletedFalseOrderByPartitionIndexAsc();
+    
+    boolean existsByCompletedFalse();
+    
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ReportJobCheckpoint c WHERE c.completed = true")
+    int deleteCompleted();
+}
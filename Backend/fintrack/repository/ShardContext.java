@@ -0,0 +1,29 @@
+package com.fintrack.repository;
+
+/**
+ * The shard the current thread's database work should go to. Null means the
+ * directory shard (0), which also holds every user row for login.
+ */
+public final class ShardContext {
+    
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+    
+    private ShardContext() {
+    }
+    
+    public static Integer current() {
+        return CURRENT.get();
+    }
+    
+    public static void set(Integer shard) {
+        if (shard == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(shard);
+        }
+    }
+    
+    public static void clear() {
+        CURRENT.remove();
+    }
+}
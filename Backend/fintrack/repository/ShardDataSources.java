@@ -0,0 +1,34 @@
+package com.fintrack.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+// The physical pools behind the routing data source, indexed by shard number.
+public class ShardDataSources implements DisposableBean {
+    
+    private final List<DataSource> dataSources;
+    
+    public ShardDataSources(List<DataSource> dataSources) {
+        this.dataSources = List.copyOf(dataSources);
+    }
+    
+    public DataSource get(int shard) {
+        return dataSources.get(shard);
+    }
+    
+    public int count() {
+        return dataSources.size();
+    }
+    
+    @Override
+    public void destroy() {
+        for (DataSource dataSource : dataSources) {
+            if (dataSource instanceof HikariDataSource hikari) {
+                hikari.close();
+            }
+        }
+    }
+}
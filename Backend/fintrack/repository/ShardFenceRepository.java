@@ -0,0 +1,22 @@
+package com.fintrack.repository;
+
+import com.fintrack.model.ShardFence;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ShardFenceRepository extends JpaRepository<ShardFence, Long> {
+    
+    // Null when the user has no fence row on this shard yet. The shared lock is
+    // held until the surrounding transaction ends.
+    @Query(value = "SELECT fenced FROM shard_fences WHERE user_id = :userId LOCK IN SHARE MODE", nativeQuery = true)
+    Boolean lockShared(@Param("userId") Long userId);
+    
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO shard_fences (user_id, fenced, updated_at) VALUES (:userId, 0, NOW(6))",
+           nativeQuery = true)
+    void createOpen(@Param("userId") Long userId);
+}
@@ -0,0 +1,229 @@
+package com.fintrack.repository;
+
+import com.fintrack.model.ShardAssignment;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Maps users to shards and runs work against a given shard.
+ *
+ * New users are placed on a consistent-hash ring (virtual nodes per shard), and
+ * the placement is recorded in shard_assignments on the directory shard. That
+ * record, not the ring, is authoritative afterwards, so adding a shard only
+ * changes where new users land; existing users move through the rebalancer.
+ *
+ * Assignments are cached for assignment-ttl-ms, so other instances see a move
+ * within that time. A stale entry can still route a write to a shard the user
+ * has left; {@link #lockForWrite} catches that inside the write's transaction.
+ *
+ * The directory is read and written with plain JDBC on shard 0's own pool, not
+ * through JPA: the routing data source picks a shard when a connection is first
+ * taken, so a lookup made after the caller has already touched another shard
+ * would otherwise run on that shard's connection and find no row there.
+ */
+@Component
+public class ShardRouter {
+    
+    public static final int DIRECTORY_SHARD = 0;
+    
+    private static final ShardAssignment UNASSIGNED = new ShardAssignment();
+    
+    @Value("${fintrack.shard.virtual-nodes:128}")
+    private int virtualNodes;
+    
+    @Value("${fintrack.shard.assignment-ttl-ms:2000}")
+    private long assignmentTtlMillis;
+    
+    @Autowired
+    private ShardDataSources shardDataSources;
+    
+    @Autowired
+    private ShardFenceRepository shardFenceRepository;
+    
+    private final NavigableMap<Long, Integer> ring = new TreeMap<>();
+    private final Map<Long, CachedAssignment> assignments = new ConcurrentHashMap<>();
+    private JdbcTemplate directory;
+    private ExecutorService scatterPool;
+    
+    @PostConstruct
+    public void init() {
+        directory = new JdbcTemplate(shardDataSources.get(DIRECTORY_SHARD));
+        for (int shard = 0; shard < shardCount(); shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                ring.put(hash(("shard-" + shard + "#" + node).getBytes(StandardCharsets.UTF_8)), shard);
+            }
+        }
+        scatterPool = Executors.newFixedThreadPool(shardCount(), runnable -> {
+            Thread thread = new Thread(runnable, "shard-scatter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        scatterPool.shutdownNow();
+    }
+    
+    public int shardCount() {
+        return shardDataSources.count();
+    }
+    
+    public boolean isSharded() {
+        return shardCount() > 1;
+    }
+    
+    public int placeNewUser(Long userId) {
+        Map.Entry<Long, Integer> entry = ring.ceilingEntry(mix(userId));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+    
+    public int shardFor(Long userId) {
+        ShardAssignment assignment = assignment(userId);
+        return assignment == UNASSIGNED ? DIRECTORY_SHARD : assignment.getShard();
+    }
+    
+    public boolean isMoving(Long userId) {
+        return assignment(userId).getStatus() == ShardAssignment.Status.MOVING;
+    }
+    
+    public void assign(Long userId, int shard, ShardAssignment.Status status) {
+        ShardAssignment assignment = new ShardAssignment(userId, shard, status, null);
+        directory.update("INSERT INTO shard_assignments (user_id, shard, status, updated_at) VALUES (?, ?, ?, NOW()) " +
+            "ON DUPLICATE KEY UPDATE shard = VALUES(shard), status = VALUES(status), updated_at = VALUES(updated_at)",
+            userId, shard, status.name());
+        assignments.put(userId, new CachedAssignment(assignment, System.nanoTime()));
+    }
+    
+    public void invalidate(Long userId) {
+        assignments.remove(userId);
+    }
+    
+    // Call inside a write's transaction, on the shard the write goes to, before
+    // it commits. Holds a shared lock on the user's fence row until then, so a
+    // move off this shard waits for the write; if the move got there first, the
+    // write fails with UserMovingException and its transaction rolls back.
+    public void lockForWrite(Long userId) {
+        if (!isSharded()) {
+            return;
+        }
+        Boolean fenced = shardFenceRepository.lockShared(userId);
+        if (fenced == null) {
+            shardFenceRepository.createOpen(userId);
+            fenced = shardFenceRepository.lockShared(userId);
+        }
+        if (Boolean.TRUE.equals(fenced)) {
+            invalidate(userId);
+            throw new UserMovingException(5);
+        }
+    }
+    
+    public <T> T callOn(int shard, Supplier<T> work) {
+        Integer previous = ShardContext.current();
+        ShardContext.set(shard);
+        try {
+            return work.get();
+        } finally {
+            ShardContext.set(previous);
+        }
+    }
+    
+    public void runOn(int shard, Runnable work) {
+        callOn(shard, () -> {
+            work.run();
+            return null;
+        });
+    }
+    
+    public <T> T callForUser(Long userId, Supplier<T> work) {
+        return callOn(shardFor(userId), work);
+    }
+    
+    public void runForUser(Long userId, Runnable work) {
+        runOn(shardFor(userId), work);
+    }
+    
+    // Scatter-gather: runs the work once per shard in parallel and returns the
+    // results in shard order.
+    public <T> List<T> scatter(IntFunction<T> work) {
+        List<Future<T>> futures = new ArrayList<>();
+        for (int shard = 0; shard < shardCount(); shard++) {
+            int target = shard;
+            futures.add(scatterPool.submit(() -> callOn(target, () -> work.apply(target))));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while querying shards", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtime
+                ? runtime
+                : new RuntimeException(e.getCause());
+        }
+        return results;
+    }
+    
+    private ShardAssignment assignment(Long userId) {
+        if (!isSharded()) {
+            return UNASSIGNED;
+        }
+        CachedAssignment cached = assignments.get(userId);
+        if (cached != null && System.nanoTime() - cached.loadedAt() < TimeUnit.MILLISECONDS.toNanos(assignmentTtlMillis)) {
+            return cached.assignment();
+        }
+        long loadedAt = System.nanoTime();
+        List<ShardAssignment> stored = directory.query("SELECT shard, status FROM shard_assignments WHERE user_id = ?",
+            (row, index) -> new ShardAssignment(userId, row.getInt("shard"),
+                ShardAssignment.Status.valueOf(row.getString("status")), null),
+            userId);
+        ShardAssignment assignment = stored.isEmpty() ? UNASSIGNED : stored.get(0);
+        // A concurrent assign() or newer load wins over this one.
+        assignments.merge(userId, new CachedAssignment(assignment, loadedAt),
+            (current, loaded) -> current.loadedAt() - loaded.loadedAt() > 0 ? current : loaded);
+        return assignment;
+    }
+    
+    private record CachedAssignment(ShardAssignment assignment, long loadedAt) {
+    }
+    
+    // SplitMix64 finalizer, so sequential ids spread evenly around the ring.
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+    
+    // FNV-1a over the bytes, then mixed.
+    private static long hash(byte[] bytes) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+}
@@ -0,0 +1,13 @@
+package com.fintrack.repository;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+// The key is read when a connection is acquired, i.e. at transaction start, so
+// the shard must be chosen before any transactional call.
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current();
+    }
+}
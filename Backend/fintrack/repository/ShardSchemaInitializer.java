@@ -0,0 +1,83 @@
+package com.fintrack.repository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Flyway only sees the routing data source's default target, so the other
+ * shards get their tables here: once shard 0 is migrated, any table missing on
+ * a shard is created from shard 0's SHOW CREATE TABLE, and the versioned
+ * migrations are applied to each shard.
+ * The copied DDL carries shard 0's AUTO_INCREMENT counter, so ids on a new shard
+ * start above every id issued before sharding was switched on.
+ */
+@Component
+public class ShardSchemaInitializer {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ShardSchemaInitializer.class);
+    
+    @Value("${fintrack.migrations.location:filesystem:db/migration}")
+    private String migrationsLocation;
+    
+    @Autowired
+    private ShardDataSources shardDataSources;
+    
+    // Injected only to order this after the migrations on shard 0.
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @PostConstruct
+    public void init() throws SQLException {
+        if (shardDataSources.count() < 2) {
+            return;
+        }
+        JdbcTemplate directory = new JdbcTemplate(shardDataSources.get(ShardRouter.DIRECTORY_SHARD));
+        List<String> tables = directory.queryForList(
+            "SELECT table_name FROM information_schema.tables WHERE table_schema = DATABASE() " +
+            "AND table_type = 'BASE TABLE' AND table_name <> 'flyway_schema_history'", String.class);
+        
+        for (int shard = 1; shard < shardDataSources.count(); shard++) {
+            DataSource target = shardDataSources.get(shard);
+            Set<String> existing = new HashSet<>(new JdbcTemplate(target).queryForList(
+                "SELECT table_name FROM information_schema.tables WHERE table_schema = DATABASE()", String.class));
+            
+            try (Connection connection = target.getConnection(); Statement statement = connection.createStatement()) {
+                // Tables are created in name order; foreign keys to tables not created yet are fine
+                // with checks off for this session.
+                statement.execute("SET FOREIGN_KEY_CHECKS = 0");
+                for (String table : tables) {
+                    if (existing.contains(table)) {
+                        continue;
+                    }
+                    String ddl = directory.queryForMap("SHOW CREATE TABLE `" + table + "`").get("Create Table").toString();
+                    statement.execute(ddl);
+                    logger.info("Created table {} on shard {}", table, shard);
+                }
+                statement.execute("SET FOREIGN_KEY_CHECKS = 1");
+            }
+            
+            Flyway.configure()
+                .dataSource(target)
+                .locations(migrationsLocation)
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.fintrack.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shard 0 is the regular spring.datasource; extra shards are listed in
+ * fintrack.shard.urls. With no extra shards everything behaves as before.
+ *
+ * With several shards each one hands out auto-increment ids from its own
+ * residue class (offset = shard + 1, increment = id-stride), so ids stay unique
+ * across shards and a user's rows can be moved without renumbering.
+ */
+@Configuration
+public class ShardingConfig {
+    
+    @Value("${fintrack.shard.urls:}")
+    private String shardUrls;
+    
+    @Value("${fintrack.shard.username:${spring.datasource.username:}}")
+    private String username;
+    
+    @Value("${fintrack.shard.password:${spring.datasource.password:}}")
+    private String password;
+    
+    @Value("${fintrack.shard.pool-size:10}")
+    private int poolSize;
+    
+    @Value("${fintrack.shard.id-stride:16}")
+    private int idStride;
+    
+    @Bean
+    public ShardDataSources shardDataSources(DataSourceProperties properties) {
+        List<String> urls = new ArrayList<>();
+        for (String url : shardUrls.split(",")) {
+            if (!url.isBlank()) {
+                urls.add(url.trim());
+            }
+        }
+        if (urls.size() + 1 > idStride) {
+            throw new IllegalStateException("fintrack.shard.id-stride must be at least the number of shards");
+        }
+        boolean sharded = !urls.isEmpty();
+        
+        List<DataSource> dataSources = new ArrayList<>();
+        HikariDataSource directory = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        if (sharded) {
+            directory.setConnectionInitSql(idSequenceSql(0));
+        }
+        dataSources.add(directory);
+        
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource shard = new HikariDataSource();
+            shard.setJdbcUrl(urls.get(i));
+            shard.setUsername(username);
+            shard.setPassword(password);
+            shard.setDriverClassName(properties.determineDriverClassName());
+            shard.setMaximumPoolSize(poolSize);
+            shard.setPoolName("shard-" + (i + 1));
+            shard.setConnectionInitSql(idSequenceSql(i + 1));
+            dataSources.add(shard);
+        }
+        return new ShardDataSources(dataSources);
+    }
+    
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardDataSources shards) {
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.count(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        ShardRoutingDataSource routing = new ShardRoutingDataSource();
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(shards.get(0));
+        routing.afterPropertiesSet();
+        return routing;
+    }
+    
+    private String idSequenceSql(int shard) {
+        return "SET SESSION auto_increment_increment = " + idStride + ", auto_increment_offset = " + (shard + 1);
+    }
+}
@@ -0,0 +1,16 @@
+package com.fintrack.repository;
+
+// A write reached a shard the user is being moved off, or has already left.
+public class UserMovingException extends RuntimeException {
+    
+    private final int retryAfterSeconds;
+    
+    public UserMovingException(int retryAfterSeconds) {
+        super("Your data is being moved, please retry shortly");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -1,9 +1,13 @@
 package com.fintrack.repository;
 
 import com.fintrack.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,4 +16,10 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     Boolean existsByUsername(String username);
     Boolean existsByEmail(String email);
+    
+    @Query("SELECT u FROM User u WHERE MOD(u.id, :partitions) = :partition AND u.id > :afterId ORDER BY u.id")
+    List<User> findPartition(@Param("partitions") int partitions,
+                             @Param("partition") int partition,
+                             @Param("afterId") long afterId,
+                             Pageable pageable);
 }
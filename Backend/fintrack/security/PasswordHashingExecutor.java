@@ -0,0 +1,88 @@
+package com.fintrack.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool for BCrypt work (login and registration). Sized to the number of
+ * cores with a short queue, so a login storm saturates this pool instead of the
+ * servlet workers that serve the expense endpoints; once the queue is full new
+ * work fails fast with {@link ServiceOverloadedException}.
+ */
+@Component
+public class PasswordHashingExecutor {
+    
+    private final ThreadPoolExecutor executor;
+    private final Counter rejected;
+    private final long timeoutMillis;
+    private final int retryAfterSeconds;
+    
+    public PasswordHashingExecutor(MeterRegistry meterRegistry,
+                                   @Value("${auth.hashing.threads:0}") int threads,
+                                   @Value("${auth.hashing.queue-capacity:64}") int queueCapacity,
+                                   @Value("${auth.hashing.timeout-ms:5000}") long timeoutMillis,
+                                   @Value("${auth.hashing.retry-after-seconds:2}") int retryAfterSeconds) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "auth-hashing-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+        this.timeoutMillis = timeoutMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+        
+        new ExecutorServiceMetrics(executor, "auth.hashing", Tags.empty()).bindTo(meterRegistry);
+        this.rejected = Counter.builder("auth.hashing.rejected")
+            .description("Login/register requests rejected because the hashing pool was saturated or they waited too long in its queue")
+            .register(meterRegistry);
+    }
+    
+    // The deadline only applies while the task is queued: a task that waited
+    // longer is dropped before it starts hashing, while one that has started
+    // always runs to completion, so timed-out work never keeps a thread busy.
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        long enqueuedAt = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                if (System.nanoTime() - enqueuedAt > TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) {
+                    rejected.increment();
+                    throw overloaded();
+                }
+                return task.get();
+            }, executor).exceptionallyCompose(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                return CompletableFuture.failedFuture(cause);
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(overloaded());
+        }
+    }
+    
+    private ServiceOverloadedException overloaded() {
+        return new ServiceOverloadedException("Authentication service is busy, please retry", retryAfterSeconds);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,109 @@
+package com.fintrack.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+    
+    @Value("${ratelimit.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${ratelimit.capacity:60}")
+    private long capacity;
+    
+    @Value("${ratelimit.tokens-per-second:10}")
+    private double tokensPerSecond;
+    
+    @Value("${ratelimit.analysis-cost:10}")
+    private int analysisCost;
+    
+    @Value("${ratelimit.auth.capacity:10}")
+    private long authCapacity;
+    
+    @Value("${ratelimit.auth.tokens-per-second:1}")
+    private double authTokensPerSecond;
+    
+    @Value("${ratelimit.idle-eviction-seconds:600}")
+    private long idleEvictionSeconds;
+    
+    private final ConcurrentMap<String, TokenBucket> userBuckets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, TokenBucket> authBuckets = new ConcurrentHashMap<>();
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        if (!enabled) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        
+        String path = request.getRequestURI();
+        long now = System.nanoTime();
+        long waitNanos;
+        
+        if (path.startsWith("/api/auth/")) {
+            waitNanos = bucket(authBuckets, request.getRemoteAddr(), authCapacity, authTokensPerSecond, now)
+                .tryAcquire(1, now);
+        } else {
+            int cost = path.startsWith("/api/analysis") ? analysisCost : 1;
+            waitNanos = bucket(userBuckets, clientKey(request), capacity, tokensPerSecond, now)
+                .tryAcquire(cost, now);
+        }
+        
+        if (waitNanos > 0) {
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"error\":\"Too many requests\"}");
+            return;
+        }
+        
+        filterChain.doFilter(request, response);
+    }
+    
+    @Scheduled(fixedDelayString = "${ratelimit.eviction-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        long idleNanos = TimeUnit.SECONDS.toNanos(idleEvictionSeconds);
+        userBuckets.values().removeIf(bucket -> bucket.isIdle(now, idleNanos));
+        authBuckets.values().removeIf(bucket -> bucket.isIdle(now, idleNanos));
+    }
+    
+    // Plain get first: computeIfAbsent locks the bin even when the key is present.
+    private TokenBucket bucket(ConcurrentMap<String, TokenBucket> buckets, String key,
+                               long bucketCapacity, double rate, long now) {
+        TokenBucket bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        return buckets.computeIfAbsent(key, k -> new TokenBucket(bucketCapacity, rate, now));
+    }
+    
+    private String clientKey(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserDetails) {
+            return "user:" + ((UserDetails) authentication.getPrincipal()).getUsername();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,15 @@
+package com.fintrack.security;
+
+public class ServiceOverloadedException extends RuntimeException {
+    
+    private final int retryAfterSeconds;
+    
+    public ServiceOverloadedException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,57 @@
+package com.fintrack.security;
+
+import com.fintrack.model.User;
+import com.fintrack.repository.ShardContext;
+import com.fintrack.repository.ShardRouter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Routes the rest of an authenticated request to the user's home shard. The JWT
+ * filter has already loaded the user from the directory shard by then.
+ */
+@Component
+public class ShardContextFilter extends OncePerRequestFilter {
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (!shardRouter.isSharded() || authentication == null || !(authentication.getPrincipal() instanceof User user)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        
+        // Reads keep working while a user is being moved; writes wait for the move to finish.
+        if (shardRouter.isMoving(user.getId()) && !"GET".equals(request.getMethod())) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "5");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"error\":\"Your data is being moved, please retry shortly\"}");
+            return;
+        }
+        
+        ShardContext.set(shardRouter.shardFor(user.getId()));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ShardContext.clear();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.fintrack.security;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. The whole state is one "theoretical arrival time"
+ * (GCRA), so acquiring is a single CAS and there is no separate refill step.
+ */
+public final class TokenBucket {
+    
+    private final AtomicLong theoreticalArrival;
+    private final long nanosPerToken;
+    private final long burstNanos;
+    
+    public TokenBucket(long capacity, double tokensPerSecond, long nowNanos) {
+        this.nanosPerToken = (long) (1_000_000_000L / tokensPerSecond);
+        this.burstNanos = capacity * nanosPerToken;
+        this.theoreticalArrival = new AtomicLong(nowNanos);
+    }
+    
+    // Returns 0 when the tokens were taken, otherwise the nanos until they would be available.
+    public long tryAcquire(int tokens, long nowNanos) {
+        long increment = tokens * nanosPerToken;
+        while (true) {
+            long current = theoreticalArrival.get();
+            long next = Math.max(current, nowNanos) + increment;
+            long allowedAt = next - burstNanos;
+            if (allowedAt - nowNanos > 0) {
+                return allowedAt - nowNanos;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+    
+    // A bucket whose arrival time is in the past is full again and can be dropped.
+    public boolean isIdle(long nowNanos, long idleNanos) {
+        return nowNanos - theoreticalArrival.get() > idleNanos;
+    }
+}
@@ -5,9 +5,7 @@ import com.fintrack.model.User;
 import com.theokanning.openai.completion.chat.ChatCompletionRequest;
 import com.theokanning.openai.completion.chat.ChatMessage;
 import com.theokanning.openai.completion.chat.ChatMessageRole;
-import com.theokanning.openai.service.OpenAiService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -21,13 +19,28 @@ import java.util.stream.Collectors;
 @Service
 public class AIAnalysisService {
     
-    @Value("${openai.api.key}")
-    private String apiKey;
+    @Autowired
+    private OpenAIClient openAIClient;
     
     @Autowired
     private ExpenseService expenseService;
     
+    @Autowired
+    private ExchangeRateService exchangeRateService;
+    
+    @Autowired
+    private SpendingDistributionService spendingDistributionService;
+    
+    @Autowired
+    private SpendForecastService spendForecastService;
+    
     public Map<String, Object> generateExpenseAnalysis(User user, LocalDate startDate, LocalDate endDate) {
+        return generateExpenseAnalysis(user, startDate, endDate, true);
+    }
+    
+    // Batch precomputation passes useAi = false and stores the rule-based insights.
+    public Map<String, Object> generateExpenseAnalysis(User user, LocalDate startDate, LocalDate endDate,
+                                                       boolean useAi) {
         List<Expense> expenses = expenseService.getExpensesByDateRange(user, startDate, endDate);
         BigDecimal totalExpenses = expenseService.getTotalExpensesByDateRange(user, startDate, endDate);
         Map<String, BigDecimal> categoryWiseExpenses = expenseService.getCategoryWiseExpenses(user, startDate, endDate);
@@ -39,6 +52,10 @@ public class AIAnalysisService {
         analysis.put("startDate", startDate);
         analysis.put("endDate", endDate);
         
+        String currency = exchangeRateService.baseCurrency(user);
+        String symbol = exchangeRateService.symbol(currency);
+        analysis.put("currency", currency);
+        
         // Calculate average
         if (!expenses.isEmpty()) {
             BigDecimal average = totalExpenses.divide(
@@ -55,9 +72,23 @@ public class AIAnalysisService {
             .orElse("N/A");
         analysis.put("topCategory", topCategory);
         
+        // Median and tail transaction sizes, which a few large purchases don't skew
+        analysis.put("distribution", spendingDistributionService.getDistribution(user, startDate, endDate));
+        
+        // Month-end projection, when the range reaches into the current month
+        Map<String, Object> forecast = null;
+        LocalDate today = LocalDate.now();
+        if (!startDate.isAfter(today) && !endDate.isBefore(today.withDayOfMonth(1))) {
+            forecast = spendForecastService.getForecast(user);
+            analysis.put("forecast", forecast);
+        }
+        
         // Generate AI insights
         try {
-            String aiInsights = generateAIInsights(expenses, totalExpenses, categoryWiseExpenses, startDate, endDate);
+            String aiInsights = useAi
+                ? generateAIInsights(expenses, totalExpenses, categoryWiseExpenses, startDate, endDate, symbol,
+                    forecast)
+                : generateBasicInsights(expenses, totalExpenses, categoryWiseExpenses, startDate, endDate, symbol);
             analysis.put("aiInsights", aiInsights);
         } catch (Exception e) {
             analysis.put("aiInsights", "AI insights unavailable. Please configure your OpenAI API key.");
@@ -68,52 +99,62 @@ public class AIAnalysisService {
     
     private String generateAIInsights(List<Expense> expenses, BigDecimal totalExpenses, 
                                      Map<String, BigDecimal> categoryWiseExpenses,
-                                     LocalDate startDate, LocalDate endDate) {
+                                     LocalDate startDate, LocalDate endDate, String symbol,
+                                     Map<String, Object> forecast) {
         
-        // Check if API key is configured
-        if (apiKey == null || apiKey.equals("your_openai_api_key_here")) {
-            return generateBasicInsights(expenses, totalExpenses, categoryWiseExpenses, startDate, endDate);
+        // Unconfigured, over budget, failing or breaker open: the client returns
+        // empty and the rule-based insights are served instead.
+        if (!openAIClient.isConfigured()) {
+            return generateBasicInsights(expenses, totalExpenses, categoryWiseExpenses, startDate, endDate, symbol);
         }
         
-        try {
-            OpenAiService service = new OpenAiService(apiKey);
-            
-            String prompt = buildPrompt(expenses, totalExpenses, categoryWiseExpenses, startDate, endDate);
-            
-            ChatCompletionRequest chatRequest = ChatCompletionRequest.builder()
-                .model("gpt-3.5-turbo")
-                .messages(List.of(
-                    new ChatMessage(ChatMessageRole.SYSTEM.value(), 
-                        "You are a financial advisor providing insights on expense patterns."),
-                    new ChatMessage(ChatMessageRole.USER.value(), prompt)
-                ))
-                .maxTokens(500)
-                .temperature(0.7)
-                .build();
-            
-            return service.createChatCompletion(chatRequest)
-                .getChoices().get(0).getMessage().getContent();
-                
-        } catch (Exception e) {
-            return generateBasicInsights(expenses, totalExpenses, categoryWiseExpenses, startDate, endDate);
-        }
+        String prompt = buildPrompt(expenses, totalExpenses, categoryWiseExpenses, startDate, endDate, symbol,
+            forecast);
+        
+        ChatCompletionRequest chatRequest = ChatCompletionRequest.builder()
+            .model("gpt-3.5-turbo")
+            .messages(List.of(
+                new ChatMessage(ChatMessageRole.SYSTEM.value(), 
+                    "You are a financial advisor providing insights on expense patterns."),
+                new ChatMessage(ChatMessageRole.USER.value(), prompt)
+            ))
+            .maxTokens(500)
+            .temperature(0.7)
+            .build();
+        
+        return openAIClient.complete(chatRequest)
+            .orElseGet(() -> generateBasicInsights(
+                expenses, totalExpenses, categoryWiseExpenses, startDate, endDate, symbol));
     }
     
     private String buildPrompt(List<Expense> expenses, BigDecimal totalExpenses,
                               Map<String, BigDecimal> categoryWiseExpenses,
-                              LocalDate startDate, LocalDate endDate) {
+                              LocalDate startDate, LocalDate endDate, String symbol,
+                              Map<String, Object> forecast) {
         StringBuilder prompt = new StringBuilder();
         prompt.append("Analyze the following expense data and provide insights:\n\n");
         prompt.append("Period: ").append(startDate.format(DateTimeFormatter.ISO_DATE))
               .append(" to ").append(endDate.format(DateTimeFormatter.ISO_DATE)).append("\n");
-        prompt.append("Total Expenses: ₹").append(totalExpenses).append("\n");
+        prompt.append("Total Expenses: ").append(symbol).append(totalExpenses).append("\n");
         prompt.append("Number of Transactions: ").append(expenses.size()).append("\n\n");
         prompt.append("Category Breakdown:\n");
         
         categoryWiseExpenses.forEach((category, amount) -> 
-            prompt.append("- ").append(category).append(": ₹").append(amount).append("\n")
+            prompt.append("- ").append(category).append(": ").append(symbol).append(amount).append("\n")
         );
         
+        if (forecast != null) {
+            prompt.append("\nProjected spend for ").append(forecast.get("month")).append(": ")
+                  .append(symbol).append(forecast.get("forecast"))
+                  .append(" (").append(symbol).append(forecast.get("spent")).append(" so far)\n");
+            @SuppressWarnings("unchecked")
+            Map<String, Map<String, Object>> byCategory = (Map<String, Map<String, Object>>) forecast.get("byCategory");
+            byCategory.forEach((category, values) ->
+                prompt.append("- ").append(category).append(": ").append(symbol).append(values.get("forecast"))
+                      .append(" projected\n")
+            );
+        }
+        
         prompt.append("\nProvide:\n");
         prompt.append("1. Key spending patterns\n");
         prompt.append("2. Areas where spending could be reduced\n");
@@ -125,11 +166,11 @@ public class AIAnalysisService {
     
     private String generateBasicInsights(List<Expense> expenses, BigDecimal totalExpenses,
                                         Map<String, BigDecimal> categoryWiseExpenses,
-                                        LocalDate startDate, LocalDate endDate) {
+                                        LocalDate startDate, LocalDate endDate, String symbol) {
         StringBuilder insights = new StringBuilder();
         insights.append("📊 Expense Summary\n\n");
         
-        insights.append("During this period, you spent a total of ₹")
+        insights.append("During this period, you spent a total of ").append(symbol)
                 .append(totalExpenses).append(" across ")
                 .append(expenses.size()).append(" transactions.\n\n");
         
@@ -141,7 +182,7 @@ public class AIAnalysisService {
             BigDecimal topAmount = categoryWiseExpenses.get(topCategory);
             
             insights.append("💰 Your highest spending category is ")
-                    .append(topCategory).append(" with ₹").append(topAmount).append(".\n\n");
+                    .append(topCategory).append(" with ").append(symbol).append(topAmount).append(".\n\n");
             
             BigDecimal percentage = topAmount.multiply(BigDecimal.valueOf(100))
                 .divide(totalExpenses, 2, BigDecimal.ROUND_HALF_UP);
@@ -156,7 +197,7 @@ public class AIAnalysisService {
         if (!expenses.isEmpty()) {
             BigDecimal average = totalExpenses.divide(
                 BigDecimal.valueOf(expenses.size()), 2, BigDecimal.ROUND_HALF_UP);
-            insights.append("📈 Average transaction: ₹").append(average).append("\n\n");
+            insights.append("📈 Average transaction: ").append(symbol).append(average).append("\n\n");
         }
         
         insights.append("💡 Tip: Track your expenses regularly to identify patterns and save more!");
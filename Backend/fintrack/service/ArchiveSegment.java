@@ -0,0 +1,405 @@
+package com.fintrack.service;
+
+import com.fintrack.model.Expense;
+import com.fintrack.model.User;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Immutable, compressed file holding one user's archived expenses for one year.
+ *
+ * Layout: a fixed header, an index with one entry per month block (date bounds,
+ * offsets and per-category totals), then the deflated blocks. Readers map the
+ * file and only inflate the blocks a query actually needs; totals for months
+ * that are fully inside the requested range come straight from the index.
+ */
+public final class ArchiveSegment {
+    
+    private static final int MAGIC = 0x46544153; // "FTAS"
+    private static final short VERSION = 2;
+    private static final int HEADER_BYTES = 4 + 2 + 2 + 2 + 4;
+    
+    private static final Expense.Category[] CATEGORIES = Expense.Category.values();
+    private static final Expense.PaymentMethod[] PAYMENT_METHODS = Expense.PaymentMethod.values();
+    
+    private final MappedByteBuffer buffer;
+    private final int recordCount;
+    private final int[] firstDay;
+    private final int[] lastDay;
+    private final long[] offset;
+    private final int[] compressedLength;
+    private final int[] rawLength;
+    private final String[] blockCurrency;
+    private final long[] totalCents;
+    private final long[][] categoryCents;
+    private final short version;
+    
+    private ArchiveSegment(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        ByteBuffer header = buffer.duplicate();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not an archive segment");
+        }
+        this.version = header.getShort();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported archive segment version " + version);
+        }
+        int blockCount = header.getShort();
+        int categoryCount = header.getShort();
+        this.recordCount = header.getInt();
+        
+        firstDay = new int[blockCount];
+        lastDay = new int[blockCount];
+        offset = new long[blockCount];
+        compressedLength = new int[blockCount];
+        rawLength = new int[blockCount];
+        blockCurrency = new String[blockCount];
+        totalCents = new long[blockCount];
+        categoryCents = new long[blockCount][CATEGORIES.length];
+        
+        for (int i = 0; i < blockCount; i++) {
+            firstDay[i] = header.getInt();
+            lastDay[i] = header.getInt();
+            offset[i] = header.getLong();
+            compressedLength[i] = header.getInt();
+            rawLength[i] = header.getInt();
+            blockCurrency[i] = version >= 2 ? readCurrencyCode(header) : ExchangeRateService.DEFAULT_CURRENCY;
+            totalCents[i] = header.getLong();
+            for (int c = 0; c < categoryCount; c++) {
+                long cents = header.getLong();
+                if (c < CATEGORIES.length) {
+                    categoryCents[i][c] = cents;
+                }
+            }
+        }
+    }
+    
+    public static ArchiveSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new ArchiveSegment(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+    
+    public int getRecordCount() {
+        return recordCount;
+    }
+    
+    public List<Expense> read(User user, LocalDate startDate, LocalDate endDate) throws IOException {
+        long start = startDate.toEpochDay();
+        long end = endDate.toEpochDay();
+        List<Expense> expenses = new ArrayList<>();
+        
+        for (int i = 0; i < firstDay.length; i++) {
+            if (lastDay[i] < start || firstDay[i] > end) {
+                continue;
+            }
+            for (Expense expense : decodeBlock(i, user)) {
+                long day = expense.getExpenseDate().toEpochDay();
+                if (day >= start && day <= end) {
+                    expenses.add(expense);
+                }
+            }
+        }
+        return expenses;
+    }
+    
+    // Totals are kept per currency; conversion happens once per currency in the caller.
+    public Map<String, BigDecimal> total(User user, LocalDate startDate, LocalDate endDate) throws IOException {
+        long start = startDate.toEpochDay();
+        long end = endDate.toEpochDay();
+        Map<String, Long> cents = new HashMap<>();
+        
+        for (int i = 0; i < firstDay.length; i++) {
+            if (lastDay[i] < start || firstDay[i] > end) {
+                continue;
+            }
+            if (firstDay[i] >= start && lastDay[i] <= end && blockCurrency[i] != null) {
+                cents.merge(blockCurrency[i], totalCents[i], Long::sum);
+                continue;
+            }
+            for (Expense expense : decodeBlock(i, user)) {
+                long day = expense.getExpenseDate().toEpochDay();
+                if (day >= start && day <= end) {
+                    cents.merge(expense.getCurrency(), toCents(expense.getAmount()), Long::sum);
+                }
+            }
+        }
+        
+        Map<String, BigDecimal> totals = new HashMap<>();
+        cents.forEach((currency, amount) -> totals.put(currency, BigDecimal.valueOf(amount, 2)));
+        return totals;
+    }
+    
+    public Map<Expense.Category, Map<String, BigDecimal>> categoryTotals(User user, LocalDate startDate,
+                                                                         LocalDate endDate) throws IOException {
+        long start = startDate.toEpochDay();
+        long end = endDate.toEpochDay();
+        Map<Expense.Category, Map<String, BigDecimal>> totals = new EnumMap<>(Expense.Category.class);
+        
+        for (int i = 0; i < firstDay.length; i++) {
+            if (lastDay[i] < start || firstDay[i] > end) {
+                continue;
+            }
+            if (firstDay[i] >= start && lastDay[i] <= end && blockCurrency[i] != null) {
+                for (int c = 0; c < CATEGORIES.length; c++) {
+                    if (categoryCents[i][c] != 0) {
+                        totals.computeIfAbsent(CATEGORIES[c], k -> new HashMap<>())
+                            .merge(blockCurrency[i], BigDecimal.valueOf(categoryCents[i][c], 2), BigDecimal::add);
+                    }
+                }
+                continue;
+            }
+            for (Expense expense : decodeBlock(i, user)) {
+                long day = expense.getExpenseDate().toEpochDay();
+                if (day >= start && day <= end) {
+                    totals.computeIfAbsent(expense.getCategory(), k -> new HashMap<>())
+                        .merge(expense.getCurrency(), expense.getAmount(), BigDecimal::add);
+                }
+            }
+        }
+        return totals;
+    }
+    
+    private List<Expense> decodeBlock(int block, User user) throws IOException {
+        ByteBuffer compressed = buffer.duplicate();
+        compressed.position((int) offset[block]);
+        compressed.limit((int) offset[block] + compressedLength[block]);
+        
+        byte[] raw = new byte[rawLength[block]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int read = 0;
+            while (read < raw.length && !inflater.finished()) {
+                read += inflater.inflate(raw, read, raw.length - read);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt archive block", e);
+        } finally {
+            inflater.end();
+        }
+        
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+        int count = in.readInt();
+        List<Expense> expenses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Expense expense = new Expense();
+            expense.setUser(user);
+            expense.setId(in.readLong());
+            expense.setExpenseDate(LocalDate.ofEpochDay(in.readInt()));
+            expense.setAmount(BigDecimal.valueOf(in.readLong(), 2));
+            expense.setCurrency(version >= 2 ? readString(in) : ExchangeRateService.DEFAULT_CURRENCY);
+            expense.setCategory(CATEGORIES[in.readByte()]);
+            expense.setPaymentMethod(PAYMENT_METHODS[in.readByte()]);
+            expense.setTitle(readString(in));
+            expense.setDescription(readString(in));
+            expense.setVendor(readString(in));
+            expense.setCreatedAt(readTimestamp(in));
+            expense.setUpdatedAt(readTimestamp(in));
+            expense.setArchived(true);
+            expenses.add(expense);
+        }
+        return expenses;
+    }
+    
+    /**
+     * Writes the given expenses as a new segment, replacing any existing file
+     * atomically. Rows with the same id are written once, first occurrence wins.
+     */
+    public static void write(Path path, List<Expense> expenses) throws IOException {
+        Map<Long, Expense> unique = new LinkedHashMap<>();
+        for (Expense expense : expenses) {
+            unique.putIfAbsent(expense.getId(), expense);
+        }
+        List<Expense> sorted = new ArrayList<>(unique.values());
+        sorted.sort(Comparator.comparing(Expense::getExpenseDate).thenComparing(Expense::getId));
+        
+        Map<YearMonth, List<Expense>> blocks = new LinkedHashMap<>();
+        for (Expense expense : sorted) {
+            blocks.computeIfAbsent(YearMonth.from(expense.getExpenseDate()), k -> new ArrayList<>()).add(expense);
+        }
+        
+        List<byte[]> compressedBlocks = new ArrayList<>(blocks.size());
+        List<Integer> rawLengths = new ArrayList<>(blocks.size());
+        for (List<Expense> block : blocks.values()) {
+            byte[] raw = encodeBlock(block);
+            rawLengths.add(raw.length);
+            compressedBlocks.add(deflate(raw));
+        }
+        
+        int indexEntryBytes = 4 + 4 + 8 + 4 + 4 + 3 + 8 + 8 * CATEGORIES.length;
+        long dataOffset = HEADER_BYTES + (long) indexEntryBytes * blocks.size();
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(blocks.size());
+        out.writeShort(CATEGORIES.length);
+        out.writeInt(sorted.size());
+        
+        int i = 0;
+        for (List<Expense> block : blocks.values()) {
+            long[] cents = new long[CATEGORIES.length];
+            long total = 0;
+            for (Expense expense : block) {
+                long amount = toCents(expense.getAmount());
+                cents[expense.getCategory().ordinal()] += amount;
+                total += amount;
+            }
+            out.writeInt((int) block.get(0).getExpenseDate().toEpochDay());
+            out.writeInt((int) block.get(block.size() - 1).getExpenseDate().toEpochDay());
+            out.writeLong(dataOffset);
+            out.writeInt(compressedBlocks.get(i).length);
+            out.writeInt(rawLengths.get(i));
+            writeCurrencyCode(out, singleCurrency(block));
+            out.writeLong(total);
+            for (long c : cents) {
+                out.writeLong(c);
+            }
+            dataOffset += compressedBlocks.get(i).length;
+            i++;
+        }
+        for (byte[] block : compressedBlocks) {
+            out.write(block);
+        }
+        out.flush();
+        
+        Files.createDirectories(path.getParent());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer data = ByteBuffer.wrap(bytes.toByteArray());
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private static byte[] encodeBlock(List<Expense> block) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(block.size());
+        for (Expense expense : block) {
+            out.writeLong(expense.getId());
+            out.writeInt((int) expense.getExpenseDate().toEpochDay());
+            out.writeLong(toCents(expense.getAmount()));
+            writeString(out, currencyOf(expense));
+            out.writeByte(expense.getCategory().ordinal());
+            out.writeByte(expense.getPaymentMethod().ordinal());
+            writeString(out, expense.getTitle());
+            writeString(out, expense.getDescription());
+            writeString(out, expense.getVendor());
+            writeTimestamp(out, expense.getCreatedAt());
+            writeTimestamp(out, expense.getUpdatedAt());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+    
+    // Block totals are only usable when every row in the block shares a currency.
+    private static String singleCurrency(List<Expense> block) {
+        String currency = currencyOf(block.get(0));
+        for (Expense expense : block) {
+            if (!currency.equals(currencyOf(expense))) {
+                return null;
+            }
+        }
+        return currency;
+    }
+    
+    private static String currencyOf(Expense expense) {
+        return expense.getCurrency() != null ? expense.getCurrency() : ExchangeRateService.DEFAULT_CURRENCY;
+    }
+    
+    private static void writeCurrencyCode(DataOutputStream out, String currency) throws IOException {
+        byte[] code = currency != null ? currency.getBytes(StandardCharsets.US_ASCII) : new byte[3];
+        out.write(code, 0, 3);
+    }
+    
+    private static String readCurrencyCode(ByteBuffer in) {
+        byte[] code = new byte[3];
+        in.get(code);
+        return code[0] == 0 ? null : new String(code, StandardCharsets.US_ASCII);
+    }
+    
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+    
+    private static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+    
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static void writeTimestamp(DataOutputStream out, LocalDateTime value) throws IOException {
+        out.writeLong(value != null ? value.toEpochSecond(ZoneOffset.UTC) : Long.MIN_VALUE);
+    }
+    
+    private static LocalDateTime readTimestamp(DataInputStream in) throws IOException {
+        long seconds = in.readLong();
+        return seconds != Long.MIN_VALUE ? LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC) : null;
+    }
+}
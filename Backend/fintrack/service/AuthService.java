@@ -6,6 +6,7 @@ import com.fintrack.dto.RegisterRequest;
 import com.fintrack.model.User;
 import com.fintrack.repository.UserRepository;
 import com.fintrack.security.JwtTokenProvider;
+import com.fintrack.security.PasswordHashingExecutor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -13,6 +14,8 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 @Service
 public class AuthService {
     
@@ -28,6 +31,23 @@ public class AuthService {
     @Autowired
     private AuthenticationManager authenticationManager;
     
+    @Autowired
+    private PasswordHashingExecutor passwordHashingExecutor;
+    
+    @Autowired
+    private ExchangeRateService exchangeRateService;
+    
+    @Autowired
+    private ShardRebalanceService shardRebalanceService;
+    
+    public CompletableFuture<AuthResponse> registerAsync(RegisterRequest request) {
+        return passwordHashingExecutor.submit(() -> register(request));
+    }
+    
+    public CompletableFuture<AuthResponse> loginAsync(LoginRequest request) {
+        return passwordHashingExecutor.submit(() -> login(request));
+    }
+    
     public AuthResponse register(RegisterRequest request) {
         if (userRepository.existsByUsername(request.getUsername())) {
             throw new RuntimeException("Username already exists");
@@ -44,12 +64,21 @@ public class AuthService {
         user.setFullName(request.getFullName());
         user.setRole(User.Role.USER);
         
+        if (request.getBaseCurrency() != null) {
+            if (!exchangeRateService.getSnapshot().supports(request.getBaseCurrency())) {
+                throw new RuntimeException("Unsupported currency: " + request.getBaseCurrency());
+            }
+            user.setBaseCurrency(request.getBaseCurrency());
+        }
+        
         User savedUser = userRepository.save(user);
+        shardRebalanceService.placeNewUser(savedUser);
         
         String token = jwtTokenProvider.generateToken(savedUser);
         
         return new AuthResponse(token, savedUser.getId(), savedUser.getUsername(), 
-                               savedUser.getEmail(), savedUser.getFullName());
+                               savedUser.getEmail(), savedUser.getFullName(),
+                               exchangeRateService.baseCurrency(savedUser));
     }
     
     public AuthResponse login(LoginRequest request) {
@@ -61,6 +90,7 @@ public class AuthService {
         String token = jwtTokenProvider.generateToken(user);
         
         return new AuthResponse(token, user.getId(), user.getUsername(), 
-                               user.getEmail(), user.getFullName());
+                               user.getEmail(), user.getFullName(),
+                               exchangeRateService.baseCurrency(user));
     }
 }
@@ -0,0 +1,200 @@
+package com.fintrack.service;
+
+import com.fintrack.model.Expense;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Multinomial naive-Bayes counts over hashed expense features, one set per user
+ * plus one global set that serves as the prior for users with little history.
+ *
+ * The model is just counts, so training is an increment and "untraining" (a
+ * recategorized or deleted expense) is a decrement. On disk it is a sparse list
+ * of feature hashes with their non-zero per-category counts, headed by the sync
+ * version the counts reflect.
+ */
+public final class CategoryModel {
+    
+    private static final int MAGIC = 0x4654434d; // "FTCM"
+    private static final short VERSION = 2;
+    private static final Expense.Category[] CATEGORIES = Expense.Category.values();
+    
+    private final int[] documents = new int[CATEGORIES.length];
+    private final long[] featureTotals = new long[CATEGORIES.length];
+    private final Map<Integer, int[]> featureCounts = new HashMap<>();
+    private long syncVersion;
+    private boolean dirty;
+    
+    public synchronized void update(List<Integer> features, Expense.Category category, int delta) {
+        int c = category.ordinal();
+        documents[c] = Math.max(0, documents[c] + delta);
+        for (Integer feature : features) {
+            int[] counts = featureCounts.computeIfAbsent(feature, f -> new int[CATEGORIES.length]);
+            int before = counts[c];
+            counts[c] = Math.max(0, before + delta);
+            featureTotals[c] += counts[c] - before;
+        }
+        dirty = true;
+    }
+    
+    public synchronized int documentCount() {
+        int total = 0;
+        for (int count : documents) {
+            total += count;
+        }
+        return total;
+    }
+    
+    /**
+     * Log-posterior (up to a constant) per category. The global model's smoothed
+     * estimates act as a Dirichlet prior with strength {@code alpha}: with no
+     * user history the global estimate wins, and the user's own counts take over
+     * as they accumulate.
+     */
+    public double[] score(List<Integer> features, CategoryModel prior, double alpha) {
+        double[] priorClass = prior.classProbabilities();
+        double[][] priorFeature = prior.featureProbabilities(features);
+        
+        synchronized (this) {
+            double[] scores = new double[CATEGORIES.length];
+            int totalDocuments = 0;
+            for (int count : documents) {
+                totalDocuments += count;
+            }
+            for (int c = 0; c < CATEGORIES.length; c++) {
+                scores[c] = Math.log((documents[c] + alpha * priorClass[c]) / (totalDocuments + alpha));
+                for (int i = 0; i < features.size(); i++) {
+                    int[] counts = featureCounts.get(features.get(i));
+                    int count = counts == null ? 0 : counts[c];
+                    scores[c] += Math.log((count + alpha * priorFeature[i][c]) / (featureTotals[c] + alpha));
+                }
+            }
+            return scores;
+        }
+    }
+    
+    // Laplace-smoothed, so every category and feature keeps a non-zero probability.
+    private synchronized double[] classProbabilities() {
+        double[] probabilities = new double[CATEGORIES.length];
+        int total = 0;
+        for (int count : documents) {
+            total += count;
+        }
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            probabilities[c] = (documents[c] + 1.0) / (total + CATEGORIES.length);
+        }
+        return probabilities;
+    }
+    
+    private synchronized double[][] featureProbabilities(List<Integer> features) {
+        double vocabulary = Math.max(1, featureCounts.size());
+        double[][] probabilities = new double[features.size()][CATEGORIES.length];
+        for (int i = 0; i < features.size(); i++) {
+            int[] counts = featureCounts.get(features.get(i));
+            for (int c = 0; c < CATEGORIES.length; c++) {
+                int count = counts == null ? 0 : counts[c];
+                probabilities[i][c] = (count + 1.0) / (featureTotals[c] + vocabulary);
+            }
+        }
+        return probabilities;
+    }
+    
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+    
+    // The sync version passed to writeTo when this model was saved; 0 for one
+    // not read from disk.
+    public synchronized long getSyncVersion() {
+        return syncVersion;
+    }
+    
+    public synchronized void writeTo(Path path, long syncVersion) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(syncVersion);
+            out.writeShort(CATEGORIES.length);
+            for (int count : documents) {
+                out.writeInt(count);
+            }
+            
+            int live = 0;
+            for (int[] counts : featureCounts.values()) {
+                if (nonZero(counts) > 0) {
+                    live++;
+                }
+            }
+            out.writeInt(live);
+            for (Map.Entry<Integer, int[]> entry : featureCounts.entrySet()) {
+                int[] counts = entry.getValue();
+                int nonZero = nonZero(counts);
+                if (nonZero == 0) {
+                    continue;
+                }
+                out.writeInt(entry.getKey());
+                out.writeByte(nonZero);
+                for (int c = 0; c < counts.length; c++) {
+                    if (counts[c] != 0) {
+                        out.writeByte(c);
+                        out.writeInt(counts[c]);
+                    }
+                }
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.syncVersion = syncVersion;
+        dirty = false;
+    }
+    
+    public static CategoryModel read(Path path) throws IOException {
+        CategoryModel model = new CategoryModel();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                throw new IOException("Not a category model: " + path);
+            }
+            model.syncVersion = in.readLong();
+            int categories = in.readShort();
+            if (categories != CATEGORIES.length) {
+                throw new IOException("Category model " + path + " was written for a different category set");
+            }
+            for (int c = 0; c < categories; c++) {
+                model.documents[c] = in.readInt();
+            }
+            int features = in.readInt();
+            for (int i = 0; i < features; i++) {
+                int feature = in.readInt();
+                int nonZero = in.readUnsignedByte();
+                int[] counts = new int[categories];
+                for (int j = 0; j < nonZero; j++) {
+                    int c = in.readUnsignedByte();
+                    counts[c] = in.readInt();
+                    model.featureTotals[c] += counts[c];
+                }
+                model.featureCounts.put(feature, counts);
+            }
+        }
+        return model;
+    }
+    
+    private static int nonZero(int[] counts) {
+        int nonZero = 0;
+        for (int count : counts) {
+            if (count != 0) {
+                nonZero++;
+            }
+        }
+        return nonZero;
+    }
+}
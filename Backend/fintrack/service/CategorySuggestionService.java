@@ -0,0 +1,312 @@
+package com.fintrack.service;
+
+import com.fintrack.model.Expense;
+import com.fintrack.model.ExpenseSyncState;
+import com.fintrack.model.User;
+import com.fintrack.repository.ExpenseRepository;
+import com.fintrack.repository.ExpenseSyncStateRepository;
+import com.fintrack.repository.ShardRouter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Suggests a category for a new expense from a local naive-Bayes model, with no
+ * call to OpenAI. User models are loaded from disk (or rebuilt from the user's
+ * rows) on the first suggestion, the global prior in the background at startup;
+ * both are trained from expense change events and flushed periodically. Writes
+ * only ever update models that are already in memory.
+ */
+@Service
+public class CategorySuggestionService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(CategorySuggestionService.class);
+    private static final Expense.Category[] CATEGORIES = Expense.Category.values();
+    private static final int BOOTSTRAP_PAGE_SIZE = 1000;
+    private static final CategoryModel EMPTY_MODEL = new CategoryModel();
+    
+    @Value("${fintrack.categorizer.dir:data/categorizer}")
+    private String modelDir;
+    
+    @Value("${fintrack.categorizer.prior-strength:5}")
+    private double priorStrength;
+    
+    @Value("${fintrack.categorizer.idle-eviction-minutes:60}")
+    private long idleEvictionMinutes;
+    
+    @Autowired
+    private ExpenseRepository expenseRepository;
+    
+    @Autowired
+    private ExchangeRateService exchangeRateService;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Autowired
+    private ExpenseSyncStateRepository syncStateRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    private UserStateCache<LoadedModel> userModels;
+    private volatile CategoryModel globalModel;
+    private final List<ExpenseChangeEvent> globalPending = new ArrayList<>();
+    private boolean globalLoading = true;
+    private Path root;
+    
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(modelDir);
+        Files.createDirectories(root);
+        userModels = new UserStateCache<>((loaded, event) -> train(event, loaded.model),
+            syncStateRepository, transactionManager);
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void bootstrap() {
+        Thread thread = new Thread(this::loadGlobalModel, "category-model-bootstrap");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    // Until the global prior is loaded suggestions use an empty (uniform) one.
+    public List<Expense.Category> suggest(User user, String title, String vendor,
+                                          Expense.PaymentMethod paymentMethod, BigDecimal amount, String currency) {
+        List<Integer> features = features(title, vendor, paymentMethod, amount, currency);
+        LoadedModel loaded = userModels.get(user.getId(), () -> new LoadedModel(loadUserModel(user)));
+        loaded.lastAccess = System.nanoTime();
+        CategoryModel global = globalModel;
+        double[] scores = loaded.model.score(features, global != null ? global : EMPTY_MODEL, priorStrength);
+        
+        Integer[] order = new Integer[CATEGORIES.length];
+        for (int c = 0; c < order.length; c++) {
+            order[c] = c;
+        }
+        Arrays.sort(order, Comparator.comparingDouble((Integer c) -> scores[c]).reversed());
+        return Arrays.stream(order).map(c -> CATEGORIES[c]).collect(Collectors.toList());
+    }
+    
+    // Never loads anything: users without a model in memory get theirs built
+    // from the database on their next suggestion.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onExpenseChange(ExpenseChangeEvent event) {
+        userModels.apply(event);
+        synchronized (globalPending) {
+            if (globalLoading) {
+                globalPending.add(event);
+            } else {
+                train(event, globalModel);
+            }
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${fintrack.categorizer.flush-interval-ms:60000}")
+    public void flush() {
+        long cutoff = System.nanoTime() - idleEvictionMinutes * 60_000_000_000L;
+        for (Long userId : userModels.userIds()) {
+            // Saved and evicted in one step, so a later load finds the saved copy.
+            userModels.computeIfPresent(userId, (loaded, version) -> {
+                save(loaded.model, userPath(userId), version);
+                return loaded.lastAccess - cutoff < 0 ? null : loaded;
+            });
+        }
+        CategoryModel global = globalModel;
+        if (global != null) {
+            save(global, root.resolve("global.bin"), 0);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+    
+    // Runs in the build's snapshot (see UserStateCache). Changes made while a
+    // model is out of memory never reach it, so the saved copy is used only if it
+    // was saved at the sync version the snapshot shows; otherwise the model is
+    // rebuilt from the rows.
+    private CategoryModel loadUserModel(User user) {
+        Long last = syncStateRepository.getLastVersion(user.getId());
+        CategoryModel model = read(userPath(user.getId()));
+        if (model == null || model.getSyncVersion() != (last != null ? last : 0)) {
+            model = new CategoryModel();
+            for (Expense expense : expenseRepository.findByUserOrderByExpenseDateDesc(user)) {
+                model.update(features(expense), expense.getCategory(), 1);
+            }
+        }
+        return model;
+    }
+    
+    // Changes that arrive while the prior loads are queued. A saved prior gets all
+    // of them; one built from the rows only those newer than the sync version
+    // its shard snapshot showed for the user.
+    private void loadGlobalModel() {
+        try {
+            CategoryModel model = read(root.resolve("global.bin"));
+            Map<Long, Long> versions = null;
+            if (model == null) {
+                CategoryModel built = new CategoryModel();
+                Map<Long, Long> seen = new ConcurrentHashMap<>();
+                TransactionTemplate snapshot = new TransactionTemplate(transactionManager);
+                snapshot.setReadOnly(true);
+                snapshot.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+                shardRouter.scatter(shard -> snapshot.execute(status -> {
+                    for (ExpenseSyncState state : syncStateRepository.findAll()) {
+                        seen.put(state.getUserId(), state.getLastVersion());
+                    }
+                    Page<Expense> page;
+                    int number = 0;
+                    do {
+                        page = expenseRepository.findAll(PageRequest.of(number++, BOOTSTRAP_PAGE_SIZE));
+                        for (Expense expense : page) {
+                            built.update(features(expense), expense.getCategory(), 1);
+                        }
+                    } while (page.hasNext());
+                    return null;
+                }));
+                model = built;
+                versions = seen;
+                logger.info("Built global category model from {} expenses", model.documentCount());
+            }
+            synchronized (globalPending) {
+                for (ExpenseChangeEvent event : globalPending) {
+                    if (versions == null || event.getVersion() > versions.getOrDefault(event.getUser().getId(), 0L)) {
+                        train(event, model);
+                    }
+                }
+                globalPending.clear();
+                globalModel = model;
+                globalLoading = false;
+            }
+        } catch (RuntimeException e) {
+            logger.error("Could not load the global category model, suggesting without a prior", e);
+            synchronized (globalPending) {
+                globalPending.clear();
+                globalLoading = false;
+            }
+        }
+    }
+    
+    private void train(ExpenseChangeEvent event, CategoryModel model) {
+        if (model == null) {
+            return;
+        }
+        if (event.getPrevious() != null) {
+            model.update(features(event.getPrevious()), event.getPrevious().getCategory(), -1);
+        }
+        int delta = event.getType() == ExpenseChangeEvent.Type.DELETED ? -1 : 1;
+        model.update(features(event.getExpense()), event.getExpense().getCategory(), delta);
+    }
+    
+    private List<Integer> features(Expense expense) {
+        return features(expense.getTitle(), expense.getVendor(), expense.getPaymentMethod(),
+            expense.getAmount(), expense.getCurrency());
+    }
+    
+    // Title and vendor tokens, the whole vendor, payment method and a power-of-two
+    // amount bucket (in the pivot currency), each hashed to an int.
+    private List<Integer> features(String title, String vendor, Expense.PaymentMethod paymentMethod,
+                                   BigDecimal amount, String currency) {
+        List<Integer> features = new ArrayList<>();
+        for (String token : tokens(title)) {
+            features.add(("t:" + token).hashCode());
+        }
+        if (vendor != null && !vendor.isBlank()) {
+            features.add(("v:" + vendor.trim().toLowerCase(Locale.ROOT)).hashCode());
+            for (String token : tokens(vendor)) {
+                features.add(("vt:" + token).hashCode());
+            }
+        }
+        if (paymentMethod != null) {
+            features.add(("p:" + paymentMethod.name()).hashCode());
+        }
+        if (amount != null && amount.signum() > 0) {
+            BigDecimal normalized = amount;
+            RateSnapshot snapshot = exchangeRateService.getSnapshot();
+            if (currency != null && snapshot.supports(currency)) {
+                normalized = snapshot.convert(amount, currency, snapshot.getPivot());
+            }
+            int bucket = 63 - Long.numberOfLeadingZeros(Math.max(1L, normalized.longValue()));
+            features.add(("a:" + bucket).hashCode());
+        }
+        return features;
+    }
+    
+    private List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (token.length() >= 2 && !token.chars().allMatch(Character::isDigit)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+    
+    private Path userPath(Long userId) {
+        return root.resolve("user-" + userId + ".bin");
+    }
+    
+    private CategoryModel read(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try {
+            return CategoryModel.read(path);
+        } catch (IOException e) {
+            logger.warn("Discarding unreadable category model {}", path, e);
+            return null;
+        }
+    }
+    
+    private void save(CategoryModel model, Path path, long syncVersion) {
+        if (!model.isDirty()) {
+            return;
+        }
+        try {
+            model.writeTo(path, syncVersion);
+        } catch (IOException e) {
+            logger.error("Could not save category model {}", path, e);
+        }
+    }
+    
+    private static final class LoadedModel {
+        
+        private final CategoryModel model;
+        private volatile long lastAccess = System.nanoTime();
+        
+        private LoadedModel(CategoryModel model) {
+            this.model = model;
+        }
+    }
+}
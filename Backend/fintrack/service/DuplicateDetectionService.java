@@ -0,0 +1,196 @@
+package com.fintrack.service;
+
+import com.fintrack.model.Expense;
+import com.fintrack.model.User;
+import com.fintrack.repository.ExpenseRepository;
+import com.fintrack.repository.ExpenseSyncStateRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Flags a new expense that matches an existing one on amount, currency and
+ * payee (vendor, or title when there is no vendor) within a few days. Each
+ * user's expenses are held in an in-memory hash index keyed by that
+ * fingerprint, seeded with one query on first use and kept current from change
+ * events, so a check is a handful of hash lookups rather than a query per row.
+ *
+ * A create that passes the check stays pending under its fingerprint until it
+ * commits or fails, so concurrent creates of the same expense, including ones
+ * written in the same group-commit batch, see each other.
+ */
+@Service
+public class DuplicateDetectionService {
+    
+    public enum Policy {
+        ALLOW,
+        FLAG,
+        SKIP
+    }
+    
+    @Value("${fintrack.duplicates.window-days:1}")
+    private int windowDays;
+    
+    @Value("${fintrack.duplicates.idle-eviction-minutes:30}")
+    private long idleEvictionMinutes;
+    
+    @Autowired
+    private ExpenseRepository expenseRepository;
+    
+    @Autowired
+    private ExpenseSyncStateRepository syncStateRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    private UserStateCache<UserIndex> indexes;
+    
+    // Per user, fingerprints of creates that are checked but not yet committed or
+    // rolled back, with how many are in flight.
+    private final Map<Long, Map<String, Integer>> pending = new ConcurrentHashMap<>();
+    
+    @PostConstruct
+    public void init() {
+        indexes = new UserStateCache<>(this::apply, syncStateRepository, transactionManager);
+    }
+    
+    // Finds matching expenses and records the new one as pending in one step. The
+    // caller releases the reservation once its write has committed or failed; a
+    // committed expense is in the index by then.
+    public Reservation reserve(User user, BigDecimal amount, String currency, LocalDate date,
+                               String vendor, String title) {
+        UserIndex index = indexes.get(user.getId(), () -> load(user));
+        index.lastAccess = System.nanoTime();
+        
+        String payee = payee(vendor, title);
+        String key = key(amount, currency, date, payee);
+        List<Long> matches = new ArrayList<>();
+        boolean[] inFlight = new boolean[1];
+        pending.compute(user.getId(), (id, keys) -> {
+            Map<String, Integer> userKeys = keys != null ? keys : new HashMap<>();
+            for (int offset = -windowDays; offset <= windowDays; offset++) {
+                String candidate = key(amount, currency, date.plusDays(offset), payee);
+                matches.addAll(index.get(candidate));
+                inFlight[0] |= userKeys.containsKey(candidate);
+            }
+            userKeys.merge(key, 1, Integer::sum);
+            return userKeys;
+        });
+        return new Reservation(user.getId(), key, matches, inFlight[0]);
+    }
+    
+    public void release(Reservation reservation) {
+        pending.computeIfPresent(reservation.userId, (id, keys) -> {
+            keys.computeIfPresent(reservation.key, (key, count) -> count > 1 ? count - 1 : null);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onExpenseChange(ExpenseChangeEvent event) {
+        indexes.apply(event);
+    }
+    
+    @Scheduled(fixedDelayString = "${fintrack.duplicates.eviction-interval-ms:300000}")
+    public void evictIdle() {
+        long cutoff = System.nanoTime() - idleEvictionMinutes * 60_000_000_000L;
+        indexes.removeIf(index -> index.lastAccess - cutoff < 0);
+    }
+    
+    private void apply(UserIndex index, ExpenseChangeEvent event) {
+        if (event.getPrevious() != null) {
+            index.remove(key(event.getPrevious()), event.getPrevious().getId());
+        }
+        if (event.getType() == ExpenseChangeEvent.Type.DELETED) {
+            index.remove(key(event.getExpense()), event.getExpense().getId());
+        } else {
+            index.add(key(event.getExpense()), event.getExpense().getId());
+        }
+    }
+    
+    private UserIndex load(User user) {
+        UserIndex index = new UserIndex();
+        for (Object[] row : expenseRepository.getDuplicateFingerprints(user)) {
+            String payee = payee((String) row[4], (String) row[5]);
+            index.add(key((BigDecimal) row[1], (String) row[2], (LocalDate) row[3], payee), (Long) row[0]);
+        }
+        return index;
+    }
+    
+    private String key(Expense expense) {
+        return key(expense.getAmount(), expense.getCurrency(), expense.getExpenseDate(),
+            payee(expense.getVendor(), expense.getTitle()));
+    }
+    
+    // Amount is compared by value (10.5 and 10.50 match), text ignoring case,
+    // spacing and punctuation.
+    private String key(BigDecimal amount, String currency, LocalDate date, String payee) {
+        return currency + '|' + amount.stripTrailingZeros().toPlainString() + '|' + date + '|' + payee;
+    }
+    
+    private String payee(String vendor, String title) {
+        String text = vendor != null && !vendor.isBlank() ? vendor : title;
+        return text == null ? "" : text.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", "");
+    }
+    
+    public static final class Reservation {
+        
+        private final Long userId;
+        private final String key;
+        private final List<Long> duplicateIds;
+        private final boolean inFlight;
+        
+        private Reservation(Long userId, String key, List<Long> duplicateIds, boolean inFlight) {
+            this.userId = userId;
+            this.key = key;
+            this.duplicateIds = duplicateIds;
+            this.inFlight = inFlight;
+        }
+        
+        // Committed matches; a match that is still being written has no id yet.
+        public List<Long> getDuplicateIds() {
+            return duplicateIds;
+        }
+        
+        public boolean isDuplicate() {
+            return inFlight || !duplicateIds.isEmpty();
+        }
+    }
+    
+    private static final class UserIndex {
+        
+        private final Map<String, Set<Long>> byKey = new HashMap<>();
+        private volatile long lastAccess = System.nanoTime();
+        
+        private synchronized List<Long> get(String key) {
+            Set<Long> ids = byKey.get(key);
+            return ids == null ? List.of() : new ArrayList<>(ids);
+        }
+        
+        private synchronized void add(String key, Long id) {
+            byKey.computeIfAbsent(key, k -> new HashSet<>(2)).add(id);
+        }
+        
+        private synchronized void remove(String key, Long id) {
+            Set<Long> ids = byKey.get(key);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                byKey.remove(key);
+            }
+        }
+    }
+}
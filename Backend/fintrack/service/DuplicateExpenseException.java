@@ -0,0 +1,17 @@
+package com.fintrack.service;
+
+import java.util.List;
+
+public class DuplicateExpenseException extends RuntimeException {
+    
+    private final List<Long> duplicateIds;
+    
+    public DuplicateExpenseException(List<Long> duplicateIds) {
+        super("Possible duplicate of an existing expense");
+        this.duplicateIds = duplicateIds;
+    }
+    
+    public List<Long> getDuplicateIds() {
+        return duplicateIds;
+    }
+}
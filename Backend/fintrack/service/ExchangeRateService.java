@@ -0,0 +1,127 @@
+package com.fintrack.service;
+
+import com.fintrack.model.User;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+@Service
+public class ExchangeRateService {
+    
+    public static final String DEFAULT_CURRENCY = "INR";
+    
+    private static final Logger logger = LoggerFactory.getLogger(ExchangeRateService.class);
+    
+    @Value("${fintrack.rates.file:rates.properties}")
+    private String ratesFile;
+    
+    private volatile RateSnapshot snapshot =
+        new RateSnapshot("default", DEFAULT_CURRENCY, Map.of(DEFAULT_CURRENCY, BigDecimal.ONE));
+    private volatile long loadedModified = -1;
+    
+    @PostConstruct
+    public void init() {
+        reloadIfChanged();
+    }
+    
+    public RateSnapshot getSnapshot() {
+        return snapshot;
+    }
+    
+    public String baseCurrency(User user) {
+        return user.getBaseCurrency() != null ? user.getBaseCurrency() : DEFAULT_CURRENCY;
+    }
+    
+    public String symbol(String currency) {
+        if (DEFAULT_CURRENCY.equals(currency)) {
+            return "₹";
+        }
+        try {
+            return Currency.getInstance(currency).getSymbol(Locale.ENGLISH);
+        } catch (IllegalArgumentException e) {
+            return currency + " ";
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${fintrack.rates.reload-interval-ms:300000}")
+    public void reloadIfChanged() {
+        Path path = Paths.get(ratesFile);
+        if (!Files.isRegularFile(path)) {
+            return;
+        }
+        try {
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            if (modified == loadedModified) {
+                return;
+            }
+            snapshot = load(path);
+            loadedModified = modified;
+            logger.info("Loaded exchange rate snapshot {} from {}", snapshot.getVersion(), path);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Could not load exchange rates from {}, keeping snapshot {}", path, snapshot.getVersion(), e);
+        }
+    }
+    
+    private RateSnapshot load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        
+        String version = properties.getProperty("version", String.valueOf(Files.getLastModifiedTime(path).toMillis()));
+        String pivot = properties.getProperty("pivot", DEFAULT_CURRENCY);
+        
+        Map<String, BigDecimal> rates = new HashMap<>();
+        rates.put(pivot, BigDecimal.ONE);
+        for (String key : properties.stringPropertyNames()) {
+            if (key.matches("[A-Z]{3}")) {
+                BigDecimal rate = new BigDecimal(properties.getProperty(key).trim());
+                if (rate.signum() <= 0) {
+                    throw new IllegalArgumentException("Rate for " + key + " must be positive");
+                }
+                rates.put(key, rate);
+            }
+        }
+        carryForward(rates, pivot);
+        return new RateSnapshot(version, pivot, rates);
+    }
+    
+    // Stored expenses keep their currency, so a file that drops a currency must
+    // not make conversions of existing amounts fail. Missing currencies keep
+    // their last known rate, rebased through a currency both tables share; if
+    // there is none the reload is rejected and the current snapshot stays.
+    private void carryForward(Map<String, BigDecimal> rates, String pivot) {
+        Map<String, BigDecimal> previous = snapshot.getRatesToPivot();
+        List<String> missing = previous.keySet().stream().filter(c -> !rates.containsKey(c)).sorted().toList();
+        if (missing.isEmpty()) {
+            return;
+        }
+        String common = previous.containsKey(pivot) ? pivot
+            : rates.keySet().stream().filter(previous::containsKey).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(
+                    "Rates file shares no currency with snapshot " + snapshot.getVersion() + ", cannot keep " + missing));
+        BigDecimal factor = rates.get(common).divide(previous.get(common), MathContext.DECIMAL64);
+        for (String currency : missing) {
+            rates.put(currency, previous.get(currency).multiply(factor, MathContext.DECIMAL64));
+        }
+        logger.warn("Rates file has no rate for {}, keeping the last known rates", missing);
+    }
+}
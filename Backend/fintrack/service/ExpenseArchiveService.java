@@ -0,0 +1,303 @@
+package com.fintrack.service;
+
+import com.fintrack.model.Expense;
+import com.fintrack.model.User;
+import com.fintrack.repository.ExpenseRepository;
+import com.fintrack.repository.ShardRouter;
+import com.fintrack.repository.UserMovingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+public class ExpenseArchiveService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ExpenseArchiveService.class);
+    private static final String SEGMENT_SUFFIX = ".seg";
+    
+    @Value("${fintrack.archive.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${fintrack.archive.dir:data/archive}")
+    private String archiveDir;
+    
+    @Value("${fintrack.archive.horizon-months:24}")
+    private int horizonMonths;
+    
+    @Autowired
+    private ExpenseRepository expenseRepository;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    private final Map<Path, ArchiveSegment> openSegments = new ConcurrentHashMap<>();
+    private final Map<Path, Long> generations = new ConcurrentHashMap<>();
+    private final Map<Long, NavigableSet<Integer>> yearsByUser = new ConcurrentHashMap<>();
+    
+    @Scheduled(cron = "${fintrack.archive.cron:0 30 3 * * *}")
+    public void archiveColdExpenses() {
+        if (!enabled) {
+            return;
+        }
+        LocalDate cutoff = getArchiveCutoff();
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            shardRouter.runOn(shard, () -> archiveShard(cutoff));
+        }
+    }
+    
+    private void archiveShard(LocalDate cutoff) {
+        for (User user : expenseRepository.findUsersWithExpensesBefore(cutoff)) {
+            try {
+                int archived = archiveUser(user, cutoff);
+                logger.info("Archived {} expenses for user {}", archived, user.getId());
+            } catch (IOException e) {
+                logger.error("Could not archive expenses for user {}", user.getId(), e);
+            } catch (UserMovingException e) {
+                // Archived on the next run, from the user's new shard.
+                logger.info("Skipped archiving user {} while they are moved to another shard", user.getId());
+            }
+        }
+    }
+    
+    public LocalDate getArchiveCutoff() {
+        return LocalDate.now().minusMonths(horizonMonths).withDayOfMonth(1);
+    }
+    
+    // Segments are written (and fsynced) before the rows are deleted, so a crash
+    // in between only leaves rows that the next run merges in again by id; until
+    // then reads skip archived copies of rows that are still live. A row is only
+    // deleted if its sync version is unchanged since it was read, so an edit that
+    // lands in between stays live and is archived on the next run, and a row
+    // deleted in between is taken out of the segment again.
+    public synchronized int archiveUser(User user, LocalDate cutoff) throws IOException {
+        List<Expense> cold = expenseRepository.findByUserAndExpenseDateBefore(user, cutoff);
+        if (cold.isEmpty()) {
+            return 0;
+        }
+        
+        Map<Integer, List<Expense>> byYear = cold.stream()
+            .collect(Collectors.groupingBy(e -> e.getExpenseDate().getYear()));
+        
+        for (Map.Entry<Integer, List<Expense>> entry : byYear.entrySet()) {
+            Path path = segmentPath(user.getId(), entry.getKey());
+            List<Expense> merged = new ArrayList<>(entry.getValue());
+            ArchiveSegment existing = segment(path);
+            if (existing != null) {
+                merged.addAll(existing.read(user, LocalDate.MIN, LocalDate.MAX));
+            }
+            replaceSegment(path, merged);
+            years(user.getId()).add(entry.getKey());
+        }
+        
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        Set<Long> deleted = transaction.execute(status -> {
+            shardRouter.lockForWrite(user.getId());
+            Set<Long> ids = new HashSet<>();
+            for (Expense expense : cold) {
+                if (expenseRepository.deleteIfUnchanged(expense.getId(), expense.getSyncVersion()) > 0) {
+                    ids.add(expense.getId());
+                }
+            }
+            return ids;
+        });
+        
+        List<Long> skipped = cold.stream().map(Expense::getId).filter(id -> !deleted.contains(id)).toList();
+        if (!skipped.isEmpty()) {
+            Set<Long> vanished = new HashSet<>(skipped);
+            vanished.removeAll(expenseRepository.findExistingIds(skipped));
+            if (!vanished.isEmpty()) {
+                for (Integer year : byYear.keySet()) {
+                    Path path = segmentPath(user.getId(), year);
+                    List<Expense> kept = new ArrayList<>(segment(path).read(user, LocalDate.MIN, LocalDate.MAX));
+                    if (kept.removeIf(e -> vanished.contains(e.getId()))) {
+                        replaceSegment(path, kept);
+                    }
+                }
+            }
+        }
+        return deleted.size();
+    }
+    
+    private void replaceSegment(Path path, List<Expense> expenses) throws IOException {
+        ArchiveSegment.write(path, expenses);
+        generations.merge(path, 1L, Long::sum);
+        openSegments.remove(path);
+    }
+    
+    public boolean hasArchive(User user) {
+        return !years(user.getId()).isEmpty();
+    }
+    
+    // Archived copies of rows that are still live (archived but not yet deleted)
+    // are left out; the live row is the current one.
+    public List<Expense> getArchivedExpenses(User user, LocalDate startDate, LocalDate endDate) {
+        List<ArchiveSegment> segments = segments(user, startDate, endDate);
+        if (segments.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<Long> live = liveIdsBeforeCutoff(user);
+        List<Expense> expenses = new ArrayList<>();
+        for (ArchiveSegment segment : segments) {
+            try {
+                for (Expense expense : segment.read(user, startDate, endDate)) {
+                    if (!live.contains(expense.getId())) {
+                        expenses.add(expense);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return expenses;
+    }
+    
+    // Block totals are used unless some archived rows are still live, in which
+    // case the rows are summed without them.
+    public Map<String, BigDecimal> getArchivedTotals(User user, LocalDate startDate, LocalDate endDate) {
+        Map<String, BigDecimal> totals = new HashMap<>();
+        List<ArchiveSegment> segments = segments(user, startDate, endDate);
+        if (segments.isEmpty()) {
+            return totals;
+        }
+        if (!liveIdsBeforeCutoff(user).isEmpty()) {
+            for (Expense expense : getArchivedExpenses(user, startDate, endDate)) {
+                totals.merge(expense.getCurrency(), expense.getAmount(), BigDecimal::add);
+            }
+            return totals;
+        }
+        for (ArchiveSegment segment : segments) {
+            try {
+                segment.total(user, startDate, endDate)
+                    .forEach((currency, amount) -> totals.merge(currency, amount, BigDecimal::add));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return totals;
+    }
+    
+    public Map<Expense.Category, Map<String, BigDecimal>> getArchivedCategoryTotals(User user, LocalDate startDate,
+                                                                                    LocalDate endDate) {
+        Map<Expense.Category, Map<String, BigDecimal>> totals = new EnumMap<>(Expense.Category.class);
+        List<ArchiveSegment> segments = segments(user, startDate, endDate);
+        if (segments.isEmpty()) {
+            return totals;
+        }
+        if (!liveIdsBeforeCutoff(user).isEmpty()) {
+            for (Expense expense : getArchivedExpenses(user, startDate, endDate)) {
+                totals.computeIfAbsent(expense.getCategory(), k -> new HashMap<>())
+                    .merge(expense.getCurrency(), expense.getAmount(), BigDecimal::add);
+            }
+            return totals;
+        }
+        for (ArchiveSegment segment : segments) {
+            try {
+                segment.categoryTotals(user, startDate, endDate).forEach((category, amounts) -> {
+                    Map<String, BigDecimal> merged = totals.computeIfAbsent(category, k -> new HashMap<>());
+                    amounts.forEach((currency, amount) -> merged.merge(currency, amount, BigDecimal::add));
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return totals;
+    }
+    
+    // Every archived row was dated before the cutoff of its run, which is never
+    // later than today's, so this covers all live rows that may also be archived.
+    // Normally empty: it only holds rows between a segment write and the delete.
+    private Set<Long> liveIdsBeforeCutoff(User user) {
+        return new HashSet<>(expenseRepository.findIdsByUserAndExpenseDateBefore(user, getArchiveCutoff()));
+    }
+    
+    private List<ArchiveSegment> segments(User user, LocalDate startDate, LocalDate endDate) {
+        NavigableSet<Integer> years = years(user.getId());
+        if (years.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<ArchiveSegment> segments = new ArrayList<>();
+        for (Integer year : years.subSet(startDate.getYear(), true, endDate.getYear(), true)) {
+            try {
+                ArchiveSegment segment = segment(segmentPath(user.getId(), year));
+                if (segment != null) {
+                    segments.add(segment);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return segments;
+    }
+    
+    // The file is opened outside the map; it is only cached if no rewrite of the
+    // path happened since, so a mapping of a replaced file is never put back.
+    private ArchiveSegment segment(Path path) throws IOException {
+        ArchiveSegment segment = openSegments.get(path);
+        if (segment != null) {
+            return segment;
+        }
+        long generation = generations.getOrDefault(path, 0L);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        ArchiveSegment opened = ArchiveSegment.open(path);
+        ArchiveSegment cached = openSegments.compute(path, (p, current) -> {
+            if (current != null) {
+                return current;
+            }
+            return generations.getOrDefault(p, 0L) == generation ? opened : null;
+        });
+        return cached != null ? cached : opened;
+    }
+    
+    private NavigableSet<Integer> years(Long userId) {
+        return yearsByUser.computeIfAbsent(userId, id -> {
+            NavigableSet<Integer> years = new ConcurrentSkipListSet<>();
+            Path dir = Paths.get(archiveDir, String.valueOf(id));
+            if (Files.isDirectory(dir)) {
+                try (Stream<Path> files = Files.list(dir)) {
+                    files.map(p -> p.getFileName().toString())
+                        .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                        .map(name -> Integer.valueOf(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                        .forEach(years::add);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return years;
+        });
+    }
+    
+    private Path segmentPath(Long userId, int year) {
+        return Paths.get(archiveDir, String.valueOf(userId), year + SEGMENT_SUFFIX);
+    }
+}
@@ -0,0 +1,132 @@
+package com.fintrack.service;
+
+import com.fintrack.model.Expense;
+import com.fintrack.model.User;
+import com.fintrack.repository.ExpenseRepository;
+import com.fintrack.repository.ExpenseSyncStateRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Vendor and title suggestions served from per-user in-memory prefix indexes.
+ * An index is seeded with two GROUP BY queries the first time a user types,
+ * then kept current from expense change events, so a keystroke never touches
+ * the database.
+ */
+@Service
+public class ExpenseAutocompleteService {
+    
+    public enum Field {
+        VENDOR,
+        TITLE
+    }
+    
+    @Value("${fintrack.autocomplete.max-results:8}")
+    private int maxResults;
+    
+    @Value("${fintrack.autocomplete.idle-eviction-minutes:30}")
+    private long idleEvictionMinutes;
+    
+    @Autowired
+    private ExpenseRepository expenseRepository;
+    
+    @Autowired
+    private ExpenseSyncStateRepository syncStateRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    private UserStateCache<UserIndex> indexes;
+    
+    @PostConstruct
+    public void init() {
+        indexes = new UserStateCache<>(this::apply, syncStateRepository, transactionManager);
+    }
+    
+    public List<String> suggest(User user, Field field, String prefix, Integer limit) {
+        int size = limit == null ? maxResults : Math.max(1, Math.min(limit, maxResults));
+        UserIndex index = indexes.get(user.getId(), () -> load(user));
+        index.lastAccess = System.nanoTime();
+        return index.get(field).complete(prefix, size);
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onExpenseChange(ExpenseChangeEvent event) {
+        indexes.apply(event);
+    }
+    
+    @Scheduled(fixedDelayString = "${fintrack.autocomplete.eviction-interval-ms:300000}")
+    public void evictIdle() {
+        long cutoff = System.nanoTime() - idleEvictionMinutes * 60_000_000_000L;
+        indexes.removeIf(index -> index.lastAccess - cutoff < 0);
+    }
+    
+    private void apply(UserIndex index, ExpenseChangeEvent event) {
+        Instant now = Instant.now();
+        Expense expense = event.getExpense();
+        Expense previous = event.getPrevious();
+        switch (event.getType()) {
+            case CREATED -> {
+                index.vendors.add(expense.getVendor(), now);
+                index.titles.add(expense.getTitle(), now);
+            }
+            case UPDATED -> {
+                if (!sameTerm(previous.getVendor(), expense.getVendor())) {
+                    index.vendors.remove(previous.getVendor());
+                    index.vendors.add(expense.getVendor(), now);
+                }
+                if (!sameTerm(previous.getTitle(), expense.getTitle())) {
+                    index.titles.remove(previous.getTitle());
+                    index.titles.add(expense.getTitle(), now);
+                }
+            }
+            case DELETED -> {
+                index.vendors.remove(expense.getVendor());
+                index.titles.remove(expense.getTitle());
+            }
+        }
+    }
+    
+    private UserIndex load(User user) {
+        UserIndex index = new UserIndex();
+        seed(index.vendors, expenseRepository.getVendorUsage(user));
+        seed(index.titles, expenseRepository.getTitleUsage(user));
+        return index;
+    }
+    
+    private void seed(PrefixIndex index, List<Object[]> usage) {
+        for (Object[] row : usage) {
+            LocalDateTime lastUsed = (LocalDateTime) row[2];
+            Instant usedAt = lastUsed != null ? lastUsed.atZone(ZoneId.systemDefault()).toInstant() : Instant.now();
+            index.add((String) row[0], ((Long) row[1]).intValue(), usedAt);
+        }
+    }
+    
+    private boolean sameTerm(String a, String b) {
+        return Objects.equals(a == null ? null : a.trim().toLowerCase(Locale.ROOT),
+            b == null ? null : b.trim().toLowerCase(Locale.ROOT));
+    }
+    
+    private static final class UserIndex {
+        
+        private final PrefixIndex vendors = new PrefixIndex();
+        private final PrefixIndex titles = new PrefixIndex();
+        private volatile long lastAccess = System.nanoTime();
+        
+        private PrefixIndex get(Field field) {
+            return field == Field.VENDOR ? vendors : titles;
+        }
+    }
+}
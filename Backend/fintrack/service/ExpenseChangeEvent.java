@@ -0,0 +1,29 @@
+package com.fintrack.service;
+
+import com.fintrack.model.Expense;
+import com.fintrack.model.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Published by {@link ExpenseService} after every successful write. For updates
+ * {@code previous} holds a detached copy of the row as it was before the change;
+ * for deletes {@code expense} is the row that was removed. {@code version} is
+ * the user's sync version assigned to the change.
+ */
+@Data
+@AllArgsConstructor
+public class ExpenseChangeEvent {
+    
+    private Type type;
+    private User user;
+    private Expense expense;
+    private Expense previous;
+    private long version;
+    
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+}
@@ -0,0 +1,340 @@
+package com.fintrack.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintrack.dto.ExpenseChangeMessage;
+import com.fintrack.dto.ExpenseResponse;
+import com.fintrack.model.Expense;
+import com.fintrack.model.User;
+import com.fintrack.repository.ShardRouter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes compact expense change events to each user's open SSE connections.
+ *
+ * Publishing never blocks the writer: the payload is serialized once, appended
+ * to every connection's queue, and a small pool of writer threads, separate from
+ * the one building messages, drains the queues. A connection whose queue grows
+ * past its bound, or whose socket write takes longer than write-timeout-ms, is a
+ * slow consumer and is closed; the client reconnects and refetches. Idle
+ * connections hold no thread and no buffer, only the emitter and an empty queue.
+ */
+@Service
+public class ExpenseEventBroadcaster {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ExpenseEventBroadcaster.class);
+    
+    @Value("${fintrack.stream.timeout-ms:1800000}")
+    private long timeoutMillis;
+    
+    @Value("${fintrack.stream.max-queued:32}")
+    private int maxQueued;
+    
+    @Value("${fintrack.stream.max-connections-per-user:5}")
+    private int maxConnectionsPerUser;
+    
+    @Value("${fintrack.stream.write-timeout-ms:10000}")
+    private long writeTimeoutMillis;
+    
+    @Autowired
+    private ExpenseService expenseService;
+    
+    @Autowired
+    private ExchangeRateService exchangeRateService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    private final Map<Long, Set<Connection>> connections = new ConcurrentHashMap<>();
+    private final Map<Long, CompletableFuture<Void>> publishing = new ConcurrentHashMap<>();
+    private final AtomicInteger threadNumber = new AtomicInteger();
+    private final ExecutorService dispatcher = Executors.newFixedThreadPool(
+        Math.max(2, Runtime.getRuntime().availableProcessors() / 2),
+        runnable -> {
+            Thread thread = new Thread(runnable, "expense-stream-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    // Blocking SSE writes run here, so a stalled client holds a writer thread,
+    // never the dispatcher, and is dropped after the write timeout.
+    private final ExecutorService writers = Executors.newFixedThreadPool(
+        Math.max(2, Runtime.getRuntime().availableProcessors() / 2),
+        runnable -> {
+            Thread thread = new Thread(runnable, "expense-stream-writer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    private final ScheduledThreadPoolExecutor writeTimeouts = newWriteTimeouts();
+    
+    public SseEmitter subscribe(User user) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Connection connection = new Connection(user.getId(), emitter);
+        Set<Connection> existing = connections.get(user.getId());
+        if (existing != null && existing.size() >= maxConnectionsPerUser) {
+            existing.stream().findFirst().ifPresent(Connection::close);
+        }
+        connections.compute(user.getId(), (id, userConnections) -> {
+            Set<Connection> set = userConnections != null ? userConnections : ConcurrentHashMap.newKeySet();
+            set.add(connection);
+            return set;
+        });
+        
+        emitter.onCompletion(connection::close);
+        emitter.onTimeout(connection::close);
+        emitter.onError(e -> connection.close());
+        
+        connection.offer("ready", "{}");
+        return emitter;
+    }
+    
+    public boolean hasSubscribers(Long userId) {
+        Set<Connection> userConnections = connections.get(userId);
+        return userConnections != null && !userConnections.isEmpty();
+    }
+    
+    // After commit, so a client that refetches on the push sees the change. The
+    // month totals need queries, so the message is built on the dispatcher rather
+    // than the committing thread; one user's messages stay in commit order.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onExpenseChange(ExpenseChangeEvent event) {
+        Long userId = event.getUser().getId();
+        if (!hasSubscribers(userId)) {
+            return;
+        }
+        CompletableFuture<Void> next = publishing.compute(userId, (id, tail) ->
+            (tail != null ? tail : CompletableFuture.<Void>completedFuture(null))
+                .thenRunAsync(() -> publish(event), dispatcher));
+        next.whenComplete((ignored, e) -> publishing.remove(userId, next));
+    }
+    
+    private void publish(ExpenseChangeEvent event) {
+        User user = event.getUser();
+        if (!hasSubscribers(user.getId())) {
+            return;
+        }
+        try {
+            String payload = objectMapper.writeValueAsString(
+                shardRouter.callForUser(user.getId(), () -> toMessage(event)));
+            for (Connection connection : connections.getOrDefault(user.getId(), Set.of())) {
+                connection.offer("expense", payload);
+            }
+        } catch (JsonProcessingException | RuntimeException e) {
+            logger.error("Could not publish expense change for user {}", user.getId(), e);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${fintrack.stream.heartbeat-ms:25000}")
+    public void heartbeat() {
+        for (Set<Connection> userConnections : connections.values()) {
+            for (Connection connection : userConnections) {
+                connection.offer(null, null);
+            }
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        connections.values().forEach(set -> set.forEach(Connection::close));
+        dispatcher.shutdown();
+        writers.shutdownNow();
+        writeTimeouts.shutdownNow();
+    }
+    
+    private static ScheduledThreadPoolExecutor newWriteTimeouts() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "expense-stream-timeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Every send schedules one and nearly all are cancelled.
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+    
+    private ExpenseChangeMessage toMessage(ExpenseChangeEvent event) {
+        User user = event.getUser();
+        Expense expense = event.getExpense();
+        List<ExpenseChangeMessage.CategoryDelta> deltas = new ArrayList<>();
+        
+        if (event.getPrevious() != null) {
+            deltas.add(delta(user, event.getPrevious(), -1));
+        }
+        deltas.add(delta(user, expense, event.getType() == ExpenseChangeEvent.Type.DELETED ? -1 : 1));
+        
+        // Only the months touched by this change are re-totalled, with one aggregate query each.
+        Map<String, BigDecimal> monthTotals = new LinkedHashMap<>();
+        for (ExpenseChangeMessage.CategoryDelta delta : deltas) {
+            if (!monthTotals.containsKey(delta.getMonth())) {
+                YearMonth month = YearMonth.parse(delta.getMonth());
+                monthTotals.put(delta.getMonth(),
+                    expenseService.getTotalExpensesByDateRange(user, month.atDay(1), month.atEndOfMonth()));
+            }
+        }
+        
+        ExpenseResponse response = event.getType() == ExpenseChangeEvent.Type.DELETED
+            ? null
+            : ExpenseResponse.fromExpense(expense);
+        return new ExpenseChangeMessage(event.getType(), expense.getId(), response, deltas, monthTotals);
+    }
+    
+    private ExpenseChangeMessage.CategoryDelta delta(User user, Expense expense, int sign) {
+        BigDecimal amount = exchangeRateService.getSnapshot()
+            .convert(expense.getAmount(), expense.getCurrency(), exchangeRateService.baseCurrency(user))
+            .setScale(2, RoundingMode.HALF_UP);
+        LocalDate date = expense.getExpenseDate();
+        return new ExpenseChangeMessage.CategoryDelta(
+            YearMonth.from(date).toString(),
+            expense.getCategory().name(),
+            sign < 0 ? amount.negate() : amount,
+            sign);
+    }
+    
+    private final class Connection {
+        
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final Queue<String[]> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // The writer thread while a send is in progress; guarded by this.
+        private Thread sending;
+        
+        private Connection(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+        
+        // A null name is a heartbeat comment.
+        private void offer(String name, String payload) {
+            if (closed.get()) {
+                return;
+            }
+            if (queued.incrementAndGet() > maxQueued) {
+                logger.debug("Dropping slow expense stream consumer for user {}", userId);
+                close();
+                return;
+            }
+            pending.add(new String[] {name, payload});
+            if (draining.compareAndSet(false, true)) {
+                writers.execute(this::drain);
+            }
+        }
+        
+        private void drain() {
+            try {
+                String[] event;
+                while (!closed.get() && (event = pending.poll()) != null) {
+                    queued.decrementAndGet();
+                    send(event);
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+                return;
+            } finally {
+                // A timeout that fired as the send finished may have left the flag set.
+                Thread.interrupted();
+                draining.set(false);
+            }
+            if (!pending.isEmpty() && !closed.get() && draining.compareAndSet(false, true)) {
+                writers.execute(this::drain);
+            }
+        }
+        
+        private void send(String[] event) throws IOException {
+            synchronized (this) {
+                sending = Thread.currentThread();
+            }
+            ScheduledFuture<?> timeout = writeTimeouts.schedule(this::writeTimedOut, writeTimeoutMillis,
+                TimeUnit.MILLISECONDS);
+            try {
+                if (event[0] == null) {
+                    emitter.send(SseEmitter.event().comment("keep-alive"));
+                } else {
+                    emitter.send(SseEmitter.event().name(event[0]).data(event[1], MediaType.APPLICATION_JSON));
+                }
+            } finally {
+                timeout.cancel(false);
+                synchronized (this) {
+                    sending = null;
+                }
+                if (closed.get()) {
+                    complete();
+                }
+            }
+        }
+        
+        // The interrupt makes the container's blocking write fail, which frees
+        // the writer thread without waiting for its socket timeout.
+        private void writeTimedOut() {
+            logger.debug("Dropping stalled expense stream consumer for user {}", userId);
+            synchronized (this) {
+                if (sending != null) {
+                    sending.interrupt();
+                }
+            }
+            close();
+        }
+        
+        // Safe from any thread: the emitter serializes complete() with a send in
+        // progress, so while one is, the writer completes it when the send ends.
+        private void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            pending.clear();
+            connections.computeIfPresent(userId, (id, userConnections) -> {
+                userConnections.remove(this);
+                return userConnections.isEmpty() ? null : userConnections;
+            });
+            synchronized (this) {
+                if (sending != null) {
+                    return;
+                }
+            }
+            complete();
+        }
+        
+        private void complete() {
+            try {
+                emitter.complete();
+            } catch (IllegalStateException e) {
+                // already completed by the container
+            }
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.fintrack.service;
+
+import com.fintrack.model.ExpenseSyncState;
+import com.fintrack.model.User;
+import com.fintrack.repository.ExpenseSyncStateRepository;
+import com.fintrack.repository.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Append-only audit journal of every committed expense change, kept in
+ * memory-mapped segment files outside the database so auditing adds no MySQL
+ * writes. An append is a copy into the mapped file under a short lock; pages
+ * are flushed to disk on a timer, so a process crash loses nothing already
+ * appended and an OS crash at most the last flush interval. Segments roll over
+ * at a fixed size and are never rewritten.
+ *
+ * Appends run after the database commit, so a change whose append fails, or
+ * that was committed just before a crash, is in the database but not here.
+ * Failed appends are counted in journal.append.failures, and at startup each
+ * user's newest journaled sync version is compared with expense_sync_state;
+ * the versions missing are logged and reported as journal.missing.versions.
+ * Users with nothing journaled are not checked (their history predates the
+ * journal), and with several instances each journals only its own writes.
+ *
+ * Entries can be read back per user and time range, or replayed in order
+ * from any sequence to rebuild rollups, caches or another database. The time
+ * range of every sealed segment is kept in memory from its index header, so a
+ * history read maps only the segments it needs, and only the most recently
+ * used sealed segments stay mapped.
+ */
+@Service
+public class ExpenseJournal {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ExpenseJournal.class);
+    private static final String SEGMENT_SUFFIX = ".jnl";
+    
+    @Value("${fintrack.journal.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${fintrack.journal.dir:data/journal}")
+    private String journalDir;
+    
+    @Value("${fintrack.journal.segment-bytes:67108864}")
+    private int segmentBytes;
+    
+    @Value("${fintrack.journal.max-open-segments:16}")
+    private int maxOpenSegments;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Autowired
+    private ExpenseSyncStateRepository syncStateRepository;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private final NavigableMap<Long, SealedSegment> sealedSegments = new ConcurrentSkipListMap<>();
+    
+    // Least recently used first; guarded by itself.
+    private final Map<Long, JournalSegment> openSegments = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, JournalSegment> eldest) {
+            return size() > maxOpenSegments;
+        }
+    };
+    
+    private volatile JournalSegment active;
+    private long lastTimestamp;
+    private Counter appendFailures;
+    private final AtomicLong missingVersions = new AtomicLong();
+    
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        appendFailures = Counter.builder("journal.append.failures")
+            .description("Committed expense changes that could not be written to the journal")
+            .register(meterRegistry);
+        Gauge.builder("journal.missing.versions", missingVersions, AtomicLong::get)
+            .description("Sync versions in expense_sync_state newer than the journal held at startup")
+            .register(meterRegistry);
+        Path dir = Paths.get(journalDir);
+        Files.createDirectories(dir);
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(dir)) {
+            paths = files.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+        
+        // The newest segment is the one being written unless it was sealed just
+        // before a restart.
+        Path last = paths.isEmpty() ? null : paths.get(paths.size() - 1);
+        boolean resume = last != null && !JournalSegment.isSealed(last);
+        for (Path path : resume ? paths.subList(0, paths.size() - 1) : paths) {
+            addSealed(path);
+        }
+        if (resume) {
+            active = JournalSegment.openActive(last, segmentBytes);
+            if (!active.isCurrentFormat()) {
+                rotate();
+            }
+        } else {
+            long next = paths.isEmpty() ? 0 : segment(sealedSegments.lastKey()).getNextSequence();
+            active = JournalSegment.create(segmentPath(next), next, segmentBytes);
+        }
+        logger.info("Expense journal open at sequence {}", active.getNextSequence());
+    }
+    
+    // Runs after commit, so only changes that actually happened are recorded.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onExpenseChange(ExpenseChangeEvent event) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            append(event);
+        } catch (IOException | RuntimeException e) {
+            appendFailures.increment();
+            logger.error("Could not journal {} of expense {}", event.getType(), event.getExpense().getId(), e);
+        }
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void bootstrap() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::checkForGaps, "expense-journal-gap-check");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    // Sync state is read before the journal, which only grows, so a change that
+    // commits during the check is not reported unless its append is lost.
+    // Returns the number of missing versions per user.
+    Map<Long, Long> checkForGaps() {
+        try {
+            List<List<ExpenseSyncState>> states = shardRouter.scatter(shard -> syncStateRepository.findAll());
+            Map<Long, Long> journaled = new HashMap<>();
+            replay(0, entry -> journaled.merge(entry.getUserId(), entry.getVersion(), Math::max));
+            
+            Map<Long, Long> gaps = new TreeMap<>();
+            for (List<ExpenseSyncState> shardStates : states) {
+                for (ExpenseSyncState state : shardStates) {
+                    Long newest = journaled.get(state.getUserId());
+                    if (newest != null && state.getLastVersion() > newest) {
+                        gaps.put(state.getUserId(), state.getLastVersion() - newest);
+                    }
+                }
+            }
+            long missing = gaps.values().stream().mapToLong(Long::longValue).sum();
+            missingVersions.set(missing);
+            if (!gaps.isEmpty()) {
+                logger.warn("Expense journal is missing {} changes for {} users", missing, gaps.size());
+                logger.debug("Missing journal changes by user: {}", gaps);
+            }
+            return gaps;
+        } catch (RuntimeException e) {
+            logger.error("Could not check the expense journal against the sync state", e);
+            return Map.of();
+        }
+    }
+    
+    public synchronized long append(ExpenseChangeEvent event) throws IOException {
+        long timestamp = Math.max(System.currentTimeMillis(), lastTimestamp);
+        long sequence = active.append(timestamp, event);
+        if (sequence < 0) {
+            rotate();
+            sequence = active.append(timestamp, event);
+            if (sequence < 0) {
+                throw new IOException("Journal record is larger than a segment");
+            }
+        }
+        lastTimestamp = timestamp;
+        return sequence;
+    }
+    
+    @Scheduled(fixedDelayString = "${fintrack.journal.force-interval-ms:1000}")
+    public void force() {
+        JournalSegment segment = active;
+        if (segment != null) {
+            segment.force();
+        }
+    }
+    
+    @PreDestroy
+    public void close() {
+        force();
+    }
+    
+    // One user's changes with from <= timestamp <= to (epoch millis), oldest first.
+    public List<JournalEntry> getHistory(User user, long from, long to) {
+        JournalSegment current = active;
+        if (current == null) {
+            return List.of();
+        }
+        List<JournalEntry> entries = new ArrayList<>();
+        for (Map.Entry<Long, SealedSegment> entry : sealedSegments.entrySet()) {
+            if (entry.getKey() < current.getBaseSequence() && entry.getValue().overlaps(from, to)) {
+                entries.addAll(segment(entry.getKey()).read(user.getId(), from, to));
+            }
+        }
+        if (current.overlaps(from, to)) {
+            entries.addAll(current.read(user.getId(), from, to));
+        }
+        return entries;
+    }
+    
+    public void replay(long fromSequence, Consumer<JournalEntry> consumer) {
+        for (JournalSegment segment : segments(fromSequence)) {
+            segment.forEach(fromSequence, consumer);
+        }
+    }
+    
+    private synchronized void rotate() throws IOException {
+        JournalSegment sealed = active;
+        sealed.seal();
+        synchronized (openSegments) {
+            openSegments.put(sealed.getBaseSequence(), sealed);
+        }
+        sealedSegments.put(sealed.getBaseSequence(),
+            new SealedSegment(sealed.getPath(), sealed.getFirstTimestamp(), sealed.getLastTimestamp()));
+        long next = sealed.getNextSequence();
+        active = JournalSegment.create(segmentPath(next), next, segmentBytes);
+        logger.info("Sealed journal segment {}, next starts at sequence {}", sealed.getPath(), next);
+    }
+    
+    // Sealed segments that can hold fromSequence or later, then the active one.
+    private List<JournalSegment> segments(long fromSequence) {
+        JournalSegment current = active;
+        if (current == null) {
+            return List.of();
+        }
+        Long first = sealedSegments.floorKey(fromSequence);
+        List<JournalSegment> segments = new ArrayList<>();
+        for (Long base : (first != null ? sealedSegments.tailMap(first, true) : sealedSegments).keySet()) {
+            if (base < current.getBaseSequence()) {
+                segments.add(segment(base));
+            }
+        }
+        segments.add(current);
+        return segments;
+    }
+    
+    private JournalSegment segment(long baseSequence) {
+        synchronized (openSegments) {
+            JournalSegment segment = openSegments.get(baseSequence);
+            if (segment == null) {
+                try {
+                    segment = JournalSegment.openSealed(sealedSegments.get(baseSequence).path());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                openSegments.put(baseSequence, segment);
+            }
+            return segment;
+        }
+    }
+    
+    // A segment whose index is missing is opened once, which rebuilds the index.
+    private void addSealed(Path path) throws IOException {
+        long[] range = JournalSegment.readTimeRange(path);
+        if (range == null) {
+            JournalSegment segment = JournalSegment.openSealed(path);
+            range = new long[] {segment.getFirstTimestamp(), segment.getLastTimestamp()};
+        }
+        sealedSegments.put(baseSequence(path), new SealedSegment(path, range[0], range[1]));
+    }
+    
+    private long baseSequence(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+    
+    private Path segmentPath(long baseSequence) {
+        return Paths.get(journalDir, String.format("%020d", baseSequence) + SEGMENT_SUFFIX);
+    }
+    
+    private record SealedSegment(Path path, long firstTimestamp, long lastTimestamp) {
+        
+        private boolean overlaps(long from, long to) {
+            return firstTimestamp <= to && lastTimestamp >= from;
+        }
+    }
+}
@@ -1,26 +1,86 @@
 package com.fintrack.service;
 
+import com.fintrack.dto.ExpenseFields;
+import com.fintrack.dto.ExpenseImportResponse;
 import com.fintrack.dto.ExpenseRequest;
+import com.fintrack.dto.ExpenseResponse;
+import com.fintrack.dto.ExpenseSearchRequest;
 import com.fintrack.model.Expense;
+import com.fintrack.model.ExpenseTombstone;
 import com.fintrack.model.User;
 import com.fintrack.repository.ExpenseRepository;
+import com.fintrack.repository.ExpenseSpecifications;
+import com.fintrack.repository.ExpenseSyncStateRepository;
+import com.fintrack.repository.ExpenseTombstoneRepository;
+import com.fintrack.repository.ShardRouter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 public class ExpenseService {
     
+    private static final Map<String, Comparator<Expense>> SORTABLE_FIELDS = Map.of(
+        "expenseDate", Comparator.comparing(Expense::getExpenseDate),
+        "amount", Comparator.comparing(Expense::getAmount),
+        "title", Comparator.comparing(Expense::getTitle, String.CASE_INSENSITIVE_ORDER),
+        "createdAt", Comparator.comparing(Expense::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder())));
+    
     @Autowired
     private ExpenseRepository expenseRepository;
     
+    @Autowired
+    private ExpenseArchiveService expenseArchiveService;
+    
+    @Autowired
+    private ExchangeRateService exchangeRateService;
+    
+    @Autowired
+    private ReceiptService receiptService;
+    
+    @Autowired
+    private ExpenseSyncStateRepository syncStateRepository;
+    
+    @Autowired
+    private ExpenseTombstoneRepository tombstoneRepository;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private GroupCommitWriter groupCommitWriter;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Autowired
+    private DuplicateDetectionService duplicateDetectionService;
+    
+    @Value("${fintrack.duplicates.policy:FLAG}")
+    private DuplicateDetectionService.Policy defaultDuplicatePolicy;
+    
     public List<Expense> getAllExpenses(User user) {
-        return expenseRepository.findByUserOrderByExpenseDateDesc(user);
+        List<Expense> expenses = expenseRepository.findByUserOrderByExpenseDateDesc(user);
+        if (!expenseArchiveService.hasArchive(user)) {
+            return expenses;
+        }
+        return mergeWithArchive(expenses,
+            expenseArchiveService.getArchivedExpenses(user, LocalDate.MIN, LocalDate.MAX));
     }
     
     public Expense getExpenseById(Long id, User user) {
@@ -35,67 +95,402 @@ public class ExpenseService {
     }
     
     public Expense createExpense(ExpenseRequest request, User user) {
+        return createExpense(request, user, null);
+    }
+    
+    // Runs in its own transaction, or in a shared one with other requests' inserts
+    // when group commit is enabled; either way it returns only after the commit.
+    // A likely duplicate is rejected with DuplicateExpenseException under SKIP and
+    // reported on the returned expense under FLAG. The check also sees creates of
+    // the same expense that are still in flight; those are flagged without an id.
+    public Expense createExpense(ExpenseRequest request, User user, DuplicateDetectionService.Policy policy) {
+        String currency = resolveCurrency(request, user);
+        DuplicateDetectionService.Policy effective = policy != null ? policy : defaultDuplicatePolicy;
+        if (effective == DuplicateDetectionService.Policy.ALLOW) {
+            return insertExpense(request, user, currency);
+        }
+        
+        DuplicateDetectionService.Reservation reservation = duplicateDetectionService.reserve(user,
+            request.getAmount(), currency, request.getExpenseDate(), request.getVendor(), request.getTitle());
+        try {
+            if (reservation.isDuplicate() && effective == DuplicateDetectionService.Policy.SKIP) {
+                throw new DuplicateExpenseException(reservation.getDuplicateIds());
+            }
+            Expense created = insertExpense(request, user, currency);
+            flagDuplicates(created, reservation);
+            return created;
+        } finally {
+            duplicateDetectionService.release(reservation);
+        }
+    }
+    
+    private Expense insertExpense(ExpenseRequest request, User user, String currency) {
+        return groupCommitWriter.write(user.getId(), () -> saveExpense(request, user, currency));
+    }
+    
+    private Expense saveExpense(ExpenseRequest request, User user, String currency) {
         Expense expense = new Expense();
         expense.setUser(user);
         expense.setTitle(request.getTitle());
         expense.setDescription(request.getDescription());
         expense.setAmount(request.getAmount());
+        expense.setCurrency(currency);
         expense.setCategory(request.getCategory());
         expense.setExpenseDate(request.getExpenseDate());
         expense.setPaymentMethod(request.getPaymentMethod());
         expense.setVendor(request.getVendor());
+        expense.setSyncVersion(nextSyncVersion(user));
         
-        return expenseRepository.save(expense);
+        Expense saved = expenseRepository.save(expense);
+        eventPublisher.publishEvent(new ExpenseChangeEvent(ExpenseChangeEvent.Type.CREATED, user, saved, null,
+            saved.getSyncVersion()));
+        return saved;
+    }
+    
+    private static void flagDuplicates(Expense created, DuplicateDetectionService.Reservation reservation) {
+        List<Long> duplicates = reservation.getDuplicateIds();
+        created.setPossibleDuplicate(reservation.isDuplicate());
+        created.setPossibleDuplicates(duplicates.isEmpty() ? null : duplicates);
+    }
+    
+    // Every row is checked and reserved first, so a row repeated within the same
+    // import is caught like any other create in flight. The accepted rows are then
+    // inserted in one transaction and the reservations released after it. If that
+    // transaction fails, none of its rows is created and each is reported skipped.
+    public ExpenseImportResponse importExpenses(List<ExpenseRequest> requests, User user,
+                                                DuplicateDetectionService.Policy policy) {
+        DuplicateDetectionService.Policy effective = policy != null ? policy : defaultDuplicatePolicy;
+        ExpenseImportResponse response = new ExpenseImportResponse();
+        List<ImportRow> accepted = new ArrayList<>();
+        try {
+            for (int i = 0; i < requests.size(); i++) {
+                ExpenseRequest request = requests.get(i);
+                try {
+                    String currency = resolveCurrency(request, user);
+                    DuplicateDetectionService.Reservation reservation = effective == DuplicateDetectionService.Policy.ALLOW
+                        ? null
+                        : duplicateDetectionService.reserve(user, request.getAmount(), currency,
+                            request.getExpenseDate(), request.getVendor(), request.getTitle());
+                    if (reservation != null && reservation.isDuplicate()
+                            && effective == DuplicateDetectionService.Policy.SKIP) {
+                        duplicateDetectionService.release(reservation);
+                        DuplicateExpenseException duplicate = new DuplicateExpenseException(reservation.getDuplicateIds());
+                        response.getSkipped().add(new ExpenseImportResponse.SkippedRow(i, duplicate.getMessage(),
+                            duplicate.getDuplicateIds()));
+                        continue;
+                    }
+                    accepted.add(new ImportRow(i, request, currency, reservation));
+                } catch (RuntimeException e) {
+                    response.getSkipped().add(new ExpenseImportResponse.SkippedRow(i, e.getMessage(), List.of()));
+                }
+            }
+            if (accepted.isEmpty()) {
+                return response;
+            }
+            
+            List<Expense> created;
+            try {
+                created = groupCommitWriter.write(user.getId(), () -> {
+                    List<Expense> saved = new ArrayList<>(accepted.size());
+                    for (ImportRow row : accepted) {
+                        saved.add(saveExpense(row.request(), user, row.currency()));
+                    }
+                    return saved;
+                });
+            } catch (RuntimeException e) {
+                for (ImportRow row : accepted) {
+                    response.getSkipped().add(new ExpenseImportResponse.SkippedRow(row.index(), e.getMessage(), List.of()));
+                }
+                response.getSkipped().sort(Comparator.comparingInt(ExpenseImportResponse.SkippedRow::getIndex));
+                return response;
+            }
+            for (int i = 0; i < created.size(); i++) {
+                Expense expense = created.get(i);
+                if (accepted.get(i).reservation() != null) {
+                    flagDuplicates(expense, accepted.get(i).reservation());
+                }
+                response.getCreated().add(ExpenseResponse.fromExpense(expense));
+            }
+            return response;
+        } finally {
+            for (ImportRow row : accepted) {
+                if (row.reservation() != null) {
+                    duplicateDetectionService.release(row.reservation());
+                }
+            }
+        }
     }
     
+    @Transactional
     public Expense updateExpense(Long id, ExpenseRequest request, User user) {
         Expense expense = getExpenseById(id, user);
+        Expense previous = copyOf(expense);
         
         expense.setTitle(request.getTitle());
         expense.setDescription(request.getDescription());
         expense.setAmount(request.getAmount());
+        expense.setCurrency(resolveCurrency(request, user));
         expense.setCategory(request.getCategory());
         expense.setExpenseDate(request.getExpenseDate());
         expense.setPaymentMethod(request.getPaymentMethod());
         expense.setVendor(request.getVendor());
+        expense.setSyncVersion(nextSyncVersion(user));
         
-        return expenseRepository.save(expense);
+        Expense saved = expenseRepository.save(expense);
+        eventPublisher.publishEvent(new ExpenseChangeEvent(ExpenseChangeEvent.Type.UPDATED, user, saved, previous,
+            saved.getSyncVersion()));
+        return saved;
     }
     
+    @Transactional
     public void deleteExpense(Long id, User user) {
         Expense expense = getExpenseById(id, user);
+        receiptService.deleteReceipts(expense.getId(), user);
         expenseRepository.delete(expense);
+        long version = nextSyncVersion(user);
+        tombstoneRepository.save(new ExpenseTombstone(null, user.getId(), expense.getId(), version, null));
+        eventPublisher.publishEvent(new ExpenseChangeEvent(ExpenseChangeEvent.Type.DELETED, user, expense, null, version));
     }
     
     public List<Expense> getExpensesByDateRange(User user, LocalDate startDate, LocalDate endDate) {
-        return expenseRepository.findByUserAndExpenseDateBetweenOrderByExpenseDateDesc(
+        List<Expense> expenses = expenseRepository.findByUserAndExpenseDateBetweenOrderByExpenseDateDesc(
             user, startDate, endDate);
+        if (!expenseArchiveService.hasArchive(user)) {
+            return expenses;
+        }
+        return mergeWithArchive(expenses,
+            expenseArchiveService.getArchivedExpenses(user, startDate, endDate));
     }
     
     public List<Expense> getExpensesByCategory(User user, Expense.Category category) {
-        return expenseRepository.findByUserAndCategoryOrderByExpenseDateDesc(user, category);
+        List<Expense> expenses = expenseRepository.findByUserAndCategoryOrderByExpenseDateDesc(user, category);
+        if (!expenseArchiveService.hasArchive(user)) {
+            return expenses;
+        }
+        List<Expense> archived = expenseArchiveService.getArchivedExpenses(user, LocalDate.MIN, LocalDate.MAX);
+        archived.removeIf(e -> e.getCategory() != category);
+        return mergeWithArchive(expenses, archived);
+    }
+    
+    // Filtering and sorting run in the database. Archived rows are only read when the
+    // range reaches back past the archive cutoff, and are filtered the same way here.
+    public List<Expense> searchExpenses(User user, ExpenseSearchRequest request) {
+        Sort sort = searchSort(request);
+        List<Expense> expenses = expenseRepository.findAll(ExpenseSpecifications.matching(user, request), sort);
+        
+        List<Expense> archived = archivedMatches(user, request);
+        if (archived.isEmpty()) {
+            return expenses;
+        }
+        
+        Sort.Order order = sort.iterator().next();
+        Comparator<Expense> comparator = SORTABLE_FIELDS.get(order.getProperty());
+        List<Expense> merged = new ArrayList<>(expenses);
+        merged.addAll(archived);
+        merged.sort(order.isAscending() ? comparator : comparator.reversed());
+        return merged;
+    }
+    
+    // Sparse variant of searchExpenses: only the requested columns are selected.
+    // The sort column is also read when it was not requested, so archived rows
+    // can be merged in order, and is dropped again before returning.
+    public List<Map<String, Object>> searchExpenseFields(User user, ExpenseSearchRequest request,
+                                                         Set<String> fields) {
+        Sort sort = searchSort(request);
+        Sort.Order order = sort.iterator().next();
+        Set<String> columns = ExpenseFields.columns(fields);
+        boolean extraSortColumn = columns.add(order.getProperty());
+        
+        List<Map<String, Object>> rows = expenseRepository.findColumns(
+            ExpenseSpecifications.matching(user, request), sort, columns);
+        if (fields.contains(ExpenseFields.ARCHIVED)) {
+            rows.forEach(row -> row.put(ExpenseFields.ARCHIVED, false));
+        }
+        
+        List<Expense> archived = archivedMatches(user, request);
+        if (!archived.isEmpty()) {
+            Set<String> projected = new LinkedHashSet<>(fields);
+            projected.add(order.getProperty());
+            archived.forEach(expense -> rows.add(ExpenseFields.project(expense, projected)));
+            Comparator<Map<String, Object>> comparator = rowComparator(order.getProperty());
+            rows.sort(order.isAscending() ? comparator : comparator.reversed());
+        }
+        if (extraSortColumn) {
+            rows.forEach(row -> row.remove(order.getProperty()));
+        }
+        return rows;
+    }
+    
+    public Map<String, Object> getExpenseFields(Long id, User user, Set<String> fields) {
+        Specification<Expense> spec = (root, query, cb) ->
+            cb.and(cb.equal(root.get("id"), id), cb.equal(root.get("user"), user));
+        List<Map<String, Object>> rows = expenseRepository.findColumns(
+            spec, Sort.unsorted(), ExpenseFields.columns(fields));
+        if (rows.isEmpty()) {
+            throw new RuntimeException("Expense not found");
+        }
+        Map<String, Object> row = rows.get(0);
+        if (fields.contains(ExpenseFields.ARCHIVED)) {
+            row.put(ExpenseFields.ARCHIVED, false);
+        }
+        return row;
     }
     
+    // Totals are summed per currency in the database (one row per currency) and
+    // only those few sums are converted, using the current rate snapshot.
     public BigDecimal getTotalExpenses(User user) {
-        BigDecimal total = expenseRepository.getTotalExpensesByUser(user);
-        return total != null ? total : BigDecimal.ZERO;
+        Map<String, BigDecimal> totals = toCurrencyTotals(expenseRepository.getTotalExpensesByUser(user));
+        if (expenseArchiveService.hasArchive(user)) {
+            expenseArchiveService.getArchivedTotals(user, LocalDate.MIN, LocalDate.MAX)
+                .forEach((currency, amount) -> totals.merge(currency, amount, BigDecimal::add));
+        }
+        return exchangeRateService.getSnapshot().sum(totals, exchangeRateService.baseCurrency(user));
     }
     
     public BigDecimal getTotalExpensesByDateRange(User user, LocalDate startDate, LocalDate endDate) {
-        BigDecimal total = expenseRepository.getTotalExpensesByUserAndDateRange(user, startDate, endDate);
-        return total != null ? total : BigDecimal.ZERO;
+        Map<String, BigDecimal> totals = toCurrencyTotals(
+            expenseRepository.getTotalExpensesByUserAndDateRange(user, startDate, endDate));
+        if (expenseArchiveService.hasArchive(user)) {
+            expenseArchiveService.getArchivedTotals(user, startDate, endDate)
+                .forEach((currency, amount) -> totals.merge(currency, amount, BigDecimal::add));
+        }
+        return exchangeRateService.getSnapshot().sum(totals, exchangeRateService.baseCurrency(user));
     }
     
     public Map<String, BigDecimal> getCategoryWiseExpenses(User user, LocalDate startDate, LocalDate endDate) {
         List<Object[]> results = expenseRepository.getCategoryWiseExpenses(user, startDate, endDate);
-        Map<String, BigDecimal> categoryMap = new HashMap<>();
+        Map<Expense.Category, Map<String, BigDecimal>> byCategory = new EnumMap<>(Expense.Category.class);
         
         for (Object[] result : results) {
             Expense.Category category = (Expense.Category) result[0];
-            BigDecimal amount = (BigDecimal) result[1];
-            categoryMap.put(category.name(), amount);
+            String currency = (String) result[1];
+            BigDecimal amount = (BigDecimal) result[2];
+            byCategory.computeIfAbsent(category, k -> new HashMap<>()).merge(currency, amount, BigDecimal::add);
         }
         
+        if (expenseArchiveService.hasArchive(user)) {
+            expenseArchiveService.getArchivedCategoryTotals(user, startDate, endDate).forEach((category, amounts) -> {
+                Map<String, BigDecimal> merged = byCategory.computeIfAbsent(category, k -> new HashMap<>());
+                amounts.forEach((currency, amount) -> merged.merge(currency, amount, BigDecimal::add));
+            });
+        }
+        
+        RateSnapshot snapshot = exchangeRateService.getSnapshot();
+        String baseCurrency = exchangeRateService.baseCurrency(user);
+        Map<String, BigDecimal> categoryMap = new HashMap<>();
+        byCategory.forEach((category, amounts) -> categoryMap.put(category.name(), snapshot.sum(amounts, baseCurrency)));
+        
         return categoryMap;
     }
+    
+    private Expense copyOf(Expense expense) {
+        Expense copy = new Expense();
+        copy.setId(expense.getId());
+        copy.setUser(expense.getUser());
+        copy.setTitle(expense.getTitle());
+        copy.setDescription(expense.getDescription());
+        copy.setAmount(expense.getAmount());
+        copy.setCurrency(expense.getCurrency());
+        copy.setCategory(expense.getCategory());
+        copy.setExpenseDate(expense.getExpenseDate());
+        copy.setPaymentMethod(expense.getPaymentMethod());
+        copy.setVendor(expense.getVendor());
+        copy.setCreatedAt(expense.getCreatedAt());
+        copy.setUpdatedAt(expense.getUpdatedAt());
+        copy.setSyncVersion(expense.getSyncVersion());
+        return copy;
+    }
+    
+    private Sort searchSort(ExpenseSearchRequest request) {
+        String[] sortParts = (request.getSort() != null ? request.getSort() : "expenseDate,desc").split(",");
+        String sortField = sortParts[0].trim();
+        if (!SORTABLE_FIELDS.containsKey(sortField)) {
+            throw new RuntimeException("Unsupported sort field: " + sortField);
+        }
+        Sort.Direction direction = sortParts.length > 1 && sortParts[1].trim().equalsIgnoreCase("asc")
+            ? Sort.Direction.ASC
+            : Sort.Direction.DESC;
+        return Sort.by(direction, sortField, "id");
+    }
+    
+    private List<Expense> archivedMatches(User user, ExpenseSearchRequest request) {
+        LocalDate startDate = request.getStartDate() != null ? request.getStartDate() : LocalDate.MIN;
+        if (!expenseArchiveService.hasArchive(user) || !startDate.isBefore(expenseArchiveService.getArchiveCutoff())) {
+            return List.of();
+        }
+        List<Expense> archived = expenseArchiveService.getArchivedExpenses(user, startDate,
+            request.getEndDate() != null ? request.getEndDate() : LocalDate.MAX);
+        archived.removeIf(e -> !matches(request, e));
+        return archived;
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparator<Map<String, Object>> rowComparator(String field) {
+        Comparator<Comparable> values = field.equals("title")
+            ? (Comparator) String.CASE_INSENSITIVE_ORDER
+            : Comparator.naturalOrder();
+        return Comparator.comparing(row -> (Comparable) row.get(field), Comparator.nullsFirst(values));
+    }
+    
+    private boolean matches(ExpenseSearchRequest request, Expense expense) {
+        if (request.getCategories() != null && !request.getCategories().isEmpty()
+                && !request.getCategories().contains(expense.getCategory())) {
+            return false;
+        }
+        if (request.getPaymentMethods() != null && !request.getPaymentMethods().isEmpty()
+                && !request.getPaymentMethods().contains(expense.getPaymentMethod())) {
+            return false;
+        }
+        if (request.getVendor() != null && !request.getVendor().isBlank()) {
+            String prefix = request.getVendor().trim();
+            if (expense.getVendor() == null || !expense.getVendor().regionMatches(true, 0, prefix, 0, prefix.length())) {
+                return false;
+            }
+        }
+        if (request.getMinAmount() != null && expense.getAmount().compareTo(request.getMinAmount()) < 0) {
+            return false;
+        }
+        return request.getMaxAmount() == null || expense.getAmount().compareTo(request.getMaxAmount()) <= 0;
+    }
+    
+    // Every expense write takes its version here, inside its transaction, so this
+    // is also where it is fenced against a move of the user's shard.
+    private long nextSyncVersion(User user) {
+        shardRouter.lockForWrite(user.getId());
+        syncStateRepository.incrementVersion(user.getId());
+        return syncStateRepository.getLastVersion(user.getId());
+    }
+    
+    private Map<String, BigDecimal> toCurrencyTotals(List<Object[]> results) {
+        Map<String, BigDecimal> totals = new HashMap<>();
+        for (Object[] result : results) {
+            if (result[1] != null) {
+                totals.merge((String) result[0], (BigDecimal) result[1], BigDecimal::add);
+            }
+        }
+        return totals;
+    }
+    
+    private String resolveCurrency(ExpenseRequest request, User user) {
+        String currency = request.getCurrency() != null ? request.getCurrency() : exchangeRateService.baseCurrency(user);
+        if (!exchangeRateService.getSnapshot().supports(currency)) {
+            throw new RuntimeException("Unsupported currency: " + currency);
+        }
+        return currency;
+    }
+    
+    private List<Expense> mergeWithArchive(List<Expense> live, List<Expense> archived) {
+        if (archived.isEmpty()) {
+            return live;
+        }
+        List<Expense> merged = new ArrayList<>(live.size() + archived.size());
+        merged.addAll(live);
+        merged.addAll(archived);
+        merged.sort(Comparator.comparing(Expense::getExpenseDate).reversed());
+        return merged;
+    }
+    
+    private record ImportRow(int index, ExpenseRequest request, String currency,
+                             DuplicateDetectionService.Reservation reservation) {
+    }
 }
@@ -0,0 +1,139 @@
+package com.fintrack.service;
+
+import com.fintrack.dto.ExpenseResponse;
+import com.fintrack.dto.ExpenseSyncResponse;
+import com.fintrack.model.Expense;
+import com.fintrack.model.ExpenseSyncState;
+import com.fintrack.model.ExpenseTombstone;
+import com.fintrack.model.User;
+import com.fintrack.repository.ExpenseRepository;
+import com.fintrack.repository.ExpenseSyncStateRepository;
+import com.fintrack.repository.ExpenseTombstoneRepository;
+import com.fintrack.repository.ShardRouter;
+import com.fintrack.repository.UserMovingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Change feed for offline clients. Every write stamps the expense (or, for a
+ * delete, a tombstone) with the user's next sync version; a client sends back
+ * the highest version it has seen and receives only what changed after it.
+ */
+@Service
+public class ExpenseSyncService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ExpenseSyncService.class);
+    
+    @Value("${fintrack.sync.page-size:500}")
+    private int pageSize;
+    
+    @Value("${fintrack.sync.tombstone-retention-days:90}")
+    private int tombstoneRetentionDays;
+    
+    @Autowired
+    private ExpenseRepository expenseRepository;
+    
+    @Autowired
+    private ExpenseTombstoneRepository tombstoneRepository;
+    
+    @Autowired
+    private ExpenseSyncStateRepository syncStateRepository;
+    
+    @Autowired
+    private ExpenseService expenseService;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Transactional(readOnly = true)
+    public ExpenseSyncResponse getChanges(User user, Long cursor, Integer limit) {
+        ExpenseSyncState state = syncStateRepository.findById(user.getId())
+            .orElse(new ExpenseSyncState(user.getId(), 0, 0));
+        
+        // No cursor, a cursor from before the last compaction, or one we never issued:
+        // the client can't be brought up to date incrementally.
+        if (cursor == null || cursor < state.getTombstoneFloor() || cursor > state.getLastVersion()) {
+            List<ExpenseResponse> all = expenseService.getAllExpenses(user).stream()
+                .map(ExpenseResponse::fromExpense)
+                .collect(Collectors.toList());
+            return new ExpenseSyncResponse(state.getLastVersion(), true, false, all, List.of());
+        }
+        
+        int size = limit == null ? pageSize : Math.max(1, Math.min(limit, pageSize));
+        PageRequest page = PageRequest.of(0, size + 1);
+        List<Expense> changed = expenseRepository.findByUserAndSyncVersionGreaterThanOrderBySyncVersionAsc(
+            user, cursor, page);
+        List<ExpenseTombstone> deleted = tombstoneRepository.findByUserIdAndSyncVersionGreaterThanOrderBySyncVersionAsc(
+            user.getId(), cursor, page);
+        
+        // Both lists are in version order and versions are unique per user, so the
+        // first `size` entries of the merge are the next page.
+        List<ExpenseResponse> upserts = new ArrayList<>();
+        List<Long> deletes = new ArrayList<>();
+        long next = cursor;
+        int i = 0;
+        int j = 0;
+        while (upserts.size() + deletes.size() < size && (i < changed.size() || j < deleted.size())) {
+            if (j >= deleted.size()
+                    || (i < changed.size() && changed.get(i).getSyncVersion() < deleted.get(j).getSyncVersion())) {
+                Expense expense = changed.get(i++);
+                upserts.add(ExpenseResponse.fromExpense(expense));
+                next = expense.getSyncVersion();
+            } else {
+                ExpenseTombstone tombstone = deleted.get(j++);
+                deletes.add(tombstone.getExpenseId());
+                next = tombstone.getSyncVersion();
+            }
+        }
+        boolean hasMore = i < changed.size() || j < deleted.size();
+        
+        return new ExpenseSyncResponse(next, false, hasMore, upserts, deletes);
+    }
+    
+    // Tombstones are only needed until every active client has synced past them.
+    // Dropping them raises the user's floor, which sends older cursors to a full resync.
+    // Each user is compacted in their own fenced transaction; users being moved
+    // are left for the next run on their new shard.
+    @Scheduled(cron = "${fintrack.sync.compaction-cron:0 0 4 * * *}")
+    public void compactTombstones() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(tombstoneRetentionDays);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            int removed = shardRouter.callOn(shard, () -> {
+                int count = 0;
+                for (Object[] floor : tombstoneRepository.findCompactionFloors(cutoff)) {
+                    Long userId = (Long) floor[0];
+                    try {
+                        count += transaction.execute(status -> {
+                            shardRouter.lockForWrite(userId);
+                            syncStateRepository.raiseTombstoneFloor(userId, (Long) floor[1]);
+                            return tombstoneRepository.deleteOlderThan(userId, cutoff);
+                        });
+                    } catch (UserMovingException e) {
+                        logger.debug("Skipped compacting tombstones for user {} during a shard move", userId);
+                    }
+                }
+                return count;
+            });
+            if (removed > 0) {
+                logger.info("Compacted {} expense tombstones older than {} on shard {}", removed, cutoff, shard);
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.fintrack.service;
+
+import com.fintrack.repository.ShardRouter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs small writes from many requests in a shared transaction, so a burst of
+ * inserts pays for one commit instead of one each.
+ *
+ * Each shard has one writer thread. It takes the first queued write, waits up
+ * to max-delay-ms for more (or until max-batch are queued), runs them all in
+ * one transaction and completes the callers' futures once it commits, before
+ * the after-commit event listeners run on the writer thread. If the batch
+ * fails, its writes are retried one transaction each, so a single bad row
+ * fails only its own caller. When the mode is off, or the caller is
+ * already in a transaction, the write runs directly on the calling thread.
+ *
+ * Callers wait at most timeout-ms. A write still queued by then is withdrawn
+ * and never runs; one already in a flush may still commit. A writer thread that
+ * dies fails everything it holds, and the next write for its shard starts a
+ * new one.
+ */
+@Service
+public class GroupCommitWriter {
+    
+    private static final Logger logger = LoggerFactory.getLogger(GroupCommitWriter.class);
+    private static final long IDLE_POLL_MS = 200;
+    
+    @Value("${fintrack.group-commit.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${fintrack.group-commit.max-batch:64}")
+    private int maxBatch;
+    
+    @Value("${fintrack.group-commit.max-delay-ms:5}")
+    private long maxDelayMillis;
+    
+    @Value("${fintrack.group-commit.timeout-ms:10000}")
+    private long timeoutMillis;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    private final Map<Integer, Writer> writers = new ConcurrentHashMap<>();
+    private volatile boolean stopped;
+    
+    public <T> T write(Long userId, Supplier<T> work) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        if (!enabled || stopped || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return transaction.execute(status -> work.get());
+        }
+        
+        int shard = shardRouter.shardFor(userId);
+        Pending<T> pending = new Pending<>(work);
+        writer(shard).queue.add(pending);
+        try {
+            return pending.future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (pending.cancel()) {
+                throw new RuntimeException("Write was not started within " + timeoutMillis + " ms", e);
+            }
+            throw new RuntimeException("Write did not finish within " + timeoutMillis + " ms and may still commit", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.cancel();
+            throw new RuntimeException("Interrupted while waiting for write", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("Write failed", e.getCause());
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+    }
+    
+    private Writer writer(int shard) {
+        Writer writer = writers.get(shard);
+        if (writer != null && writer.thread.isAlive()) {
+            return writer;
+        }
+        return writers.compute(shard, (key, current) ->
+            current != null && current.thread.isAlive() ? current : new Writer(key));
+    }
+    
+    private static final class Pending<T> {
+        
+        private static final int QUEUED = 0;
+        private static final int CLAIMED = 1;
+        private static final int CANCELLED = 2;
+        
+        private final Supplier<T> work;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private T result;
+        
+        private Pending(Supplier<T> work) {
+            this.work = work;
+        }
+        
+        // The writer claims a write before running it; a caller that gave up can
+        // only cancel it before that.
+        private boolean claim() {
+            return state.compareAndSet(QUEUED, CLAIMED);
+        }
+        
+        private boolean cancel() {
+            return state.compareAndSet(QUEUED, CANCELLED);
+        }
+        
+        private void run() {
+            result = work.get();
+        }
+        
+        private void complete() {
+            future.complete(result);
+        }
+    }
+    
+    private final class Writer implements Runnable {
+        
+        private final int shard;
+        private final BlockingQueue<Pending<?>> queue = new LinkedBlockingQueue<>();
+        private final Thread thread;
+        
+        private Writer(int shard) {
+            this.shard = shard;
+            thread = new Thread(this, "group-commit-" + shard);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        
+        // Not interrupted on shutdown, so a flush in progress is never cut off
+        // mid-statement; the loop notices the flag once the queue is empty.
+        @Override
+        public void run() {
+            List<Pending<?>> batch = new ArrayList<>(maxBatch);
+            try {
+                while (true) {
+                    Pending<?> first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        if (stopped) {
+                            return;
+                        }
+                        continue;
+                    }
+                    batch.add(first);
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+                    while (batch.size() < maxBatch) {
+                        Pending<?> next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                    batch.removeIf(pending -> !pending.claim());
+                    if (!batch.isEmpty()) {
+                        flush(batch);
+                    }
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Error e) {
+                logger.error("Group commit writer for shard {} died", shard, e);
+                throw e;
+            } finally {
+                // Unregistered first, so a caller that sees the failure below and
+                // retries gets a new writer. Writes already completed are
+                // unaffected; the rest never committed.
+                writers.remove(shard, this);
+                RuntimeException failure = new RuntimeException("Group commit writer for shard " + shard + " stopped");
+                batch.forEach(pending -> pending.future.completeExceptionally(failure));
+                for (Pending<?> pending; (pending = queue.poll()) != null; ) {
+                    pending.future.completeExceptionally(failure);
+                }
+            }
+        }
+        
+        private void flush(List<Pending<?>> batch) {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            try {
+                shardRouter.runOn(shard, () -> transaction.executeWithoutResult(status -> {
+                    completeAfterCommit(batch);
+                    batch.forEach(Pending::run);
+                }));
+                batch.forEach(Pending::complete);
+                return;
+            } catch (RuntimeException e) {
+                if (batch.size() == 1) {
+                    batch.get(0).future.completeExceptionally(e);
+                    return;
+                }
+                logger.debug("Group commit of {} writes failed, retrying individually", batch.size(), e);
+            }
+            for (Pending<?> pending : batch) {
+                try {
+                    shardRouter.runOn(shard, () -> transaction.executeWithoutResult(status -> {
+                        completeAfterCommit(List.of(pending));
+                        pending.run();
+                    }));
+                    pending.complete();
+                } catch (RuntimeException e) {
+                    pending.future.completeExceptionally(e);
+                }
+            }
+        }
+        
+        // Transactional event listeners run in afterCompletion, which follows every
+        // afterCommit, so callers get their results without waiting on them. The
+        // completion after the transaction returns is then a no-op.
+        private void completeAfterCommit(List<Pending<?>> batch) {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                return;
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public int getOrder() {
+                    return Ordered.HIGHEST_PRECEDENCE;
+                }
+                
+                @Override
+                public void afterCommit() {
+                    batch.forEach(Pending::complete);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.fintrack.service;
+
+import com.fintrack.model.Expense;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * One record of the {@link ExpenseJournal}. Sequences are gap-free across
+ * segments; timestamps are epoch milliseconds and never go backwards. The
+ * expenses are detached copies without a user; {@code userId} identifies it.
+ * {@code version} is the change's sync version, 0 for deletes journaled before
+ * it was recorded.
+ */
+@Data
+@AllArgsConstructor
+public class JournalEntry {
+    
+    private long sequence;
+    private long timestamp;
+    private long userId;
+    private ExpenseChangeEvent.Type type;
+    private long version;
+    private Expense expense;
+    private Expense previous;
+}
@@ -0,0 +1,509 @@
+package com.fintrack.service;
+
+import com.fintrack.model.Expense;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * One file of the {@link ExpenseJournal}: a fixed-size, memory-mapped file that
+ * records are appended to in sequence order.
+ *
+ * Each record is its body length, a CRC32C of the body, then the body (sequence,
+ * timestamp, user id, change type, the change's sync version and the expense
+ * before and after). Enums are stored by name, so adding or reordering
+ * constants never changes what an old record reads back as; segments written
+ * before that (version 1, ordinals and no sync version) are still read. The length
+ * is written last, so recovery after a crash stops at the first record that is
+ * missing, torn or out of sequence. While a segment is active its per-user
+ * record offsets are kept in memory; sealing writes them to a sidecar index
+ * (users sorted by id, each user's offsets in time order) that readers map and
+ * binary search.
+ */
+public final class JournalSegment {
+    
+    private static final int MAGIC = 0x46544A4C; // "FTJL"
+    private static final int INDEX_MAGIC = 0x46544A49; // "FTJI"
+    private static final short VERSION = 2;
+    private static final short INDEX_VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 2 + 2 + 8;
+    private static final int PREFIX_BYTES = 4 + 4;
+    private static final int MIN_BODY_BYTES = 8 + 8 + 8 + 1;
+    private static final int INDEX_HEADER_BYTES = 4 + 2 + 4 + 4 + 8 + 8 + 8;
+    private static final int INDEX_ENTRY_BYTES = 8 + 4 + 4;
+    private static final String INDEX_SUFFIX = ".idx";
+    
+    // Version 1 records stored ordinals; these are the enums as they were then.
+    private static final ExpenseChangeEvent.Type[] V1_TYPES = {
+        ExpenseChangeEvent.Type.CREATED, ExpenseChangeEvent.Type.UPDATED, ExpenseChangeEvent.Type.DELETED};
+    private static final Expense.Category[] V1_CATEGORIES = {
+        Expense.Category.FOOD, Expense.Category.TRANSPORTATION, Expense.Category.UTILITIES,
+        Expense.Category.ENTERTAINMENT, Expense.Category.HEALTHCARE, Expense.Category.SHOPPING,
+        Expense.Category.EDUCATION, Expense.Category.TRAVEL, Expense.Category.HOUSING,
+        Expense.Category.INSURANCE, Expense.Category.SAVINGS, Expense.Category.OTHER};
+    private static final Expense.PaymentMethod[] V1_PAYMENT_METHODS = {
+        Expense.PaymentMethod.CASH, Expense.PaymentMethod.CREDIT_CARD, Expense.PaymentMethod.DEBIT_CARD,
+        Expense.PaymentMethod.BANK_TRANSFER, Expense.PaymentMethod.DIGITAL_WALLET, Expense.PaymentMethod.OTHER};
+    
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final long baseSequence;
+    private final short version;
+    private final CRC32C crc = new CRC32C();
+    private int end = HEADER_BYTES;
+    private long nextSequence;
+    private long firstTimestamp = Long.MAX_VALUE;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private Map<Long, Offsets> activeIndex = new HashMap<>();
+    private ByteBuffer sealedIndex;
+    private int sealedUsers;
+    
+    private JournalSegment(Path path, MappedByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a journal segment: " + path);
+        }
+        this.version = buffer.getShort(4);
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported journal segment version " + version);
+        }
+        this.baseSequence = buffer.getLong(8);
+        this.nextSequence = baseSequence;
+    }
+    
+    public static JournalSegment create(Path path, long baseSequence, int capacity) throws IOException {
+        Files.createDirectories(path.getParent());
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            buffer.putInt(0, MAGIC);
+            buffer.putShort(4, VERSION);
+            buffer.putLong(8, baseSequence);
+            buffer.force();
+            return new JournalSegment(path, buffer);
+        }
+    }
+    
+    // Reopens the segment that was being written, keeping every complete record.
+    public static JournalSegment openActive(Path path, int capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            JournalSegment segment = new JournalSegment(path,
+                channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), capacity)));
+            segment.scan();
+            return segment;
+        }
+    }
+    
+    // A missing or unreadable index is rebuilt from the records.
+    public static JournalSegment openSealed(Path path) throws IOException {
+        JournalSegment segment;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            segment = new JournalSegment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        try {
+            segment.mapIndex();
+        } catch (IOException e) {
+            segment.scan();
+            segment.writeIndex();
+            segment.mapIndex();
+        }
+        return segment;
+    }
+    
+    public static boolean isSealed(Path path) {
+        return Files.exists(indexPath(path));
+    }
+    
+    // First and last record timestamps of a sealed segment, read from the index
+    // header without mapping either file; null when the index is missing or bad.
+    public static long[] readTimeRange(Path path) {
+        try (FileChannel channel = FileChannel.open(indexPath(path), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_BYTES);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    return null;
+                }
+            }
+            if (header.getInt(0) != INDEX_MAGIC || header.getShort(4) != INDEX_VERSION) {
+                return null;
+            }
+            return new long[] {header.getLong(22), header.getLong(30)};
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    public Path getPath() {
+        return path;
+    }
+    
+    public long getBaseSequence() {
+        return baseSequence;
+    }
+    
+    // False for a segment in an older format, which is read but not appended to.
+    public boolean isCurrentFormat() {
+        return version == VERSION;
+    }
+    
+    public synchronized long getNextSequence() {
+        return nextSequence;
+    }
+    
+    public synchronized long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+    
+    public synchronized long getLastTimestamp() {
+        return lastTimestamp;
+    }
+    
+    /**
+     * Appends one change and returns its sequence, or -1 when the record does
+     * not fit in what is left of the segment and the caller should roll over.
+     */
+    public synchronized long append(long timestamp, ExpenseChangeEvent event) {
+        if (activeIndex == null) {
+            throw new IllegalStateException("Journal segment is sealed: " + path);
+        }
+        if (version != VERSION) {
+            throw new IllegalStateException("Journal segment is in an older format: " + path);
+        }
+        long userId = event.getUser().getId();
+        ByteBuffer out = buffer.duplicate();
+        out.position(end + PREFIX_BYTES);
+        try {
+            out.putLong(nextSequence);
+            out.putLong(timestamp);
+            out.putLong(userId);
+            putString(out, event.getType().name());
+            out.putLong(event.getVersion());
+            putExpense(out, event.getExpense());
+            if (event.getPrevious() != null) {
+                out.put((byte) 1);
+                putExpense(out, event.getPrevious());
+            } else {
+                out.put((byte) 0);
+            }
+        } catch (BufferOverflowException e) {
+            return -1;
+        }
+        
+        int length = out.position() - end - PREFIX_BYTES;
+        buffer.putInt(end + 4, checksum(end + PREFIX_BYTES, length));
+        buffer.putInt(end, length);
+        index(userId, timestamp, end);
+        end += PREFIX_BYTES + length;
+        return nextSequence++;
+    }
+    
+    // Flushes appended records to disk; called off the write path.
+    public void force() {
+        buffer.force();
+    }
+    
+    public synchronized void seal() throws IOException {
+        buffer.force();
+        writeIndex();
+        mapIndex();
+    }
+    
+    public synchronized boolean overlaps(long from, long to) {
+        return firstTimestamp <= to && lastTimestamp >= from;
+    }
+    
+    // One user's entries with from <= timestamp <= to, oldest first.
+    public List<JournalEntry> read(long userId, long from, long to) {
+        int[] offsets = offsets(userId);
+        int low = 0;
+        int high = offsets.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestampAt(offsets[mid]) < from) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        List<JournalEntry> entries = new ArrayList<>();
+        for (int i = low; i < offsets.length && timestampAt(offsets[i]) <= to; i++) {
+            entries.add(read(offsets[i]));
+        }
+        return entries;
+    }
+    
+    public void forEach(long fromSequence, Consumer<JournalEntry> consumer) {
+        int limit;
+        synchronized (this) {
+            limit = end;
+        }
+        int position = HEADER_BYTES;
+        for (long sequence = baseSequence; position < limit; sequence++) {
+            if (sequence >= fromSequence) {
+                consumer.accept(read(position));
+            }
+            position += PREFIX_BYTES + buffer.getInt(position);
+        }
+    }
+    
+    private JournalEntry read(int offset) {
+        ByteBuffer in = buffer.duplicate();
+        in.position(offset + PREFIX_BYTES);
+        long sequence = in.getLong();
+        long timestamp = in.getLong();
+        long userId = in.getLong();
+        if (version == 1) {
+            ExpenseChangeEvent.Type type = V1_TYPES[in.get()];
+            Expense expense = getExpenseV1(in);
+            Expense previous = in.get() == 1 ? getExpenseV1(in) : null;
+            // A delete's own version was not recorded.
+            long syncVersion = type != ExpenseChangeEvent.Type.DELETED ? expense.getSyncVersion() : 0;
+            return new JournalEntry(sequence, timestamp, userId, type, syncVersion, expense, previous);
+        }
+        ExpenseChangeEvent.Type type = ExpenseChangeEvent.Type.valueOf(getString(in));
+        long syncVersion = in.getLong();
+        Expense expense = getExpense(in);
+        Expense previous = in.get() == 1 ? getExpense(in) : null;
+        return new JournalEntry(sequence, timestamp, userId, type, syncVersion, expense, previous);
+    }
+    
+    private long timestampAt(int offset) {
+        return buffer.getLong(offset + PREFIX_BYTES + 8);
+    }
+    
+    private synchronized int[] offsets(long userId) {
+        if (activeIndex != null) {
+            Offsets offsets = activeIndex.get(userId);
+            return offsets != null ? Arrays.copyOf(offsets.values, offsets.size) : new int[0];
+        }
+        int low = 0;
+        int high = sealedUsers - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = INDEX_HEADER_BYTES + mid * INDEX_ENTRY_BYTES;
+            long id = sealedIndex.getLong(entry);
+            if (id < userId) {
+                low = mid + 1;
+            } else if (id > userId) {
+                high = mid - 1;
+            } else {
+                int start = sealedIndex.getInt(entry + 8);
+                int[] offsets = new int[sealedIndex.getInt(entry + 12)];
+                int base = INDEX_HEADER_BYTES + sealedUsers * INDEX_ENTRY_BYTES + start * 4;
+                for (int i = 0; i < offsets.length; i++) {
+                    offsets[i] = sealedIndex.getInt(base + i * 4);
+                }
+                return offsets;
+            }
+        }
+        return new int[0];
+    }
+    
+    private void scan() {
+        int position = HEADER_BYTES;
+        long sequence = baseSequence;
+        while (position + PREFIX_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length < MIN_BODY_BYTES || length > buffer.capacity() - position - PREFIX_BYTES
+                    || buffer.getInt(position + 4) != checksum(position + PREFIX_BYTES, length)
+                    || buffer.getLong(position + PREFIX_BYTES) != sequence) {
+                break;
+            }
+            index(buffer.getLong(position + PREFIX_BYTES + 16), timestampAt(position), position);
+            position += PREFIX_BYTES + length;
+            sequence++;
+        }
+        end = position;
+        nextSequence = sequence;
+    }
+    
+    private void index(long userId, long timestamp, int offset) {
+        activeIndex.computeIfAbsent(userId, id -> new Offsets()).add(offset);
+        firstTimestamp = Math.min(firstTimestamp, timestamp);
+        lastTimestamp = Math.max(lastTimestamp, timestamp);
+    }
+    
+    private int checksum(int offset, int length) {
+        crc.reset();
+        crc.update(buffer.duplicate().position(offset).limit(offset + length));
+        return (int) crc.getValue();
+    }
+    
+    private void writeIndex() throws IOException {
+        List<Long> users = new ArrayList<>(activeIndex.keySet());
+        Collections.sort(users);
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(INDEX_MAGIC);
+        out.writeShort(INDEX_VERSION);
+        out.writeInt(users.size());
+        out.writeInt(end);
+        out.writeLong(nextSequence);
+        out.writeLong(firstTimestamp);
+        out.writeLong(lastTimestamp);
+        int start = 0;
+        for (Long user : users) {
+            int count = activeIndex.get(user).size;
+            out.writeLong(user);
+            out.writeInt(start);
+            out.writeInt(count);
+            start += count;
+        }
+        for (Long user : users) {
+            Offsets offsets = activeIndex.get(user);
+            for (int i = 0; i < offsets.size; i++) {
+                out.writeInt(offsets.values[i]);
+            }
+        }
+        out.flush();
+        
+        Path indexPath = indexPath(path);
+        Path tmp = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer data = ByteBuffer.wrap(bytes.toByteArray());
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private void mapIndex() throws IOException {
+        try (FileChannel channel = FileChannel.open(indexPath(path), StandardOpenOption.READ)) {
+            ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (index.capacity() < INDEX_HEADER_BYTES || index.getInt(0) != INDEX_MAGIC
+                    || index.getShort(4) != INDEX_VERSION) {
+                throw new IOException("Not a journal index: " + path);
+            }
+            sealedUsers = index.getInt(6);
+            end = index.getInt(10);
+            nextSequence = index.getLong(14);
+            firstTimestamp = index.getLong(22);
+            lastTimestamp = index.getLong(30);
+            sealedIndex = index;
+            activeIndex = null;
+        }
+    }
+    
+    private static Path indexPath(Path path) {
+        return path.resolveSibling(path.getFileName() + INDEX_SUFFIX);
+    }
+    
+    private static void putExpense(ByteBuffer out, Expense expense) {
+        out.putLong(expense.getId());
+        out.putLong(expense.getSyncVersion() != null ? expense.getSyncVersion() : 0);
+        out.putInt((int) expense.getExpenseDate().toEpochDay());
+        out.putLong(expense.getAmount().setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+        putString(out, expense.getCurrency());
+        putString(out, expense.getCategory().name());
+        putString(out, expense.getPaymentMethod().name());
+        putString(out, expense.getTitle());
+        putString(out, expense.getDescription());
+        putString(out, expense.getVendor());
+        putTimestamp(out, expense.getCreatedAt());
+        putTimestamp(out, expense.getUpdatedAt());
+    }
+    
+    private static Expense getExpense(ByteBuffer in) {
+        Expense expense = new Expense();
+        expense.setId(in.getLong());
+        expense.setSyncVersion(in.getLong());
+        expense.setExpenseDate(LocalDate.ofEpochDay(in.getInt()));
+        expense.setAmount(BigDecimal.valueOf(in.getLong(), 2));
+        expense.setCurrency(getString(in));
+        expense.setCategory(Expense.Category.valueOf(getString(in)));
+        expense.setPaymentMethod(Expense.PaymentMethod.valueOf(getString(in)));
+        getExpenseDetails(in, expense);
+        return expense;
+    }
+    
+    private static Expense getExpenseV1(ByteBuffer in) {
+        Expense expense = new Expense();
+        expense.setId(in.getLong());
+        expense.setSyncVersion(in.getLong());
+        expense.setExpenseDate(LocalDate.ofEpochDay(in.getInt()));
+        expense.setAmount(BigDecimal.valueOf(in.getLong(), 2));
+        expense.setCurrency(getString(in));
+        expense.setCategory(V1_CATEGORIES[in.get()]);
+        expense.setPaymentMethod(V1_PAYMENT_METHODS[in.get()]);
+        getExpenseDetails(in, expense);
+        return expense;
+    }
+    
+    private static void getExpenseDetails(ByteBuffer in, Expense expense) {
+        expense.setTitle(getString(in));
+        expense.setDescription(getString(in));
+        expense.setVendor(getString(in));
+        expense.setCreatedAt(getTimestamp(in));
+        expense.setUpdatedAt(getTimestamp(in));
+    }
+    
+    private static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.putInt(bytes.length);
+        out.put(bytes);
+    }
+    
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static void putTimestamp(ByteBuffer out, LocalDateTime value) {
+        out.putLong(value != null ? value.toEpochSecond(ZoneOffset.UTC) : Long.MIN_VALUE);
+    }
+    
+    private static LocalDateTime getTimestamp(ByteBuffer in) {
+        long seconds = in.getLong();
+        return seconds != Long.MIN_VALUE ? LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC) : null;
+    }
+    
+    private static final class Offsets {
+        
+        private int[] values = new int[8];
+        private int size;
+        
+        private void add(int offset) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = offset;
+        }
+    }
+}
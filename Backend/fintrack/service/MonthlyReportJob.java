@@ -0,0 +1,169 @@
+package com.fintrack.service;
+
+import com.fintrack.model.ReportJobCheckpoint;
+import com.fintrack.model.User;
+import com.fintrack.repository.ExpenseRepository;
+import com.fintrack.repository.ReportJobCheckpointRepository;
+import com.fintrack.repository.ShardRouter;
+import com.fintrack.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Nightly precomputation of every user's closed-month reports.
+ *
+ * Users are split into partitions by id and the partitions run in parallel on a
+ * pool sized by fintrack.reports.parallelism. Each partition records the last
+ * user it finished, so a run interrupted by a restart picks up where it stopped
+ * (at startup, or at the next scheduled time) instead of starting over.
+ */
+@Component
+public class MonthlyReportJob {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MonthlyReportJob.class);
+    
+    @Value("${fintrack.reports.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${fintrack.reports.parallelism:4}")
+    private int parallelism;
+    
+    @Value("${fintrack.reports.page-size:200}")
+    private int pageSize;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private ExpenseRepository expenseRepository;
+    
+    @Autowired
+    private ReportJobCheckpointRepository checkpointRepository;
+    
+    @Autowired
+    private MonthlyReportService monthlyReportService;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    private final AtomicBoolean running = new AtomicBoolean();
+    
+    @Scheduled(cron = "${fintrack.reports.cron:0 0 2 * * *}")
+    public void run() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<ReportJobCheckpoint> partitions = checkpointRepository.findByCompletedFalseOrderByPartitionIndexAsc();
+            if (partitions.isEmpty()) {
+                partitions = startRun();
+            } else {
+                logger.info("Resuming monthly report run from {} with {} unfinished partitions",
+                    partitions.get(0).getRunDate(), partitions.size());
+            }
+            execute(partitions);
+        } finally {
+            running.set(false);
+        }
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterrupted() {
+        if (enabled && checkpointRepository.existsByCompletedFalse()) {
+            Thread thread = new Thread(this::run, "monthly-report-resume");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+    
+    private List<ReportJobCheckpoint> startRun() {
+        List<ReportJobCheckpoint> partitions = new ArrayList<>();
+        int count = Math.max(1, parallelism);
+        for (int i = 0; i < count; i++) {
+            partitions.add(checkpointRepository.save(
+                new ReportJobCheckpoint(null, LocalDate.now(), i, count, 0, false, null)));
+        }
+        return partitions;
+    }
+    
+    private void execute(List<ReportJobCheckpoint> partitions) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(Math.max(1, parallelism), partitions.size()),
+            runnable -> new Thread(runnable, "monthly-report-" + threadNumber.incrementAndGet()));
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (ReportJobCheckpoint checkpoint : partitions) {
+                tasks.add(() -> processPartition(checkpoint));
+            }
+            int computed = 0;
+            for (var future : pool.invokeAll(tasks)) {
+                computed += future.get();
+            }
+            // Checkpoints only matter while a run is unfinished.
+            if (!checkpointRepository.existsByCompletedFalse()) {
+                checkpointRepository.deleteCompleted();
+            }
+            logger.info("Monthly report run finished, {} reports computed", computed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Monthly report run failed; it will resume from its checkpoints", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    private int processPartition(ReportJobCheckpoint checkpoint) {
+        LocalDate currentMonthStart = YearMonth.now().atDay(1);
+        int computed = 0;
+        List<User> users;
+        do {
+            users = userRepository.findPartition(checkpoint.getPartitions(), checkpoint.getPartitionIndex(),
+                checkpoint.getLastUserId(), PageRequest.of(0, pageSize));
+            for (User user : users) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return computed;
+                }
+                try {
+                    // Users come from the directory shard; their expenses and reports live on their home shard.
+                    computed += shardRouter.callForUser(user.getId(), () -> {
+                        int count = 0;
+                        for (String month : expenseRepository.findExpenseMonthsBefore(user.getId(), currentMonthStart)) {
+                            YearMonth yearMonth = YearMonth.parse(month);
+                            if (monthlyReportService.needsRefresh(user, yearMonth)) {
+                                monthlyReportService.computeAndStore(user, yearMonth, false);
+                                count++;
+                            }
+                        }
+                        return count;
+                    });
+                } catch (RuntimeException e) {
+                    logger.error("Could not precompute reports for user {}", user.getId(), e);
+                }
+                checkpoint.setLastUserId(user.getId());
+                checkpointRepository.save(checkpoint);
+            }
+        } while (users.size() == pageSize);
+        
+        checkpoint.setCompleted(true);
+        checkpointRepository.save(checkpoint);
+        return computed;
+    }
+}
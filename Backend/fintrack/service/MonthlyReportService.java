@@ -0,0 +1,178 @@
+package com.fintrack.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintrack.model.MonthlyReport;
+import com.fintrack.model.User;
+import com.fintrack.repository.MonthlyReportRepository;
+import com.fintrack.repository.ShardRouter;
+import com.fintrack.repository.UserMovingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Serves analysis for closed months from precomputed reports. A report is used
+ * while it was computed after the last edit to its month, in the user's current
+ * base currency and rate snapshot, and in the current report format; otherwise
+ * it is recomputed and stored.
+ */
+@Service
+public class MonthlyReportService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MonthlyReportService.class);
+    
+    // Bump whenever the analysis map changes shape, so stored reports in the old
+    // format are recomputed instead of served.
+    static final int FORMAT_VERSION = 1;
+    
+    @Autowired
+    private MonthlyReportRepository monthlyReportRepository;
+    
+    @Autowired
+    private AIAnalysisService aiAnalysisService;
+    
+    @Autowired
+    private ExchangeRateService exchangeRateService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    public Map<String, Object> getAnalysis(User user, LocalDate startDate, LocalDate endDate) {
+        YearMonth month = YearMonth.from(startDate);
+        boolean closedMonth = startDate.equals(month.atDay(1))
+            && endDate.equals(month.atEndOfMonth())
+            && month.isBefore(YearMonth.now());
+        if (!closedMonth) {
+            return aiAnalysisService.generateExpenseAnalysis(user, startDate, endDate);
+        }
+        
+        Optional<MonthlyReport> report = monthlyReportRepository.findByUserIdAndMonth(user.getId(), month.toString());
+        if (report.isPresent() && isFresh(report.get(), user)) {
+            Map<String, Object> analysis = read(report.get());
+            if (analysis != null) {
+                return analysis;
+            }
+        }
+        return computeAndStore(user, month, true);
+    }
+    
+    public boolean needsRefresh(User user, YearMonth month) {
+        return monthlyReportRepository.findByUserIdAndMonth(user.getId(), month.toString())
+            .map(report -> !isFresh(report, user))
+            .orElse(true);
+    }
+    
+    public Map<String, Object> computeAndStore(User user, YearMonth month, boolean useAi) {
+        LocalDateTime startedAt = LocalDateTime.now();
+        Map<String, Object> analysis = aiAnalysisService.generateExpenseAnalysis(
+            user, month.atDay(1), month.atEndOfMonth(), useAi);
+        
+        try {
+            String reportJson = objectMapper.writeValueAsString(analysis);
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                shardRouter.lockForWrite(user.getId());
+                MonthlyReport report = monthlyReportRepository.findByUserIdAndMonth(user.getId(), month.toString())
+                    .orElseGet(MonthlyReport::new);
+                report.setUserId(user.getId());
+                report.setMonth(month.toString());
+                report.setCurrency(exchangeRateService.baseCurrency(user));
+                report.setRateVersion(exchangeRateService.getSnapshot().getVersion());
+                report.setFormatVersion(FORMAT_VERSION);
+                report.setReportJson(reportJson);
+                report.setComputedAt(startedAt);
+                monthlyReportRepository.save(report);
+            });
+        } catch (JsonProcessingException e) {
+            logger.error("Could not serialize report {} for user {}", month, user.getId(), e);
+        } catch (DataIntegrityViolationException e) {
+            // Another request or the nightly job stored this month first.
+            logger.debug("Report {} for user {} was stored concurrently", month, user.getId());
+        } catch (UserMovingException e) {
+            // Still served; stored once the user is settled on their new shard.
+            logger.debug("Report {} for user {} not stored during a shard move", month, user.getId());
+        }
+        return analysis;
+    }
+    
+    // Only closed months are cached, so edits to the current month return before
+    // any transaction or lock; this runs on the committing (or group commit
+    // writer) thread. A move invalidates every report it copies, so one refused
+    // here is not lost.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onExpenseChange(ExpenseChangeEvent event) {
+        YearMonth current = YearMonth.now();
+        Set<YearMonth> months = new TreeSet<>();
+        addIfClosed(months, YearMonth.from(event.getExpense().getExpenseDate()), current);
+        if (event.getPrevious() != null) {
+            addIfClosed(months, YearMonth.from(event.getPrevious().getExpenseDate()), current);
+        }
+        if (months.isEmpty()) {
+            return;
+        }
+        
+        Long userId = event.getUser().getId();
+        LocalDateTime now = LocalDateTime.now();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            transaction.executeWithoutResult(status -> {
+                shardRouter.lockForWrite(userId);
+                for (YearMonth month : months) {
+                    monthlyReportRepository.invalidate(userId, month.toString(), now);
+                }
+            });
+        } catch (UserMovingException e) {
+            logger.debug("Reports for user {} not invalidated during a shard move", userId);
+        }
+    }
+    
+    private static void addIfClosed(Set<YearMonth> months, YearMonth month, YearMonth current) {
+        if (month.isBefore(current)) {
+            months.add(month);
+        }
+    }
+    
+    private boolean isFresh(MonthlyReport report, User user) {
+        return report.getReportJson() != null
+            && report.getComputedAt() != null
+            && (report.getInvalidatedAt() == null || report.getInvalidatedAt().isBefore(report.getComputedAt()))
+            && exchangeRateService.baseCurrency(user).equals(report.getCurrency())
+            && exchangeRateService.getSnapshot().getVersion().equals(report.getRateVersion())
+            && Integer.valueOf(FORMAT_VERSION).equals(report.getFormatVersion());
+    }
+    
+    private Map<String, Object> read(MonthlyReport report) {
+        try {
+            return objectMapper.reader()
+                .with(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+                .forType(new TypeReference<Map<String, Object>>() { })
+                .readValue(report.getReportJson());
+        } catch (JsonProcessingException e) {
+            logger.warn("Discarding unreadable report {} for user {}", report.getMonth(), report.getUserId(), e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.fintrack.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.theokanning.openai.client.OpenAiApi;
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.service.OpenAiService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import okhttp3.OkHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import retrofit2.Retrofit;
+import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Chat completions with a fixed latency budget and a circuit breaker, so a slow
+ * or failing provider costs the analysis endpoint at most one budget per call
+ * while it is closed, and nothing while it is open.
+ *
+ * After failure-threshold consecutive failures (errors or budget overruns) the
+ * breaker opens and every call returns empty at once. Once open-ms has passed a
+ * single caller is let through as a half-open probe: success closes the breaker,
+ * failure re-opens it. With hedge-after-ms set, a second identical request is
+ * sent if the first has not answered by then, and whichever succeeds first wins.
+ * Attempts still running once the call is settled (answered, failed, or given up
+ * at the budget) are interrupted, which cancels their HTTP call, and every HTTP
+ * call is also capped at the budget by OkHttp itself, so an abandoned request
+ * never keeps a pool thread or connection.
+ * The base URL is configurable so a local fake provider can stand in for OpenAI.
+ */
+@Component
+public class OpenAIClient {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OpenAIClient.class);
+    
+    enum State { CLOSED, HALF_OPEN, OPEN }
+    
+    private final String apiKey;
+    private final String baseUrl;
+    private final long budgetMillis;
+    private final long hedgeAfterMillis;
+    private final int failureThreshold;
+    private final long openMillis;
+    
+    private final ThreadPoolExecutor executor;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openedAt;
+    private volatile OpenAiService service;
+    
+    private final MeterRegistry meterRegistry;
+    private final Timer latency;
+    private final Counter hedges;
+    
+    public OpenAIClient(MeterRegistry meterRegistry,
+                        @Value("${openai.api.key}") String apiKey,
+                        @Value("${openai.base-url:https://api.openai.com/}") String baseUrl,
+                        @Value("${openai.budget-ms:4000}") long budgetMillis,
+                        @Value("${openai.hedge-after-ms:0}") long hedgeAfterMillis,
+                        @Value("${openai.breaker.failure-threshold:3}") int failureThreshold,
+                        @Value("${openai.breaker.open-ms:30000}") long openMillis,
+                        @Value("${openai.threads:8}") int threads) {
+        this.apiKey = apiKey;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        this.budgetMillis = budgetMillis;
+        this.hedgeAfterMillis = hedgeAfterMillis;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(threads * 4),
+            runnable -> {
+                Thread thread = new Thread(runnable, "openai-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+        
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("openai.breaker.state", state, s -> s.get().ordinal())
+            .description("OpenAI circuit breaker state: 0 closed, 1 half-open, 2 open")
+            .register(meterRegistry);
+        this.latency = Timer.builder("openai.latency")
+            .description("Time spent waiting on OpenAI for analysis insights")
+            .register(meterRegistry);
+        this.hedges = Counter.builder("openai.hedges")
+            .description("Hedged second requests sent to OpenAI")
+            .register(meterRegistry);
+    }
+    
+    public boolean isConfigured() {
+        return apiKey != null && !apiKey.isBlank() && !apiKey.equals("your_openai_api_key_here");
+    }
+    
+    // Empty means "use the fallback"; the reason is recorded as a metric tag.
+    public Optional<String> complete(ChatCompletionRequest request) {
+        if (!isConfigured()) {
+            return fallback("unconfigured");
+        }
+        if (!tryAcquire()) {
+            return fallback("open");
+        }
+        
+        long start = System.nanoTime();
+        CompletableFuture<String> pending = null;
+        try {
+            pending = call(request);
+            String content = pending.get(budgetMillis, TimeUnit.MILLISECONDS);
+            onSuccess();
+            meterRegistry.counter("openai.insights", "result", "ai", "reason", "none").increment();
+            return Optional.of(content);
+        } catch (TimeoutException e) {
+            pending.cancel(false);
+            onFailure();
+            return fallback("timeout");
+        } catch (RejectedExecutionException e) {
+            // Our own pool is full, which says nothing about the provider.
+            releaseProbe();
+            return fallback("rejected");
+        } catch (ExecutionException e) {
+            logger.debug("OpenAI request failed", e.getCause());
+            onFailure();
+            return fallback("error");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.cancel(false);
+            releaseProbe();
+            return fallback("interrupted");
+        } finally {
+            latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+    
+    // Resolves with the first attempt to succeed, or fails once every attempt has.
+    private CompletableFuture<String> call(ChatCompletionRequest request) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        AtomicInteger started = new AtomicInteger(1);
+        AtomicInteger failed = new AtomicInteger();
+        List<Future<?>> attempts = new CopyOnWriteArrayList<>();
+        result.whenComplete((content, error) -> attempts.forEach(running -> running.cancel(true)));
+        Runnable attempt = () -> {
+            try {
+                result.complete(service().createChatCompletion(request)
+                    .getChoices().get(0).getMessage().getContent());
+            } catch (RuntimeException e) {
+                if (failed.incrementAndGet() == started.get()) {
+                    result.completeExceptionally(e);
+                }
+            }
+        };
+        attempts.add(executor.submit(attempt));
+        
+        if (hedgeAfterMillis > 0 && hedgeAfterMillis < budgetMillis) {
+            CompletableFuture.delayedExecutor(hedgeAfterMillis, TimeUnit.MILLISECONDS).execute(() -> {
+                if (result.isDone() || failed.get() == started.get()) {
+                    return;
+                }
+                started.incrementAndGet();
+                try {
+                    attempts.add(executor.submit(attempt));
+                    hedges.increment();
+                    // Settled while the hedge was being submitted.
+                    if (result.isDone()) {
+                        attempts.forEach(running -> running.cancel(true));
+                    }
+                } catch (RejectedExecutionException e) {
+                    if (failed.get() == started.decrementAndGet()) {
+                        result.completeExceptionally(e);
+                    }
+                }
+            });
+        }
+        return result;
+    }
+    
+    private boolean tryAcquire() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            return state.compareAndSet(State.OPEN, State.HALF_OPEN);
+        }
+        return false;
+    }
+    
+    private void onSuccess() {
+        consecutiveFailures.set(0);
+        state.set(State.CLOSED);
+    }
+    
+    private void onFailure() {
+        if (state.get() == State.HALF_OPEN || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            if (state.getAndSet(State.OPEN) != State.OPEN) {
+                logger.warn("OpenAI circuit breaker opened; serving basic insights for {} ms", openMillis);
+            }
+            openedAt = System.currentTimeMillis();
+        }
+    }
+    
+    // A probe that never reached the provider should not leave the breaker stuck half-open.
+    private void releaseProbe() {
+        state.compareAndSet(State.HALF_OPEN, State.OPEN);
+    }
+    
+    private Optional<String> fallback(String reason) {
+        meterRegistry.counter("openai.insights", "result", "fallback", "reason", reason).increment();
+        return Optional.empty();
+    }
+    
+    private OpenAiService service() {
+        OpenAiService current = service;
+        if (current == null) {
+            synchronized (this) {
+                if (service == null) {
+                    ObjectMapper mapper = OpenAiService.defaultObjectMapper();
+                    OkHttpClient client = OpenAiService.defaultClient(apiKey, Duration.ofMillis(budgetMillis))
+                        .newBuilder()
+                        .callTimeout(Duration.ofMillis(budgetMillis))
+                        .build();
+                    Retrofit retrofit = new Retrofit.Builder()
+                        .baseUrl(baseUrl)
+                        .client(client)
+                        .addConverterFactory(JacksonConverterFactory.create(mapper))
+                        .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+                        .build();
+                    service = new OpenAiService(retrofit.create(OpenAiApi.class));
+                }
+                current = service;
+            }
+        }
+        return current;
+    }
+}
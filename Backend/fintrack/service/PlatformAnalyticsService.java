@@ -0,0 +1,336 @@
+package com.fintrack.service;
+
+import com.fintrack.model.Expense;
+import com.fintrack.model.User;
+import com.fintrack.repository.ExpenseRepository;
+import com.fintrack.repository.ShardRouter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Platform-wide analytics for admins: spend by month and category, active users
+ * and transaction size distribution across every user.
+ *
+ * Each shard's user id space is cut into ranges of fintrack.analytics.users-per-task
+ * users and scanned as a fork-join tree on its own pool; every leaf runs a few
+ * grouped queries over its range (served by the user/date index) and partial
+ * aggregates are merged on the way back up. The pool never grows past its
+ * parallelism, not even to compensate for a worker blocked in a join, so it caps
+ * the connections reports hold; each statement has a timeout and the reads are
+ * non-locking, so OLTP traffic keeps going. Ranges not started by fintrack.analytics.timeout-seconds
+ * are skipped and the result is marked incomplete. Archived expenses live
+ * outside MySQL and are not included.
+ */
+@Service
+public class PlatformAnalyticsService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PlatformAnalyticsService.class);
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+    private static final String[] QUANTILE_NAMES = {"median", "p90", "p99"};
+    
+    @Value("${fintrack.analytics.parallelism:4}")
+    private int parallelism;
+    
+    @Value("${fintrack.analytics.users-per-task:500}")
+    private long usersPerTask;
+    
+    @Value("${fintrack.analytics.timeout-seconds:300}")
+    private long timeoutSeconds;
+    
+    @Value("${fintrack.distribution.relative-accuracy:0.01}")
+    private double relativeAccuracy;
+    
+    @Autowired
+    private ExpenseRepository expenseRepository;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Autowired
+    private ExchangeRateService exchangeRateService;
+    
+    private ForkJoinPool pool;
+    
+    // Leaves block in JDBC and parents block in join, which a default pool answers
+    // with extra threads. Here the maximum equals the parallelism and a saturated
+    // pool lets the joining worker wait instead, so at most that many queries run.
+    @PostConstruct
+    public void init() {
+        int threads = Math.max(1, parallelism);
+        AtomicInteger threadNumber = new AtomicInteger();
+        pool = new ForkJoinPool(threads, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("platform-analytics-" + threadNumber.incrementAndGet());
+            return thread;
+        }, null, false, threads, threads, 1, forkJoinPool -> true, 60, TimeUnit.SECONDS);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+    
+    /**
+     * Runs the report on the analytics pool. {@code progress} is called from pool
+     * threads with (completed, total) ranges as each one finishes; once
+     * {@code cancelled} is set the remaining ranges are skipped.
+     */
+    public CompletableFuture<Map<String, Object>> analyze(User admin, LocalDate startDate, LocalDate endDate,
+                                                         BiConsumer<Integer, Integer> progress,
+                                                         AtomicBoolean cancelled) {
+        if (endDate.isBefore(startDate)) {
+            throw new RuntimeException("endDate must not be before startDate");
+        }
+        String currency = exchangeRateService.baseCurrency(admin);
+        Scan scan = new Scan(startDate, endDate, progress, cancelled,
+            System.nanoTime() + timeoutSeconds * 1_000_000_000L);
+        return CompletableFuture.supplyAsync(() -> run(scan, currency), pool);
+    }
+    
+    private Map<String, Object> run(Scan scan, String currency) {
+        List<RangeTask> tasks = new ArrayList<>();
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            List<Object[]> bounds = shardRouter.callOn(shard, expenseRepository::getUserIdBounds);
+            if (bounds.isEmpty() || bounds.get(0)[0] == null) {
+                continue;
+            }
+            long min = ((Number) bounds.get(0)[0]).longValue();
+            long max = ((Number) bounds.get(0)[1]).longValue();
+            long chunks = (max - min) / usersPerTask + 1;
+            scan.total += (int) chunks;
+            tasks.add(new RangeTask(scan, shard, min, max, 0, chunks));
+        }
+        
+        Partial totals = new Partial();
+        for (RangeTask task : ForkJoinTask.invokeAll(tasks)) {
+            totals.merge(task.join());
+        }
+        return summarize(scan, totals, currency);
+    }
+    
+    private Map<String, Object> summarize(Scan scan, Partial totals, String currency) {
+        RateSnapshot rates = exchangeRateService.getSnapshot();
+        Map<Expense.Category, BigDecimal> byCategory = new EnumMap<>(Expense.Category.class);
+        List<Map<String, Object>> byMonth = new ArrayList<>();
+        BigDecimal totalSpend = BigDecimal.ZERO;
+        long transactions = 0;
+        
+        for (Map.Entry<String, Map<Expense.Category, Map<String, BigDecimal>>> month : totals.spend.entrySet()) {
+            Map<String, BigDecimal> monthCategories = new LinkedHashMap<>();
+            BigDecimal monthTotal = BigDecimal.ZERO;
+            for (Map.Entry<Expense.Category, Map<String, BigDecimal>> category : month.getValue().entrySet()) {
+                BigDecimal amount = BigDecimal.ZERO;
+                for (Map.Entry<String, BigDecimal> part : category.getValue().entrySet()) {
+                    amount = amount.add(rates.convert(part.getValue(), part.getKey(), currency));
+                }
+                monthCategories.put(category.getKey().name(), money(amount));
+                byCategory.merge(category.getKey(), amount, BigDecimal::add);
+                monthTotal = monthTotal.add(amount);
+            }
+            long monthTransactions = totals.transactions.getOrDefault(month.getKey(), 0L);
+            
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("month", month.getKey());
+            entry.put("total", money(monthTotal));
+            entry.put("transactions", monthTransactions);
+            entry.put("activeUsers", totals.activeUsers.getOrDefault(month.getKey(), 0L));
+            entry.put("byCategory", monthCategories);
+            byMonth.add(entry);
+            totalSpend = totalSpend.add(monthTotal);
+            transactions += monthTransactions;
+        }
+        
+        Map<String, BigDecimal> categories = new LinkedHashMap<>();
+        byCategory.forEach((category, amount) -> categories.put(category.name(), money(amount)));
+        
+        QuantileSketch overall = new QuantileSketch(relativeAccuracy);
+        totals.sketches.forEach((from, sketch) ->
+            overall.mergeScaled(sketch, rates.convert(BigDecimal.ONE, from, currency).doubleValue()));
+        Map<String, Object> distribution = new LinkedHashMap<>();
+        distribution.put("count", overall.count());
+        for (int i = 0; i < QUANTILES.length; i++) {
+            double value = overall.quantile(QUANTILES[i]);
+            distribution.put(QUANTILE_NAMES[i], Double.isNaN(value) ? BigDecimal.ZERO : money(BigDecimal.valueOf(value)));
+        }
+        
+        Map<String, Object> ranges = new LinkedHashMap<>();
+        ranges.put("total", scan.total);
+        ranges.put("skipped", scan.skipped.get());
+        ranges.put("failed", scan.failed.get());
+        
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("startDate", scan.startDate);
+        result.put("endDate", scan.endDate);
+        result.put("currency", currency);
+        result.put("complete", scan.skipped.get() == 0 && scan.failed.get() == 0);
+        result.put("ranges", ranges);
+        result.put("totalSpend", money(totalSpend));
+        result.put("transactions", transactions);
+        result.put("activeUsers", totals.activeUsersTotal);
+        result.put("byCategory", categories);
+        result.put("byMonth", byMonth);
+        result.put("distribution", distribution);
+        return result;
+    }
+    
+    private static BigDecimal money(BigDecimal value) {
+        return value.setScale(2, RoundingMode.HALF_UP);
+    }
+    
+    private static final class Scan {
+        
+        private final LocalDate startDate;
+        private final LocalDate endDate;
+        private final BiConsumer<Integer, Integer> progress;
+        private final AtomicBoolean cancelled;
+        private final long deadline;
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private volatile int total;
+        
+        private Scan(LocalDate startDate, LocalDate endDate, BiConsumer<Integer, Integer> progress,
+                     AtomicBoolean cancelled, long deadline) {
+            this.startDate = startDate;
+            this.endDate = endDate;
+            this.progress = progress;
+            this.cancelled = cancelled;
+            this.deadline = deadline;
+        }
+    }
+    
+    // Covers chunks [firstChunk, lastChunk) of one shard's id range, halving
+    // until a single chunk of usersPerTask ids is left to query.
+    private final class RangeTask extends RecursiveTask<Partial> {
+        
+        private final Scan scan;
+        private final int shard;
+        private final long min;
+        private final long max;
+        private final long firstChunk;
+        private final long lastChunk;
+        
+        private RangeTask(Scan scan, int shard, long min, long max, long firstChunk, long lastChunk) {
+            this.scan = scan;
+            this.shard = shard;
+            this.min = min;
+            this.max = max;
+            this.firstChunk = firstChunk;
+            this.lastChunk = lastChunk;
+        }
+        
+        @Override
+        protected Partial compute() {
+            if (lastChunk - firstChunk > 1) {
+                long middle = (firstChunk + lastChunk) >>> 1;
+                RangeTask left = new RangeTask(scan, shard, min, max, firstChunk, middle);
+                left.fork();
+                Partial partial = new RangeTask(scan, shard, min, max, middle, lastChunk).compute();
+                partial.merge(left.join());
+                return partial;
+            }
+            
+            long from = min + firstChunk * usersPerTask;
+            long to = Math.min(max, from + usersPerTask - 1);
+            Partial partial = new Partial();
+            if (scan.cancelled.get() || System.nanoTime() - scan.deadline > 0) {
+                scan.skipped.incrementAndGet();
+            } else {
+                try {
+                    shardRouter.runOn(shard, () -> partial.load(scan, from, to));
+                } catch (RuntimeException e) {
+                    logger.warn("Platform analytics scan of users {}-{} on shard {} failed", from, to, shard, e);
+                    partial.clear();
+                    scan.failed.incrementAndGet();
+                }
+            }
+            scan.progress.accept(scan.completed.incrementAndGet(), scan.total);
+            return partial;
+        }
+    }
+    
+    private final class Partial {
+        
+        // month -> category -> currency -> amount, months as yyyy-MM
+        private final Map<String, Map<Expense.Category, Map<String, BigDecimal>>> spend = new TreeMap<>();
+        private final Map<String, Long> transactions = new HashMap<>();
+        // Ranges partition the users, so distinct counts from different ranges add up.
+        private final Map<String, Long> activeUsers = new HashMap<>();
+        private long activeUsersTotal;
+        private final Map<String, QuantileSketch> sketches = new HashMap<>();
+        
+        private void load(Scan scan, long from, long to) {
+            for (Object[] row : expenseRepository.getPlatformMonthlyTotals(from, to, scan.startDate, scan.endDate)) {
+                String month = (String) row[0];
+                spend.computeIfAbsent(month, m -> new EnumMap<>(Expense.Category.class))
+                    .computeIfAbsent(Expense.Category.valueOf((String) row[1]), c -> new HashMap<>())
+                    .merge((String) row[2], (BigDecimal) row[3], BigDecimal::add);
+                transactions.merge(month, ((Number) row[4]).longValue(), Long::sum);
+            }
+            for (Object[] row : expenseRepository.getPlatformActiveUsers(from, to, scan.startDate, scan.endDate)) {
+                long users = ((Number) row[1]).longValue();
+                if (row[0] == null) {
+                    activeUsersTotal += users;
+                } else {
+                    activeUsers.merge((String) row[0], users, Long::sum);
+                }
+            }
+            double logGamma = new QuantileSketch(relativeAccuracy).getLogGamma();
+            for (Object[] row : expenseRepository.getPlatformAmountBuckets(
+                    from, to, scan.startDate, scan.endDate, logGamma)) {
+                sketches.computeIfAbsent((String) row[0], c -> new QuantileSketch(relativeAccuracy))
+                    .addBucket(((Number) row[1]).intValue(), ((Number) row[2]).longValue());
+            }
+        }
+        
+        private void merge(Partial other) {
+            other.spend.forEach((month, categories) -> {
+                Map<Expense.Category, Map<String, BigDecimal>> target =
+                    spend.computeIfAbsent(month, m -> new EnumMap<>(Expense.Category.class));
+                categories.forEach((category, amounts) -> {
+                    Map<String, BigDecimal> currencies = target.computeIfAbsent(category, c -> new HashMap<>());
+                    amounts.forEach((currency, amount) -> currencies.merge(currency, amount, BigDecimal::add));
+                });
+            });
+            other.transactions.forEach((month, count) -> transactions.merge(month, count, Long::sum));
+            other.activeUsers.forEach((month, count) -> activeUsers.merge(month, count, Long::sum));
+            activeUsersTotal += other.activeUsersTotal;
+            other.sketches.forEach((currency, sketch) ->
+                sketches.computeIfAbsent(currency, c -> new QuantileSketch(relativeAccuracy)).mergeScaled(sketch, 1));
+        }
+        
+        // A range that failed part-way contributes nothing rather than half its rows.
+        private void clear() {
+            spend.clear();
+            transactions.clear();
+            activeUsers.clear();
+            activeUsersTotal = 0;
+            sketches.clear();
+        }
+    }
+}
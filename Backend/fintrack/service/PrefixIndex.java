@@ -0,0 +1,97 @@
+package com.fintrack.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Sorted index of previously used strings (one user's vendors or titles), keyed
+ * by their lower-cased form so a prefix is a contiguous sub-range.
+ *
+ * Ranking uses forward-decayed frequency: each use adds exp((t - epoch) / tau),
+ * so a term's weight is its use count with older uses counting for less, and
+ * weights never need to be rescaled as time passes (a double holds exp() of
+ * the elapsed time until about 2080 at this tau).
+ */
+public final class PrefixIndex {
+    
+    private static final long EPOCH_SECONDS = Instant.parse("2024-01-01T00:00:00Z").getEpochSecond();
+    private static final double TAU_SECONDS = 30 * 24 * 3600.0;
+    
+    private final NavigableMap<String, Term> terms = new ConcurrentSkipListMap<>();
+    
+    public void add(String value, Instant usedAt) {
+        add(value, 1, usedAt);
+    }
+    
+    // Bulk form used when seeding from the database: `count` uses, all credited at `usedAt`.
+    public void add(String value, int count, Instant usedAt) {
+        String key = key(value);
+        if (key == null) {
+            return;
+        }
+        double weight = count * decayWeight(usedAt);
+        String display = value.trim();
+        terms.merge(key, new Term(display, count, weight),
+            (existing, added) -> new Term(added.display(), existing.count() + added.count(),
+                existing.weight() + added.weight()));
+    }
+    
+    // Drops one use; the decayed weight is kept so a recently deleted entry still
+    // ranks sensibly while other uses remain.
+    public void remove(String value) {
+        String key = key(value);
+        if (key == null) {
+            return;
+        }
+        terms.computeIfPresent(key, (k, existing) -> existing.count() <= 1
+            ? null
+            : new Term(existing.display(), existing.count() - 1, existing.weight()));
+    }
+    
+    public List<String> complete(String prefix, int limit) {
+        String from = prefix == null ? "" : prefix.trim().toLowerCase(Locale.ROOT);
+        NavigableMap<String, Term> range = from.isEmpty()
+            ? terms
+            : terms.subMap(from, true, from + Character.MAX_VALUE, false);
+        
+        PriorityQueue<Term> best = new PriorityQueue<>(limit + 1, Comparator.comparingDouble(Term::weight));
+        for (Term term : range.values()) {
+            best.add(term);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        
+        List<String> results = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            results.add(best.poll().display());
+        }
+        Collections.reverse(results);
+        return results;
+    }
+    
+    public int size() {
+        return terms.size();
+    }
+    
+    private static String key(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    private static double decayWeight(Instant usedAt) {
+        return Math.exp((usedAt.getEpochSecond() - EPOCH_SECONDS) / TAU_SECONDS);
+    }
+    
+    private record Term(String display, int count, double weight) {
+    }
+}
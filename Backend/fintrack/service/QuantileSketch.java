@@ -0,0 +1,112 @@
+package com.fintrack.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Relative-error quantile sketch over positive amounts, in the style of
+ * DDSketch: values are counted in logarithmic buckets whose width is a fixed
+ * fraction of the value, so any quantile is within {@code relativeAccuracy} of
+ * the true one. Unlike t-digest or KLL the buckets are plain counts, so an
+ * edited or deleted expense can be taken out again, and two sketches merge by
+ * adding counts.
+ */
+public final class QuantileSketch {
+    
+    private final double gamma;
+    private final double logGamma;
+    private final TreeMap<Integer, Long> buckets = new TreeMap<>();
+    private long zeroCount;
+    private long count;
+    
+    public QuantileSketch(double relativeAccuracy) {
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+    
+    // A negative delta removes values again; counts never go below zero.
+    public synchronized void add(double value, long delta) {
+        if (value <= 0) {
+            long after = Math.max(0, zeroCount + delta);
+            count += after - zeroCount;
+            zeroCount = after;
+            return;
+        }
+        int index = (int) Math.ceil(Math.log(value) / logGamma);
+        long before = buckets.getOrDefault(index, 0L);
+        long after = Math.max(0, before + delta);
+        if (after == 0) {
+            buckets.remove(index);
+        } else {
+            buckets.put(index, after);
+        }
+        count += after - before;
+    }
+    
+    /**
+     * Adds {@code other}'s counts with every value multiplied by {@code factor},
+     * which is how sketches kept in different currencies are combined. Each
+     * bucket moves as a whole, adding at most one bucket width of error.
+     */
+    public void mergeScaled(QuantileSketch other, double factor) {
+        Map<Integer, Long> source;
+        long otherZeros;
+        synchronized (other) {
+            source = new TreeMap<>(other.buckets);
+            otherZeros = other.zeroCount;
+        }
+        synchronized (this) {
+            zeroCount += otherZeros;
+            for (Map.Entry<Integer, Long> bucket : source.entrySet()) {
+                double value = other.valueOf(bucket.getKey()) * factor;
+                if (value <= 0) {
+                    zeroCount += bucket.getValue();
+                } else {
+                    buckets.merge((int) Math.ceil(Math.log(value) / logGamma), bucket.getValue(), Long::sum);
+                }
+            }
+            count += otherZeros + source.values().stream().mapToLong(Long::longValue).sum();
+        }
+    }
+    
+    /**
+     * Adds {@code delta} values to the bucket with the given index, for counts
+     * computed elsewhere as {@code ceil(ln(value) / getLogGamma())}, such as
+     * amounts grouped in SQL.
+     */
+    public synchronized void addBucket(int index, long delta) {
+        buckets.merge(index, delta, Long::sum);
+        count += delta;
+    }
+    
+    public double getLogGamma() {
+        return logGamma;
+    }
+    
+    public synchronized long count() {
+        return count;
+    }
+    
+    // Lower quantile: the value at rank floor(q * (count - 1)). NaN when empty.
+    public synchronized double quantile(double q) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) Math.floor(q * (count - 1));
+        if (rank < zeroCount) {
+            return 0;
+        }
+        long seen = zeroCount;
+        for (Map.Entry<Integer, Long> bucket : buckets.entrySet()) {
+            seen += bucket.getValue();
+            if (seen > rank) {
+                return valueOf(bucket.getKey());
+            }
+        }
+        return valueOf(buckets.lastKey());
+    }
+    
+    private double valueOf(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+}
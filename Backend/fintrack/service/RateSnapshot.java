@@ -0,0 +1,68 @@
+package com.fintrack.service;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Immutable set of exchange rates, expressed as units of the pivot currency per
+ * unit of each currency. A new version replaces the whole snapshot; readers
+ * never see a half-loaded table.
+ */
+public final class RateSnapshot {
+    
+    private final String version;
+    private final String pivot;
+    private final Map<String, BigDecimal> ratesToPivot;
+    
+    public RateSnapshot(String version, String pivot, Map<String, BigDecimal> ratesToPivot) {
+        this.version = version;
+        this.pivot = pivot;
+        this.ratesToPivot = Collections.unmodifiableMap(ratesToPivot);
+    }
+    
+    public String getVersion() {
+        return version;
+    }
+    
+    public String getPivot() {
+        return pivot;
+    }
+    
+    public boolean supports(String currency) {
+        return ratesToPivot.containsKey(currency);
+    }
+    
+    public Map<String, BigDecimal> getRatesToPivot() {
+        return ratesToPivot;
+    }
+    
+    public BigDecimal convert(BigDecimal amount, String from, String to) {
+        if (from.equals(to)) {
+            return amount;
+        }
+        BigDecimal fromRate = rate(from);
+        BigDecimal toRate = rate(to);
+        return amount.multiply(fromRate).divide(toRate, MathContext.DECIMAL64);
+    }
+    
+    // Converts per-currency sums (one entry per currency, already aggregated by
+    // the database or the archive) into a single total in the target currency.
+    public BigDecimal sum(Map<String, BigDecimal> amountsByCurrency, String target) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (Map.Entry<String, BigDecimal> entry : amountsByCurrency.entrySet()) {
+            total = total.add(convert(entry.getValue(), entry.getKey(), target));
+        }
+        return total.setScale(2, RoundingMode.HALF_UP);
+    }
+    
+    private BigDecimal rate(String currency) {
+        BigDecimal rate = ratesToPivot.get(currency);
+        if (rate == null) {
+            throw new RuntimeException("No exchange rate for currency " + currency + " in snapshot " + version);
+        }
+        return rate;
+    }
+}
@@ -0,0 +1,128 @@
+package com.fintrack.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Content-addressed file store for receipt attachments. Blobs are named by their
+ * SHA-256, so identical uploads end up as one file on disk.
+ */
+@Component
+public class ReceiptBlobStore {
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    @Value("${fintrack.receipts.dir:data/receipts}")
+    private String rootDir;
+    
+    @Value("${fintrack.receipts.max-bytes:10485760}")
+    private long maxBytes;
+    
+    private Path root;
+    private Path incoming;
+    
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(rootDir);
+        incoming = root.resolve("incoming");
+        Files.createDirectories(incoming);
+    }
+    
+    // Streams the body to a temp file through one reused direct buffer while hashing.
+    // The upload is never held in the heap; place() then moves it into the store.
+    public StoredBlob stage(InputStream input) throws IOException {
+        MessageDigest digest = sha256();
+        Path tmp = Files.createTempFile(incoming, "upload-", ".part");
+        long size = 0;
+        boolean staged = false;
+        
+        try {
+            try (ReadableByteChannel in = Channels.newChannel(input);
+                 FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                while (in.read(buffer) != -1) {
+                    buffer.flip();
+                    size += buffer.remaining();
+                    if (size > maxBytes) {
+                        throw new RuntimeException("Receipt exceeds the maximum size of " + maxBytes + " bytes");
+                    }
+                    digest.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                out.force(true);
+            }
+            
+            if (size == 0) {
+                throw new RuntimeException("Receipt is empty");
+            }
+            
+            staged = true;
+            return new StoredBlob(HexFormat.of().formatHex(digest.digest()), size, tmp);
+        } finally {
+            if (!staged) {
+                Files.deleteIfExists(tmp);
+            }
+        }
+    }
+    
+    // Callers serialize place() and delete() per hash, so a blob that is being
+    // referenced again cannot be removed between the two.
+    public void place(StoredBlob blob) throws IOException {
+        Path target = path(blob.sha256());
+        try {
+            if (!Files.exists(target)) {
+                Files.createDirectories(target.getParent());
+                try {
+                    Files.move(blob.staged(), target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    // Placed by a concurrent upload of the same content.
+                }
+            }
+        } finally {
+            Files.deleteIfExists(blob.staged());
+        }
+    }
+    
+    public void discard(StoredBlob blob) throws IOException {
+        Files.deleteIfExists(blob.staged());
+    }
+    
+    public Path path(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+    
+    public void delete(String hash) throws IOException {
+        Files.deleteIfExists(path(hash));
+    }
+    
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    public record StoredBlob(String sha256, long size, Path staged) {
+    }
+}
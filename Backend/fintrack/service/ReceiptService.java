@@ -0,0 +1,164 @@
+package com.fintrack.service;
+
+import com.fintrack.model.Expense;
+import com.fintrack.model.Receipt;
+import com.fintrack.model.User;
+import com.fintrack.repository.ExpenseRepository;
+import com.fintrack.repository.ReceiptRepository;
+import com.fintrack.repository.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Service
+public class ReceiptService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReceiptService.class);
+    
+    @Autowired
+    private ReceiptRepository receiptRepository;
+    
+    @Autowired
+    private ReceiptBlobStore receiptBlobStore;
+    
+    @Autowired
+    private ExpenseRepository expenseRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    private final Object[] blobLocks = Stream.generate(Object::new).limit(64).toArray();
+    
+    public List<Receipt> getReceipts(Long expenseId, User user) {
+        return receiptRepository.findByExpenseIdAndUserIdOrderByCreatedAtAsc(expenseId, user.getId());
+    }
+    
+    public Receipt getReceipt(Long expenseId, Long receiptId, User user) {
+        Receipt receipt = receiptRepository.findById(receiptId)
+            .orElseThrow(() -> new RuntimeException("Receipt not found"));
+        
+        if (!receipt.getUserId().equals(user.getId()) || !receipt.getExpenseId().equals(expenseId)) {
+            throw new RuntimeException("Unauthorized access");
+        }
+        
+        return receipt;
+    }
+    
+    public Receipt addReceipt(Long expenseId, String contentType, String fileName, InputStream body, User user)
+            throws IOException {
+        if (contentType == null || !(contentType.startsWith("image/") || contentType.equals("application/pdf"))) {
+            throw new RuntimeException("Receipts must be images or PDF files");
+        }
+        Expense expense = expenseRepository.findById(expenseId)
+            .orElseThrow(() -> new RuntimeException("Expense not found"));
+        if (!expense.getUser().getId().equals(user.getId())) {
+            throw new RuntimeException("Unauthorized access");
+        }
+        
+        ReceiptBlobStore.StoredBlob blob = receiptBlobStore.stage(body);
+        
+        Receipt receipt = new Receipt();
+        receipt.setUserId(user.getId());
+        receipt.setExpenseId(expense.getId());
+        receipt.setSha256(blob.sha256());
+        receipt.setSize(blob.size());
+        receipt.setContentType(contentType);
+        receipt.setFileName(fileName);
+        
+        // The blob is placed and its row saved under the hash's lock, so a
+        // concurrent release of the same content sees either no file yet or the
+        // new row, never a file it is about to delete.
+        try {
+            synchronized (blobLock(blob.sha256())) {
+                receiptBlobStore.place(blob);
+                try {
+                    return new TransactionTemplate(transactionManager).execute(status -> {
+                        shardRouter.lockForWrite(user.getId());
+                        return receiptRepository.save(receipt);
+                    });
+                } catch (RuntimeException e) {
+                    deleteIfUnreferenced(blob.sha256());
+                    throw e;
+                }
+            }
+        } finally {
+            receiptBlobStore.discard(blob);
+        }
+    }
+    
+    public void deleteReceipt(Long expenseId, Long receiptId, User user) {
+        Receipt receipt = getReceipt(expenseId, receiptId, user);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            shardRouter.lockForWrite(user.getId());
+            receiptRepository.delete(receipt);
+            releaseBlob(receipt.getSha256());
+        });
+    }
+    
+    public void deleteReceipts(Long expenseId, User user) {
+        for (Receipt receipt : getReceipts(expenseId, user)) {
+            receiptRepository.delete(receipt);
+            releaseBlob(receipt.getSha256());
+        }
+    }
+    
+    public Path getReceiptFile(Receipt receipt) {
+        return receiptBlobStore.path(receipt.getSha256());
+    }
+    
+    // Blobs are shared between identical receipts; the file goes once the last row
+    // referencing it does. Inside a transaction that is only known after commit: a
+    // rollback keeps the rows, and uncommitted deletes must not hide references.
+    private void releaseBlob(String sha256) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deleteIfUnreferenced(sha256);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    deleteIfUnreferenced(sha256);
+                } catch (RuntimeException e) {
+                    logger.warn("Could not release receipt blob {}", sha256, e);
+                }
+            }
+        });
+    }
+    
+    // The blob directory is shared by all shards, so references are counted on
+    // every shard. A move copies a user's rows to the target before deleting the
+    // source copy, so a receipt being moved is counted at least once throughout.
+    private void deleteIfUnreferenced(String sha256) {
+        synchronized (blobLock(sha256)) {
+            long references = shardRouter.scatter(shard -> receiptRepository.countBySha256(sha256))
+                .stream().mapToLong(Long::longValue).sum();
+            if (references == 0) {
+                try {
+                    receiptBlobStore.delete(sha256);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+    
+    private Object blobLock(String sha256) {
+        return blobLocks[Math.floorMod(sha256.hashCode(), blobLocks.length)];
+    }
+}
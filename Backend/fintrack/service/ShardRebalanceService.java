@@ -0,0 +1,213 @@
+package com.fintrack.service;
+
+import com.fintrack.model.ShardAssignment;
+import com.fintrack.model.User;
+import com.fintrack.repository.ShardDataSources;
+import com.fintrack.repository.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Places new users on their home shard and moves existing users between shards.
+ *
+ * A move marks the user MOVING (HTTP writes are refused with 503, reads keep
+ * going to the source), then sets the user's fence on the source shard. That
+ * waits for every write transaction still holding the fence (see
+ * {@link ShardRouter#lockForWrite}), from requests and background jobs alike,
+ * and fails every later one. It then copies the user row and every per-user
+ * table to the target in one transaction that also opens the target's fence,
+ * flips the assignment, and deletes the source copy. The source fence stays
+ * set, so a writer still routed there by a stale cache is turned away. The
+ * directory shard always keeps the user row.
+ */
+@Service
+public class ShardRebalanceService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ShardRebalanceService.class);
+    private static final Set<String> FIXED_TABLES = Set.of("shard_assignments", "report_job_checkpoints", "shard_fences");
+    private static final int BATCH_SIZE = 500;
+    private static final String FENCE_SQL = "INSERT INTO shard_fences (user_id, fenced, updated_at) VALUES (?, ?, NOW(6)) " +
+        "ON DUPLICATE KEY UPDATE fenced = VALUES(fenced), updated_at = VALUES(updated_at)";
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Autowired
+    private ShardDataSources shardDataSources;
+    
+    // Called right after the user row is created on the directory shard.
+    public void placeNewUser(User user) {
+        if (!shardRouter.isSharded()) {
+            return;
+        }
+        int shard = shardRouter.placeNewUser(user.getId());
+        if (shard != ShardRouter.DIRECTORY_SHARD) {
+            try {
+                copyTable("users", "id", user.getId(),
+                    shardDataSources.get(ShardRouter.DIRECTORY_SHARD), shardDataSources.get(shard));
+            } catch (SQLException e) {
+                throw new RuntimeException("Could not place user on shard " + shard, e);
+            }
+        }
+        shardRouter.assign(user.getId(), shard, ShardAssignment.Status.ACTIVE);
+    }
+    
+    public synchronized int moveUser(Long userId, int target) {
+        if (target < 0 || target >= shardRouter.shardCount()) {
+            throw new RuntimeException("No shard " + target);
+        }
+        int source = shardRouter.shardFor(userId);
+        if (source == target) {
+            throw new RuntimeException("User " + userId + " is already on shard " + target);
+        }
+        
+        DataSource from = shardDataSources.get(source);
+        DataSource to = shardDataSources.get(target);
+        shardRouter.assign(userId, source, ShardAssignment.Status.MOVING);
+        int moved;
+        try {
+            setFence(from, userId, true);
+            moved = copyUser(userId, from, to);
+        } catch (RuntimeException | SQLException e) {
+            try {
+                setFence(from, userId, false);
+            } finally {
+                shardRouter.assign(userId, source, ShardAssignment.Status.ACTIVE);
+            }
+            throw new RuntimeException("Could not move user " + userId + " to shard " + target, e);
+        }
+        
+        shardRouter.assign(userId, target, ShardAssignment.Status.ACTIVE);
+        try {
+            deleteUser(userId, source, from);
+        } catch (RuntimeException e) {
+            // The user is already served from the target; leftovers on the source are unreachable.
+            logger.error("Moved user {} to shard {} but could not clean up shard {}", userId, target, source, e);
+        }
+        logger.info("Moved user {} from shard {} to shard {} ({} rows)", userId, source, target, moved);
+        return moved;
+    }
+    
+    private int copyUser(Long userId, DataSource from, DataSource to) throws SQLException {
+        int copied = 0;
+        try (Connection target = to.getConnection()) {
+            target.setAutoCommit(false);
+            try {
+                // Clears anything left behind by an earlier move away from this shard.
+                for (String table : userTables(to)) {
+                    try (PreparedStatement delete = target.prepareStatement(
+                            "DELETE FROM `" + table + "` WHERE user_id = ?")) {
+                        delete.setLong(1, userId);
+                        delete.executeUpdate();
+                    }
+                }
+                copied += copyRows(from, target, "users", "id", userId, true);
+                for (String table : userTables(from)) {
+                    copied += copyRows(from, target, table, "user_id", userId, false);
+                }
+                // Invalidations that ran after the source was fenced were refused there.
+                try (PreparedStatement invalidate = target.prepareStatement(
+                        "UPDATE monthly_reports SET invalidated_at = NOW(6) WHERE user_id = ?")) {
+                    invalidate.setLong(1, userId);
+                    invalidate.executeUpdate();
+                }
+                try (PreparedStatement open = target.prepareStatement(FENCE_SQL)) {
+                    open.setLong(1, userId);
+                    open.setBoolean(2, false);
+                    open.executeUpdate();
+                }
+                target.commit();
+            } catch (SQLException | RuntimeException e) {
+                target.rollback();
+                throw e;
+            }
+        }
+        return copied;
+    }
+    
+    // Runs on its own; setting the fence waits for writers holding it to commit.
+    private void setFence(DataSource dataSource, Long userId, boolean fenced) {
+        new JdbcTemplate(dataSource).update(FENCE_SQL, userId, fenced);
+    }
+    
+    private void copyTable(String table, String keyColumn, Long key, DataSource from, DataSource to)
+            throws SQLException {
+        try (Connection target = to.getConnection()) {
+            copyRows(from, target, table, keyColumn, key, true);
+        }
+    }
+    
+    private int copyRows(DataSource from, Connection target, String table, String keyColumn, Long key,
+                         boolean skipExisting) throws SQLException {
+        String ignore = skipExisting ? "IGNORE " : "";
+        int copied = 0;
+        try (Connection source = from.getConnection();
+             PreparedStatement select = source.prepareStatement(
+                 "SELECT * FROM `" + table + "` WHERE `" + keyColumn + "` = ?")) {
+            select.setLong(1, key);
+            select.setFetchSize(BATCH_SIZE);
+            try (ResultSet rows = select.executeQuery()) {
+                ResultSetMetaData meta = rows.getMetaData();
+                int columns = meta.getColumnCount();
+                List<String> names = new ArrayList<>(columns);
+                for (int i = 1; i <= columns; i++) {
+                    names.add("`" + meta.getColumnName(i) + "`");
+                }
+                String insert = "INSERT " + ignore + "INTO `" + table + "` (" + String.join(", ", names) + ") VALUES ("
+                    + names.stream().map(n -> "?").collect(Collectors.joining(", ")) + ")";
+                try (PreparedStatement write = target.prepareStatement(insert)) {
+                    int pending = 0;
+                    while (rows.next()) {
+                        for (int i = 1; i <= columns; i++) {
+                            write.setObject(i, rows.getObject(i));
+                        }
+                        write.addBatch();
+                        copied++;
+                        if (++pending == BATCH_SIZE) {
+                            write.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        write.executeBatch();
+                    }
+                }
+            }
+        }
+        return copied;
+    }
+    
+    private void deleteUser(Long userId, int shard, DataSource from) {
+        JdbcTemplate jdbc = new JdbcTemplate(from);
+        for (String table : userTables(from)) {
+            jdbc.update("DELETE FROM `" + table + "` WHERE user_id = ?", userId);
+        }
+        if (shard != ShardRouter.DIRECTORY_SHARD) {
+            jdbc.update("DELETE FROM users WHERE id = ?", userId);
+        }
+    }
+    
+    // Every table with a user_id column holds per-user data and moves with the
+    // user, except the directory tables and the fences, which belong to a shard.
+    private List<String> userTables(DataSource dataSource) {
+        return new JdbcTemplate(dataSource).queryForList(
+            "SELECT table_name FROM information_schema.columns WHERE table_schema = DATABASE() " +
+            "AND column_name = 'user_id' ORDER BY table_name", String.class).stream()
+            .filter(table -> !FIXED_TABLES.contains(table))
+            .collect(Collectors.toList());
+    }
+}
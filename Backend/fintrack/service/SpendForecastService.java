@@ -0,0 +1,216 @@
+package com.fintrack.service;
+
+import com.fintrack.model.Expense;
+import com.fintrack.model.User;
+import com.fintrack.repository.ExpenseRepository;
+import com.fintrack.repository.ExpenseSyncStateRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Month-end spend forecast per user and category. Each user keeps per-day
+ * totals for the current month and the last few months, updated from expense
+ * change events; the forecast is recomputed from those totals on every write
+ * (and once per day), so serving it is a map read.
+ *
+ * The projection blends two estimates: the current month's daily run rate, and
+ * spend so far plus what prior months typically added over the rest of the
+ * month. Early in the month the prior months carry more weight; by the end it
+ * is almost all run rate. Without history only the run rate is used.
+ */
+@Service
+public class SpendForecastService {
+    
+    @Value("${fintrack.forecast.history-months:3}")
+    private int historyMonths;
+    
+    @Value("${fintrack.forecast.idle-eviction-minutes:30}")
+    private long idleEvictionMinutes;
+    
+    @Autowired
+    private ExpenseRepository expenseRepository;
+    
+    @Autowired
+    private ExchangeRateService exchangeRateService;
+    
+    @Autowired
+    private ExpenseSyncStateRepository syncStateRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    private UserStateCache<UserSeries> series;
+    
+    @PostConstruct
+    public void init() {
+        series = new UserStateCache<>(this::apply, syncStateRepository, transactionManager);
+    }
+    
+    public Map<String, Object> getForecast(User user) {
+        LocalDate today = LocalDate.now();
+        String currency = exchangeRateService.baseCurrency(user);
+        UserSeries userSeries = series.get(user.getId(),
+            existing -> existing.isCurrent(today, currency), () -> load(user, today, currency));
+        userSeries.lastAccess = System.nanoTime();
+        return userSeries.forecast(today);
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onExpenseChange(ExpenseChangeEvent event) {
+        series.apply(event);
+    }
+    
+    @Scheduled(fixedDelayString = "${fintrack.forecast.eviction-interval-ms:300000}")
+    public void evictIdle() {
+        long cutoff = System.nanoTime() - idleEvictionMinutes * 60_000_000_000L;
+        series.removeIf(userSeries -> userSeries.lastAccess - cutoff < 0);
+    }
+    
+    private void apply(UserSeries userSeries, ExpenseChangeEvent event) {
+        if (event.getPrevious() != null) {
+            userSeries.add(event.getPrevious(), -1);
+        }
+        userSeries.add(event.getExpense(), event.getType() == ExpenseChangeEvent.Type.DELETED ? -1 : 1);
+        userSeries.recompute(LocalDate.now());
+    }
+    
+    private UserSeries load(User user, LocalDate today, String currency) {
+        UserSeries userSeries = new UserSeries(YearMonth.from(today), currency);
+        LocalDate from = userSeries.month.minusMonths(historyMonths).atDay(1);
+        RateSnapshot rates = exchangeRateService.getSnapshot();
+        for (Object[] row : expenseRepository.getDailyTotalsSince(user, from)) {
+            BigDecimal amount = rates.convert((BigDecimal) row[3], (String) row[2], currency);
+            userSeries.add((LocalDate) row[0], (Expense.Category) row[1], amount.doubleValue());
+        }
+        userSeries.recompute(today);
+        return userSeries;
+    }
+    
+    private static BigDecimal money(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+    
+    private final class UserSeries {
+        
+        private final YearMonth month;
+        private final String currency;
+        private final Map<YearMonth, Map<Expense.Category, double[]>> days = new HashMap<>();
+        private volatile Map<String, Object> forecast;
+        private volatile LocalDate forecastDay;
+        private volatile long lastAccess = System.nanoTime();
+        
+        private UserSeries(YearMonth month, String currency) {
+            this.month = month;
+            this.currency = currency;
+        }
+        
+        private boolean isCurrent(LocalDate today, String baseCurrency) {
+            return month.equals(YearMonth.from(today)) && currency.equals(baseCurrency);
+        }
+        
+        private Map<String, Object> forecast(LocalDate today) {
+            if (!today.equals(forecastDay)) {
+                recompute(today);
+            }
+            return forecast;
+        }
+        
+        private void add(Expense expense, int sign) {
+            BigDecimal amount = exchangeRateService.getSnapshot()
+                .convert(expense.getAmount(), expense.getCurrency(), currency);
+            add(expense.getExpenseDate(), expense.getCategory(), sign * amount.doubleValue());
+        }
+        
+        private synchronized void add(LocalDate date, Expense.Category category, double amount) {
+            YearMonth bucket = YearMonth.from(date);
+            if (bucket.isAfter(month) || bucket.isBefore(month.minusMonths(historyMonths))) {
+                return;
+            }
+            days.computeIfAbsent(bucket, m -> new EnumMap<>(Expense.Category.class))
+                .computeIfAbsent(category, c -> new double[31])[date.getDayOfMonth() - 1] += amount;
+        }
+        
+        private synchronized void recompute(LocalDate today) {
+            int day = today.getDayOfMonth();
+            int length = month.lengthOfMonth();
+            double weight = (double) day / length;
+            
+            double totalSpent = 0;
+            double totalForecast = 0;
+            Map<String, Object> byCategory = new LinkedHashMap<>();
+            for (Expense.Category category : Expense.Category.values()) {
+                double[] current = series(month, category);
+                double spentToDate = sum(current, day);
+                double recorded = sum(current, length);
+                
+                double remaining = 0;
+                int observed = 0;
+                for (int back = 1; back <= historyMonths; back++) {
+                    YearMonth prior = month.minusMonths(back);
+                    if (!days.containsKey(prior)) {
+                        continue;
+                    }
+                    // Day positions are matched by fraction of the month, so the 15th
+                    // of a 31-day month lines up with the 14th of February.
+                    double[] values = series(prior, category);
+                    int priorDay = (int) Math.round((double) day * prior.lengthOfMonth() / length);
+                    remaining += sum(values, prior.lengthOfMonth()) - sum(values, priorDay);
+                    observed++;
+                }
+                
+                double runRate = spentToDate * length / day;
+                double projected = observed == 0
+                    ? runRate
+                    : weight * runRate + (1 - weight) * (spentToDate + remaining / observed);
+                projected = Math.max(Math.max(projected, recorded), 0);
+                
+                if (recorded > 0.005 || projected > 0.005) {
+                    Map<String, Object> entry = new LinkedHashMap<>();
+                    entry.put("spent", money(recorded));
+                    entry.put("forecast", money(projected));
+                    byCategory.put(category.name(), entry);
+                }
+                totalSpent += recorded;
+                totalForecast += projected;
+            }
+            
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("month", month.toString());
+            result.put("currency", currency);
+            result.put("asOf", today);
+            result.put("spent", money(totalSpent));
+            result.put("forecast", money(totalForecast));
+            result.put("byCategory", byCategory);
+            forecast = result;
+            forecastDay = today;
+        }
+        
+        private double[] series(YearMonth bucket, Expense.Category category) {
+            Map<Expense.Category, double[]> categories = days.get(bucket);
+            double[] values = categories != null ? categories.get(category) : null;
+            return values != null ? values : new double[31];
+        }
+        
+        private double sum(double[] values, int throughDay) {
+            double total = 0;
+            for (int i = 0; i < throughDay; i++) {
+                total += values[i];
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.fintrack.service;
+
+import com.fintrack.model.Expense;
+import com.fintrack.model.User;
+import com.fintrack.repository.ExpenseSyncStateRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Median, p90 and p99 transaction size, overall and per category, from quantile
+ * sketches kept per (user, month, category). Each sketch is split by currency so
+ * it stays exact when rates change; a query converts and merges the sketches of
+ * the whole months in range, and only the rows of a partial first or last month
+ * are read from the database. Sketches are built from one pass over the user's
+ * expenses on first use and then kept current from change events. The same
+ * per-category figures are added to the category summary.
+ */
+@Service
+public class SpendingDistributionService {
+    
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+    private static final String[] QUANTILE_NAMES = {"median", "p90", "p99"};
+    
+    @Value("${fintrack.distribution.relative-accuracy:0.01}")
+    private double relativeAccuracy;
+    
+    @Value("${fintrack.distribution.idle-eviction-minutes:30}")
+    private long idleEvictionMinutes;
+    
+    @Autowired
+    private ExpenseService expenseService;
+    
+    @Autowired
+    private ExchangeRateService exchangeRateService;
+    
+    @Autowired
+    private ExpenseSyncStateRepository syncStateRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    private UserStateCache<UserSketches> sketches;
+    
+    @PostConstruct
+    public void init() {
+        sketches = new UserStateCache<>(this::apply, syncStateRepository, transactionManager);
+    }
+    
+    public Map<String, Object> getDistribution(User user, LocalDate startDate, LocalDate endDate) {
+        String target = exchangeRateService.baseCurrency(user);
+        QuantileSketch overall = new QuantileSketch(relativeAccuracy);
+        Map<String, Object> categories = new LinkedHashMap<>();
+        categorySketches(user, startDate, endDate, target).forEach((category, sketch) -> {
+            overall.mergeScaled(sketch, 1);
+            categories.put(category.name(), summarize(sketch));
+        });
+        
+        Map<String, Object> distribution = new LinkedHashMap<>();
+        distribution.put("currency", target);
+        distribution.put("overall", summarize(overall));
+        distribution.put("byCategory", categories);
+        return distribution;
+    }
+    
+    // Each category's total in the base currency, with its count and quantiles.
+    public Map<String, Object> getCategorySummary(User user, LocalDate startDate, LocalDate endDate) {
+        Map<String, BigDecimal> totals = expenseService.getCategoryWiseExpenses(user, startDate, endDate);
+        Map<Expense.Category, QuantileSketch> byCategory = categorySketches(
+            user, startDate, endDate, exchangeRateService.baseCurrency(user));
+        
+        Map<String, Object> summary = new LinkedHashMap<>();
+        totals.forEach((category, total) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("total", total);
+            entry.putAll(summarize(byCategory.getOrDefault(
+                Expense.Category.valueOf(category), new QuantileSketch(relativeAccuracy))));
+            summary.put(category, entry);
+        });
+        return summary;
+    }
+    
+    private Map<Expense.Category, QuantileSketch> categorySketches(User user, LocalDate startDate, LocalDate endDate,
+                                                                   String target) {
+        RateSnapshot rates = exchangeRateService.getSnapshot();
+        Map<Expense.Category, QuantileSketch> byCategory = new EnumMap<>(Expense.Category.class);
+        
+        YearMonth firstFull = YearMonth.from(startDate.getDayOfMonth() == 1 ? startDate : startDate.plusMonths(1));
+        YearMonth lastFull = YearMonth.from(endDate.equals(YearMonth.from(endDate).atEndOfMonth())
+            ? endDate
+            : endDate.minusMonths(1));
+        
+        if (firstFull.isAfter(lastFull)) {
+            addRows(byCategory, expenseService.getExpensesByDateRange(user, startDate, endDate), rates, target);
+        } else {
+            UserSketches userSketches = userSketches(user);
+            userSketches.mergeInto(byCategory, firstFull, lastFull, rates, target);
+            if (startDate.isBefore(firstFull.atDay(1))) {
+                addRows(byCategory, expenseService.getExpensesByDateRange(
+                    user, startDate, firstFull.atDay(1).minusDays(1)), rates, target);
+            }
+            if (endDate.isAfter(lastFull.atEndOfMonth())) {
+                addRows(byCategory, expenseService.getExpensesByDateRange(
+                    user, lastFull.plusMonths(1).atDay(1), endDate), rates, target);
+            }
+        }
+        return byCategory;
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onExpenseChange(ExpenseChangeEvent event) {
+        sketches.apply(event);
+    }
+    
+    @Scheduled(fixedDelayString = "${fintrack.distribution.eviction-interval-ms:300000}")
+    public void evictIdle() {
+        long cutoff = System.nanoTime() - idleEvictionMinutes * 60_000_000_000L;
+        sketches.removeIf(userSketches -> userSketches.lastAccess - cutoff < 0);
+    }
+    
+    private UserSketches userSketches(User user) {
+        UserSketches userSketches = sketches.get(user.getId(), () -> {
+            UserSketches built = new UserSketches();
+            for (Expense expense : expenseService.getAllExpenses(user)) {
+                built.add(expense, 1);
+            }
+            return built;
+        });
+        userSketches.lastAccess = System.nanoTime();
+        return userSketches;
+    }
+    
+    private void apply(UserSketches userSketches, ExpenseChangeEvent event) {
+        if (event.getPrevious() != null) {
+            userSketches.add(event.getPrevious(), -1);
+        }
+        userSketches.add(event.getExpense(), event.getType() == ExpenseChangeEvent.Type.DELETED ? -1 : 1);
+    }
+    
+    private void addRows(Map<Expense.Category, QuantileSketch> byCategory, List<Expense> expenses,
+                         RateSnapshot rates, String target) {
+        for (Expense expense : expenses) {
+            double amount = rates.convert(expense.getAmount(), expense.getCurrency(), target).doubleValue();
+            byCategory.computeIfAbsent(expense.getCategory(), c -> new QuantileSketch(relativeAccuracy))
+                .add(amount, 1);
+        }
+    }
+    
+    private Map<String, Object> summarize(QuantileSketch sketch) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", sketch.count());
+        for (int i = 0; i < QUANTILES.length; i++) {
+            double value = sketch.quantile(QUANTILES[i]);
+            summary.put(QUANTILE_NAMES[i], Double.isNaN(value)
+                ? BigDecimal.ZERO
+                : BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP));
+        }
+        return summary;
+    }
+    
+    private final class UserSketches {
+        
+        private final Map<YearMonth, Map<Expense.Category, Map<String, QuantileSketch>>> months = new HashMap<>();
+        private volatile long lastAccess = System.nanoTime();
+        
+        private synchronized void add(Expense expense, int delta) {
+            months.computeIfAbsent(YearMonth.from(expense.getExpenseDate()), m -> new EnumMap<>(Expense.Category.class))
+                .computeIfAbsent(expense.getCategory(), c -> new HashMap<>())
+                .computeIfAbsent(expense.getCurrency(), c -> new QuantileSketch(relativeAccuracy))
+                .add(expense.getAmount().doubleValue(), delta);
+        }
+        
+        private synchronized void mergeInto(Map<Expense.Category, QuantileSketch> byCategory,
+                                            YearMonth from, YearMonth to, RateSnapshot rates, String target) {
+            months.forEach((month, categories) -> {
+                if (month.isBefore(from) || month.isAfter(to)) {
+                    return;
+                }
+                categories.forEach((category, currencies) -> currencies.forEach((currency, sketch) -> {
+                    if (sketch.count() == 0) {
+                        return;
+                    }
+                    double factor = rates.convert(BigDecimal.ONE, currency, target).doubleValue();
+                    byCategory.computeIfAbsent(category, c -> new QuantileSketch(relativeAccuracy))
+                        .mergeScaled(sketch, factor);
+                }));
+            });
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.fintrack.service;
+
+import com.fintrack.repository.ExpenseSyncStateRepository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Per-user state derived from a user's expenses and kept current from change
+ * events.
+ *
+ * A missing entry is built outside the map, so a slow build holds no lock that
+ * event listeners or other users wait on, and concurrent callers for one user
+ * share the build. The build runs in one read-only snapshot that starts by
+ * reading the user's sync version. Changes that commit meanwhile are queued and
+ * replayed onto the result.
+ *
+ * Each entry keeps the versions it reflects: the snapshot's, advanced as changes
+ * are applied. A change is applied only if its version is newer and not applied
+ * yet, whether it was queued during the build or arrives afterwards, so one
+ * committed before the snapshot but delivered after the build finished is not
+ * counted twice.
+ */
+public class UserStateCache<S> {
+    
+    private final Map<Long, Entry<S>> states = new ConcurrentHashMap<>();
+    private final Map<Long, Build<S>> building = new ConcurrentHashMap<>();
+    private final BiConsumer<S, ExpenseChangeEvent> update;
+    private final ExpenseSyncStateRepository syncStateRepository;
+    private final TransactionTemplate snapshot;
+    
+    public UserStateCache(BiConsumer<S, ExpenseChangeEvent> update,
+                          ExpenseSyncStateRepository syncStateRepository,
+                          PlatformTransactionManager transactionManager) {
+        this.update = update;
+        this.syncStateRepository = syncStateRepository;
+        this.snapshot = new TransactionTemplate(transactionManager);
+        this.snapshot.setReadOnly(true);
+        this.snapshot.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+    
+    public S getIfPresent(Long userId) {
+        Entry<S> entry = states.get(userId);
+        return entry != null ? entry.state : null;
+    }
+    
+    public S get(Long userId, Supplier<S> builder) {
+        return get(userId, state -> true, builder);
+    }
+    
+    // Rebuilds when the cached state no longer passes the check. Callers on the
+    // user's shard: the build reads through the current shard context.
+    public S get(Long userId, Predicate<S> current, Supplier<S> builder) {
+        while (true) {
+            Entry<S> entry = states.get(userId);
+            if (entry != null && current.test(entry.state)) {
+                return entry.state;
+            }
+            Build<S> mine = new Build<>();
+            Build<S> running = building.putIfAbsent(userId, mine);
+            if (running == null) {
+                return build(userId, mine, builder);
+            }
+            S state;
+            try {
+                state = running.result.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+            }
+            if (current.test(state)) {
+                return state;
+            }
+        }
+    }
+    
+    // Applies the change to a cached state, or queues it for a running build;
+    // users with neither are skipped and built from the database when needed.
+    public void apply(ExpenseChangeEvent event) {
+        building.compute(event.getUser().getId(), (id, running) -> {
+            if (running != null) {
+                running.events.add(event);
+            } else {
+                states.computeIfPresent(id, (key, entry) -> {
+                    entry.apply(event, update);
+                    return entry;
+                });
+            }
+            return running;
+        });
+    }
+    
+    public Set<Long> userIds() {
+        return states.keySet();
+    }
+    
+    // The function gets the state and the version up to which it has every
+    // change; returning null removes the entry.
+    public void computeIfPresent(Long userId, BiFunction<S, Long, S> function) {
+        states.computeIfPresent(userId, (id, entry) -> {
+            entry.state = function.apply(entry.state, entry.version);
+            return entry.state != null ? entry : null;
+        });
+    }
+    
+    public void removeIf(Predicate<S> predicate) {
+        states.values().removeIf(entry -> predicate.test(entry.state));
+    }
+    
+    private S build(Long userId, Build<S> mine, Supplier<S> builder) {
+        try {
+            long[] version = new long[1];
+            S built = snapshot.execute(status -> {
+                Long last = syncStateRepository.getLastVersion(userId);
+                version[0] = last != null ? last : 0;
+                return builder.get();
+            });
+            building.compute(userId, (id, running) -> {
+                Entry<S> entry = new Entry<>(built, version[0]);
+                for (ExpenseChangeEvent event : mine.events) {
+                    entry.apply(event, update);
+                }
+                states.put(userId, entry);
+                return null;
+            });
+            mine.result.complete(built);
+            return built;
+        } catch (RuntimeException e) {
+            building.remove(userId, mine);
+            mine.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+    
+    private static final class Build<S> {
+        
+        // Only touched inside building.compute for this user.
+        private final List<ExpenseChangeEvent> events = new ArrayList<>();
+        private final CompletableFuture<S> result = new CompletableFuture<>();
+    }
+    
+    // Only touched inside a compute on states or building for this user.
+    private static final class Entry<S> {
+        
+        private S state;
+        // Every change up to version is in the state. Listeners for one user's
+        // commits can run out of order, so newer ones already applied are kept
+        // in ahead until the gap below them fills.
+        private long version;
+        private final Set<Long> ahead = new HashSet<>();
+        
+        private Entry(S state, long version) {
+            this.state = state;
+            this.version = version;
+        }
+        
+        private void apply(ExpenseChangeEvent event, BiConsumer<S, ExpenseChangeEvent> update) {
+            if (event.getVersion() <= version || !ahead.add(event.getVersion())) {
+                return;
+            }
+            update.accept(state, event);
+            while (ahead.remove(version + 1)) {
+                version++;
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+#!/usr/bin/env bash
+# Starts the backend in fast-start mode: Spring AOT initializers, lazy beans and
+# an AppCDS archive of the JDK, Spring and Hibernate classes.
+#
+#   mvn -Pfast-start -DskipTests package     # thin jar + target/lib + AOT sources
+#   scripts/fast-start.sh train              # one-off: write target/fintrack.jsa
+#   scripts/fast-start.sh [app args...]      # run
+#
+# Run from Backend/ so rates.properties and application-fast-start.properties
+# are found. The training run needs the same database settings as a real start,
+# because the archive is dumped once the context has refreshed.
+set -euo pipefail
+
+JAR=target/fintrack-backend-1.0.0.jar
+ARCHIVE=target/fintrack.jsa
+JAVA_OPTS=(${JAVA_OPTS:-} -Dspring.aot.enabled=true -Dspring.profiles.active=fast-start)
+
+if [[ ! -d target/lib ]]; then
+    echo "target/lib is missing; build with: mvn -Pfast-start -DskipTests package" >&2
+    exit 1
+fi
+
+if [[ "${1:-}" == "train" ]]; then
+    shift
+    rm -f "$ARCHIVE"
+    exec java "${JAVA_OPTS[@]}" -XX:ArchiveClassesAtExit="$ARCHIVE" -Dspring.context.exit=onRefresh -jar "$JAR" "$@"
+fi
+
+if [[ -f "$ARCHIVE" ]]; then
+    JAVA_OPTS+=(-XX:SharedArchiveFile="$ARCHIVE" -Xshare:auto)
+else
+    echo "No CDS archive at $ARCHIVE; run '$0 train' first for the full speed-up." >&2
+fi
+exec java "${JAVA_OPTS[@]}" -jar "$JAR" "$@"
@@ -0,0 +1,64 @@
+#!/usr/bin/env bash
+# Compares default and fast-start startup: time from process launch to the first
+# successful request (a user registration, which goes through security, JPA and
+# the database) and the resident set size at that moment.
+#
+#   scripts/startup-benchmark.sh [runs]
+#
+# Run from Backend/ with the usual database settings in the environment
+# (SPRING_DATASOURCE_URL, ...). Builds both variants, trains the CDS archive,
+# then reports the median of each measurement over the given number of runs.
+set -euo pipefail
+
+RUNS=${1:-5}
+PORT=${PORT:-18080}
+URL="http://localhost:$PORT/api/auth/register"
+BENCH=target/bench
+
+mkdir -p "$BENCH"
+mvn -q -DskipTests package
+cp target/fintrack-backend-1.0.0.jar "$BENCH/default.jar"
+mvn -q -DskipTests -Pfast-start package
+scripts/fast-start.sh train --server.port="$PORT" > "$BENCH/train.log" 2>&1
+
+now_ms() { date +%s%3N; }
+
+measure() {
+    local mode=$1 start pid status suffix
+    start=$(now_ms)
+    if [[ "$mode" == default ]]; then
+        java -jar "$BENCH/default.jar" --server.port="$PORT" > "$BENCH/$mode.log" 2>&1 &
+    else
+        scripts/fast-start.sh --server.port="$PORT" > "$BENCH/$mode.log" 2>&1 &
+    fi
+    pid=$!
+    suffix="$mode$(now_ms)"
+    while true; do
+        if ! kill -0 "$pid" 2> /dev/null; then
+            echo "$mode run exited before serving a request; see $BENCH/$mode.log" >&2
+            exit 1
+        fi
+        status=$(curl -s -o /dev/null -w '%{http_code}' -H 'Content-Type: application/json' \
+            -d "{\"username\":\"bench$suffix\",\"email\":\"bench$suffix@example.com\",\"password\":\"benchmark\"}" \
+            "$URL" || true)
+        [[ "$status" == 200 ]] && break
+        sleep 0.05
+    done
+    echo "$(( $(now_ms) - start )) $(awk '/VmRSS/ {print $2}' "/proc/$pid/status")"
+    kill "$pid"
+    wait "$pid" 2> /dev/null || true
+}
+
+median() { sort -n | awk '{v[NR]=$1} END {print v[int((NR+1)/2)]}'; }
+
+printf '%-12s %28s %22s\n' mode "first request (ms, median)" "RSS (MiB, median)"
+for mode in default fast-start; do
+    results=()
+    for ((i = 0; i < RUNS; i++)); do
+        result=$(measure "$mode") || exit 1
+        results+=("$result")
+    done
+    ttfr=$(printf '%s\n' "${results[@]}" | cut -d' ' -f1 | median)
+    rss=$(printf '%s\n' "${results[@]}" | cut -d' ' -f2 | median)
+    printf '%-12s %28s %22s\n' "$mode" "$ttfr" "$(( rss / 1024 ))"
+done
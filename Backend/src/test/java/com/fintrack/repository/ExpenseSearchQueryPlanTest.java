@@ -0,0 +1,147 @@
+package com.fintrack.repository;
+
+import com.fintrack.dto.ExpenseSearchRequest;
+import com.fintrack.model.Expense;
+import com.fintrack.model.User;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the searches built by {@link ExpenseSpecifications} against MySQL with a
+ * schema created only by the versioned migrations, then EXPLAINs the exact SQL
+ * Hibernate sent (taken from the general log, with its literals) and checks that
+ * MySQL range-scans one of the composite indexes instead of scanning the table.
+ */
+@DataJpaTest(properties = {
+    "spring.flyway.locations=filesystem:db/migration",
+    "spring.jpa.hibernate.ddl-auto=none"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@Testcontainers
+class ExpenseSearchQueryPlanTest {
+    
+    private static final int USERS = 40;
+    private static final int EXPENSES_PER_USER = 500;
+    
+    @Container
+    @ServiceConnection
+    static MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.0").withUsername("root");
+    
+    @Autowired
+    private ExpenseRepository expenseRepository;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    private User user;
+    
+    @BeforeAll
+    void seed() {
+        Random random = new Random(42);
+        Expense.Category[] categories = Expense.Category.values();
+        LocalDate firstDay = LocalDate.of(2022, 1, 1);
+        
+        for (int u = 1; u <= USERS; u++) {
+            jdbcTemplate.update("INSERT INTO users (id, username, email, password, role) VALUES (?, ?, ?, 'x', 'USER')",
+                u, "user" + u, "user" + u + "@example.com");
+            List<Object[]> rows = new ArrayList<>();
+            for (int i = 0; i < EXPENSES_PER_USER; i++) {
+                rows.add(new Object[] {
+                    u,
+                    "Expense " + i,
+                    BigDecimal.valueOf(random.nextInt(500_000), 2),
+                    categories[random.nextInt(categories.length)].name(),
+                    Date.valueOf(firstDay.plusDays(random.nextInt(3 * 365))),
+                    "CASH",
+                    "Vendor " + random.nextInt(50)
+                });
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO expenses (user_id, title, amount, category, expense_date, " +
+                "payment_method, vendor) VALUES (?, ?, ?, ?, ?, ?, ?)", rows);
+        }
+        jdbcTemplate.execute("ANALYZE TABLE expenses");
+        jdbcTemplate.execute("SET GLOBAL log_output = 'TABLE'");
+        jdbcTemplate.execute("SET GLOBAL general_log = 'ON'");
+        
+        user = userRepository.findById(7L).orElseThrow();
+    }
+    
+    @Test
+    void dateRangeUsesUserDateIndex() {
+        ExpenseSearchRequest request = new ExpenseSearchRequest();
+        request.setStartDate(LocalDate.of(2023, 3, 1));
+        request.setEndDate(LocalDate.of(2023, 3, 31));
+        
+        Map<String, Object> plan = explain(request);
+        
+        assertThat(plan.get("key")).isEqualTo("idx_expenses_user_date");
+        assertThat(plan.get("type")).isEqualTo("range");
+    }
+    
+    @Test
+    void categoriesWithDateRangeUseUserCategoryDateIndex() {
+        ExpenseSearchRequest request = new ExpenseSearchRequest();
+        request.setStartDate(LocalDate.of(2023, 1, 1));
+        request.setEndDate(LocalDate.of(2023, 6, 30));
+        request.setCategories(List.of(Expense.Category.FOOD, Expense.Category.TRAVEL));
+        
+        Map<String, Object> plan = explain(request);
+        
+        assertThat(plan.get("key")).isEqualTo("idx_expenses_user_category_date");
+        assertThat(plan.get("type")).isEqualTo("range");
+    }
+    
+    @Test
+    void nonIndexedFiltersStillSeekToTheUser() {
+        ExpenseSearchRequest request = new ExpenseSearchRequest();
+        request.setVendor("Vendor 1");
+        request.setMinAmount(new BigDecimal("100.00"));
+        request.setPaymentMethods(List.of(Expense.PaymentMethod.CASH));
+        
+        Map<String, Object> plan = explain(request);
+        
+        assertThat((String) plan.get("key")).startsWith("idx_expenses_user_");
+        assertThat(plan.get("type")).isIn("ref", "range");
+    }
+    
+    private Map<String, Object> explain(ExpenseSearchRequest request) {
+        jdbcTemplate.execute("TRUNCATE TABLE mysql.general_log");
+        expenseRepository.findAll(ExpenseSpecifications.matching(user, request), Sort.by(Sort.Direction.DESC, "expenseDate"));
+        
+        String sql = jdbcTemplate.queryForObject(
+            "SELECT CONVERT(argument USING utf8mb4) FROM mysql.general_log " +
+            "WHERE command_type = 'Query' AND argument LIKE 'select%from expenses%' " +
+            "ORDER BY event_time DESC LIMIT 1", String.class);
+        
+        List<Map<String, Object>> plan = jdbcTemplate.queryForList("EXPLAIN " + sql);
+        assertThat(plan).hasSize(1);
+        return plan.get(0);
+    }
+}
@@ -0,0 +1,132 @@
+package com.fintrack.service;
+
+import com.fintrack.model.Expense;
+import com.fintrack.model.User;
+import com.fintrack.repository.ExpenseRepository;
+import com.fintrack.repository.ExpenseSyncStateRepository;
+import com.fintrack.repository.ShardRouter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Offline accuracy and latency benchmark for {@link CategorySuggestionService}
+ * over {@link SyntheticExpenses}. Each user's oldest 80% of expenses train the
+ * models (through the same cold-start paths as production: the global prior
+ * from a full scan, user models from their rows); the newest 20% are suggested
+ * one by one and then fed back as change events, as the app does when the
+ * expense is saved. Results are printed and checked against loose floors.
+ */
+class CategorySuggestionBenchmark {
+    
+    private static final int USERS = 200;
+    private static final int EXPENSES_PER_USER = 300;
+    private static final double TRAIN_FRACTION = 0.8;
+    
+    @TempDir
+    Path modelDir;
+    
+    @Test
+    void rankedSuggestionsAreAccurateAndFast() {
+        SyntheticExpenses data = new SyntheticExpenses(7);
+        List<User> users = new ArrayList<>();
+        List<List<Expense>> training = new ArrayList<>();
+        List<List<Expense>> holdout = new ArrayList<>();
+        List<Expense> allTraining = new ArrayList<>();
+        for (int u = 1; u <= USERS; u++) {
+            User user = data.user(u);
+            List<Expense> expenses = data.expenses(user, EXPENSES_PER_USER, LocalDate.of(2024, 1, 1));
+            int split = (int) (expenses.size() * TRAIN_FRACTION);
+            users.add(user);
+            training.add(expenses.subList(0, split));
+            holdout.add(expenses.subList(split, expenses.size()));
+            allTraining.addAll(expenses.subList(0, split));
+        }
+        
+        ExpenseRepository expenseRepository = mock(ExpenseRepository.class);
+        when(expenseRepository.findAll(any(Pageable.class))).thenAnswer(invocation -> {
+            Pageable pageable = invocation.getArgument(0);
+            int from = (int) Math.min(pageable.getOffset(), allTraining.size());
+            int to = Math.min(from + pageable.getPageSize(), allTraining.size());
+            return (Page<Expense>) new PageImpl<>(allTraining.subList(from, to), pageable, allTraining.size());
+        });
+        when(expenseRepository.findByUserOrderByExpenseDateDesc(any(User.class)))
+            .thenAnswer(invocation -> training.get((int) (((User) invocation.getArgument(0)).getId() - 1)));
+        
+        ShardRouter shardRouter = mock(ShardRouter.class);
+        when(shardRouter.scatter(any())).thenAnswer(invocation -> {
+            IntFunction<?> work = invocation.getArgument(0);
+            return List.of(work.apply(0));
+        });
+        
+        CategorySuggestionService service = new CategorySuggestionService();
+        ReflectionTestUtils.setField(service, "modelDir", modelDir.toString());
+        ReflectionTestUtils.setField(service, "priorStrength", 5.0);
+        ReflectionTestUtils.setField(service, "idleEvictionMinutes", 60L);
+        ReflectionTestUtils.setField(service, "expenseRepository", expenseRepository);
+        ReflectionTestUtils.setField(service, "exchangeRateService", new ExchangeRateService());
+        ReflectionTestUtils.setField(service, "shardRouter", shardRouter);
+        ReflectionTestUtils.setField(service, "syncStateRepository", mock(ExpenseSyncStateRepository.class));
+        ReflectionTestUtils.setField(service, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.invokeMethod(service, "init");
+        
+        long buildStart = System.nanoTime();
+        ReflectionTestUtils.invokeMethod(service, "loadGlobalModel");
+        long globalBuildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+        
+        int total = 0;
+        int top1 = 0;
+        int top3 = 0;
+        List<Long> latencies = new ArrayList<>();
+        for (int u = 0; u < USERS; u++) {
+            User user = users.get(u);
+            for (Expense expense : holdout.get(u)) {
+                long start = System.nanoTime();
+                List<Expense.Category> ranked = service.suggest(user, expense.getTitle(), expense.getVendor(),
+                    expense.getPaymentMethod(), expense.getAmount(), expense.getCurrency());
+                latencies.add(System.nanoTime() - start);
+                
+                total++;
+                if (ranked.get(0) == expense.getCategory()) {
+                    top1++;
+                }
+                if (ranked.subList(0, 3).contains(expense.getCategory())) {
+                    top3++;
+                }
+                service.onExpenseChange(new ExpenseChangeEvent(ExpenseChangeEvent.Type.CREATED, user, expense, null,
+                    expense.getSyncVersion()));
+            }
+        }
+        
+        // The first suggestion per user includes building that user's model.
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        double p50 = sorted[sorted.length / 2] / 1e6;
+        double p99 = sorted[(int) (sorted.length * 0.99)] / 1e6;
+        double accuracy1 = (double) top1 / total;
+        double accuracy3 = (double) top3 / total;
+        System.out.printf("category suggestions: %d users, %d suggestions, global build %d ms, " +
+                "top-1 %.3f, top-3 %.3f, p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+            USERS, total, globalBuildMillis, accuracy1, accuracy3, p50, p99, sorted[sorted.length - 1] / 1e6);
+        
+        assertThat(accuracy1).isGreaterThan(0.7);
+        assertThat(accuracy3).isGreaterThan(0.9);
+        assertThat(p99).isLessThan(10.0);
+    }
+}
@@ -0,0 +1,80 @@
+package com.fintrack.service;
+
+import com.fintrack.model.Expense;
+import com.fintrack.model.User;
+import com.fintrack.repository.ExpenseRepository;
+import com.fintrack.repository.ExpenseSyncStateRepository;
+import com.fintrack.repository.ShardRouter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CategorySuggestionServiceTest {
+    
+    @TempDir
+    Path modelDir;
+    
+    private final SyntheticExpenses data = new SyntheticExpenses(46);
+    private final User user = data.user(1);
+    private CategorySuggestionService service;
+    private ExpenseRepository expenseRepository;
+    private ExpenseSyncStateRepository syncStateRepository;
+    
+    @BeforeEach
+    void setUp() {
+        expenseRepository = mock(ExpenseRepository.class);
+        syncStateRepository = mock(ExpenseSyncStateRepository.class);
+        
+        service = new CategorySuggestionService();
+        ReflectionTestUtils.setField(service, "modelDir", modelDir.toString());
+        ReflectionTestUtils.setField(service, "priorStrength", 5.0);
+        // Every flush evicts.
+        ReflectionTestUtils.setField(service, "idleEvictionMinutes", 0L);
+        ReflectionTestUtils.setField(service, "expenseRepository", expenseRepository);
+        ReflectionTestUtils.setField(service, "exchangeRateService", new ExchangeRateService());
+        ReflectionTestUtils.setField(service, "shardRouter", mock(ShardRouter.class));
+        ReflectionTestUtils.setField(service, "syncStateRepository", syncStateRepository);
+        ReflectionTestUtils.setField(service, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.invokeMethod(service, "init");
+    }
+    
+    @Test
+    void savedModelIsRebuiltOnceChangesWentPastIt() {
+        List<Expense> rows = new ArrayList<>(data.expenses(user, 11, LocalDate.of(2026, 1, 1)));
+        Expense later = rows.remove(10);
+        when(expenseRepository.findByUserOrderByExpenseDateDesc(user)).thenReturn(rows);
+        when(syncStateRepository.getLastVersion(user.getId())).thenReturn(10L);
+        
+        suggest();
+        service.flush();
+        suggest();
+        service.flush();
+        verify(expenseRepository, times(1)).findByUserOrderByExpenseDateDesc(user);
+        
+        // Committed while the model is out of memory: the saved copy misses it.
+        rows.add(later);
+        when(syncStateRepository.getLastVersion(user.getId())).thenReturn(11L);
+        service.onExpenseChange(new ExpenseChangeEvent(ExpenseChangeEvent.Type.CREATED, user, later, null, 11));
+        
+        suggest();
+        verify(expenseRepository, times(2)).findByUserOrderByExpenseDateDesc(user);
+    }
+    
+    private void suggest() {
+        service.suggest(user, "weekly groceries", "Big Bazaar", Expense.PaymentMethod.CASH,
+            BigDecimal.TEN, ExchangeRateService.DEFAULT_CURRENCY);
+    }
+}
@@ -0,0 +1,115 @@
+package com.fintrack.service;
+
+import com.fintrack.model.Expense;
+import com.fintrack.model.User;
+import com.fintrack.repository.ExpenseRepository;
+import com.fintrack.repository.ExpenseSyncStateRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DuplicateDetectionServiceTest {
+    
+    private static final LocalDate DATE = LocalDate.of(2026, 3, 14);
+    private static final BigDecimal AMOUNT = new BigDecimal("249.00");
+    
+    private final User user = new SyntheticExpenses(42).user(1);
+    private DuplicateDetectionService service;
+    private ExecutorService pool;
+    
+    @BeforeEach
+    void setUp() {
+        ExpenseRepository expenseRepository = mock(ExpenseRepository.class);
+        when(expenseRepository.getDuplicateFingerprints(any())).thenReturn(List.of());
+        
+        service = new DuplicateDetectionService();
+        ReflectionTestUtils.setField(service, "windowDays", 1);
+        ReflectionTestUtils.setField(service, "idleEvictionMinutes", 30L);
+        ReflectionTestUtils.setField(service, "expenseRepository", expenseRepository);
+        ReflectionTestUtils.setField(service, "syncStateRepository", mock(ExpenseSyncStateRepository.class));
+        ReflectionTestUtils.setField(service, "transactionManager", mock(PlatformTransactionManager.class));
+        service.init();
+        pool = Executors.newFixedThreadPool(16);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+    
+    @Test
+    void concurrentIdenticalCreatesLetOnlyOneThrough() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<DuplicateDetectionService.Reservation>> futures = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            Callable<DuplicateDetectionService.Reservation> create = () -> {
+                start.await();
+                return reserve(DATE);
+            };
+            futures.add(pool.submit(create));
+        }
+        start.countDown();
+        
+        int passed = 0;
+        for (Future<DuplicateDetectionService.Reservation> future : futures) {
+            passed += future.get().isDuplicate() ? 0 : 1;
+        }
+        assertThat(passed).isEqualTo(1);
+    }
+    
+    @Test
+    void pendingCreateIsSeenUntilItCommitsOrRollsBack() {
+        DuplicateDetectionService.Reservation first = reserve(DATE);
+        assertThat(first.isDuplicate()).isFalse();
+        
+        DuplicateDetectionService.Reservation second = reserve(DATE.plusDays(1));
+        assertThat(second.isDuplicate()).isTrue();
+        assertThat(second.getDuplicateIds()).isEmpty();
+        service.release(second);
+        
+        // Rolled back: nothing left to match.
+        service.release(first);
+        DuplicateDetectionService.Reservation retry = reserve(DATE);
+        assertThat(retry.isDuplicate()).isFalse();
+        
+        // Committed: the change event indexes the row before the reservation is released.
+        service.onExpenseChange(new ExpenseChangeEvent(ExpenseChangeEvent.Type.CREATED, user, expense(7L), null, 1));
+        service.release(retry);
+        DuplicateDetectionService.Reservation after = reserve(DATE);
+        assertThat(after.getDuplicateIds()).containsExactly(7L);
+    }
+    
+    private DuplicateDetectionService.Reservation reserve(LocalDate date) {
+        return service.reserve(user, AMOUNT, ExchangeRateService.DEFAULT_CURRENCY, date, "Croma", "headphones");
+    }
+    
+    private Expense expense(Long id) {
+        Expense expense = new Expense();
+        expense.setId(id);
+        expense.setUser(user);
+        expense.setAmount(AMOUNT);
+        expense.setCurrency(ExchangeRateService.DEFAULT_CURRENCY);
+        expense.setExpenseDate(DATE);
+        expense.setVendor("Croma");
+        expense.setTitle("headphones");
+        expense.setCategory(Expense.Category.SHOPPING);
+        return expense;
+    }
+}
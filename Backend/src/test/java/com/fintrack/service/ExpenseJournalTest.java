@@ -0,0 +1,141 @@
+package com.fintrack.service;
+
+import com.fintrack.model.Expense;
+import com.fintrack.model.ExpenseSyncState;
+import com.fintrack.model.User;
+import com.fintrack.repository.ExpenseSyncStateRepository;
+import com.fintrack.repository.ShardRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ExpenseJournalTest {
+    
+    private static final int SEGMENT_BYTES = 1024;
+    
+    @TempDir
+    Path dir;
+    
+    private final SyntheticExpenses data = new SyntheticExpenses(45);
+    private final User user = data.user(1);
+    private final ExpenseSyncStateRepository syncStateRepository = mock(ExpenseSyncStateRepository.class);
+    
+    @Test
+    void historyMapsOnlySegmentsInTheRequestedRange() throws Exception {
+        ExpenseJournal journal = journal(64);
+        append(journal, 20);
+        Thread.sleep(50);
+        long from = System.currentTimeMillis();
+        append(journal, 20);
+        long to = System.currentTimeMillis();
+        Thread.sleep(50);
+        append(journal, 20);
+        journal.close();
+        
+        // After a restart the time ranges come from the index headers alone.
+        ExpenseJournal restarted = journal(64);
+        int sealed = sealedSegments(restarted).size();
+        assertThat(sealed).isGreaterThan(4);
+        assertThat(openSegments(restarted)).isEmpty();
+        
+        List<JournalEntry> history = restarted.getHistory(user, from, to);
+        
+        assertThat(history).hasSize(20);
+        assertThat(history).allSatisfy(entry -> assertThat(entry.getTimestamp()).isBetween(from, to));
+        assertThat(openSegments(restarted).size()).isPositive().isLessThan(sealed);
+    }
+    
+    @Test
+    void replayKeepsOnlyTheMostRecentlyUsedSegmentsMapped() throws Exception {
+        ExpenseJournal journal = journal(2);
+        append(journal, 60);
+        
+        List<Long> sequences = new ArrayList<>();
+        journal.replay(0, entry -> sequences.add(entry.getSequence()));
+        
+        assertThat(sequences).hasSize(60);
+        assertThat(sequences).isSorted();
+        assertThat(sequences.get(59) - sequences.get(0)).isEqualTo(59);
+        assertThat(openSegments(journal)).hasSizeLessThanOrEqualTo(2);
+    }
+    
+    @Test
+    void entriesKeepTheirEnumsAndTheChangesOwnVersion() throws Exception {
+        ExpenseJournal journal = journal(4);
+        Expense expense = data.expenses(user, 1, LocalDate.of(2026, 2, 1)).get(0);
+        journal.append(new ExpenseChangeEvent(ExpenseChangeEvent.Type.DELETED, user, expense, null, 99));
+        
+        List<JournalEntry> entries = new ArrayList<>();
+        journal.replay(0, entries::add);
+        
+        assertThat(entries).singleElement().satisfies(entry -> {
+            assertThat(entry.getType()).isEqualTo(ExpenseChangeEvent.Type.DELETED);
+            assertThat(entry.getVersion()).isEqualTo(99);
+            assertThat(entry.getExpense().getCategory()).isEqualTo(expense.getCategory());
+            assertThat(entry.getExpense().getPaymentMethod()).isEqualTo(expense.getPaymentMethod());
+        });
+    }
+    
+    @Test
+    void changesCommittedButNeverJournaledAreReported() throws Exception {
+        ExpenseJournal journal = journal(4);
+        append(journal, 5);
+        User other = data.user(2);
+        when(syncStateRepository.findAll()).thenReturn(List.of(
+            new ExpenseSyncState(user.getId(), 7, 0),
+            new ExpenseSyncState(other.getId(), 3, 0)));
+        
+        // The user with nothing journaled predates the journal and is not checked.
+        assertThat(journal.checkForGaps()).containsExactly(Map.entry(user.getId(), 2L));
+    }
+    
+    private ExpenseJournal journal(int maxOpenSegments) throws Exception {
+        ExpenseJournal journal = new ExpenseJournal();
+        ReflectionTestUtils.setField(journal, "enabled", true);
+        ReflectionTestUtils.setField(journal, "journalDir", dir.toString());
+        ReflectionTestUtils.setField(journal, "segmentBytes", SEGMENT_BYTES);
+        ReflectionTestUtils.setField(journal, "maxOpenSegments", maxOpenSegments);
+        ReflectionTestUtils.setField(journal, "shardRouter", shardRouter());
+        ReflectionTestUtils.setField(journal, "syncStateRepository", syncStateRepository);
+        ReflectionTestUtils.setField(journal, "meterRegistry", new SimpleMeterRegistry());
+        journal.init();
+        return journal;
+    }
+    
+    private void append(ExpenseJournal journal, int count) throws Exception {
+        for (Expense expense : data.expenses(user, count, LocalDate.of(2026, 2, 1))) {
+            journal.append(new ExpenseChangeEvent(ExpenseChangeEvent.Type.CREATED, user, expense, null,
+                expense.getSyncVersion()));
+        }
+    }
+    
+    private static ShardRouter shardRouter() {
+        ShardRouter shardRouter = mock(ShardRouter.class);
+        when(shardRouter.scatter(any())).thenAnswer(invocation -> {
+            IntFunction<?> work = invocation.getArgument(0);
+            return List.of(work.apply(0));
+        });
+        return shardRouter;
+    }
+    
+    private static Map<?, ?> sealedSegments(ExpenseJournal journal) {
+        return (Map<?, ?>) ReflectionTestUtils.getField(journal, "sealedSegments");
+    }
+    
+    private static Map<?, ?> openSegments(ExpenseJournal journal) {
+        return (Map<?, ?>) ReflectionTestUtils.getField(journal, "openSegments");
+    }
+}
@@ -0,0 +1,131 @@
+package com.fintrack.service;
+
+import com.fintrack.repository.ShardRouter;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Insert throughput through {@link GroupCommitWriter} against MySQL, with group
+ * commit off (one transaction per write) and on, for many concurrent callers
+ * each writing single rows as the expense endpoints do.
+ */
+@DataJpaTest(properties = {
+    "spring.flyway.locations=filesystem:db/migration",
+    "spring.jpa.hibernate.ddl-auto=none"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@Testcontainers
+class GroupCommitBenchmark {
+    
+    private static final int CALLERS = 32;
+    private static final int WRITES_PER_CALLER = 200;
+    
+    @Container
+    @ServiceConnection
+    static MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.0").withUsername("root");
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @BeforeAll
+    void seed() {
+        for (int u = 1; u <= CALLERS; u++) {
+            jdbcTemplate.update("INSERT INTO users (id, username, email, password, role) VALUES (?, ?, ?, 'x', 'USER')",
+                u, "user" + u, "user" + u + "@example.com");
+        }
+    }
+    
+    @Test
+    void groupCommitRaisesInsertThroughput() throws Exception {
+        run(false, 20);
+        double direct = run(false, WRITES_PER_CALLER);
+        run(true, 20);
+        double grouped = run(true, WRITES_PER_CALLER);
+        
+        System.out.printf("group commit: %d callers, direct %.0f writes/s, grouped %.0f writes/s (%.2fx)%n",
+            CALLERS, direct, grouped, grouped / direct);
+        assertThat(grouped).isGreaterThan(direct);
+    }
+    
+    // Writes per second; the first calls per mode double as warm-up.
+    private double run(boolean enabled, int writesPerCaller) throws Exception {
+        GroupCommitWriter writer = writer(enabled);
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        try {
+            int before = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM expenses", Integer.class);
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 1; c <= CALLERS; c++) {
+                long userId = c;
+                futures.add(callers.submit(() -> {
+                    for (int i = 0; i < writesPerCaller; i++) {
+                        int row = i;
+                        writer.write(userId, () -> jdbcTemplate.update(
+                            "INSERT INTO expenses (user_id, title, amount, category, expense_date, payment_method) " +
+                            "VALUES (?, ?, 12.50, 'FOOD', CURDATE(), 'CASH')", userId, "Expense " + row));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            int written = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM expenses", Integer.class) - before;
+            assertThat(written).isEqualTo(CALLERS * writesPerCaller);
+            return written / seconds;
+        } finally {
+            callers.shutdownNow();
+            writer.shutdown();
+        }
+    }
+    
+    private GroupCommitWriter writer(boolean enabled) {
+        ShardRouter shardRouter = mock(ShardRouter.class);
+        when(shardRouter.shardFor(any())).thenReturn(0);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(1)).run();
+            return null;
+        }).when(shardRouter).runOn(anyInt(), any(Runnable.class));
+        
+        GroupCommitWriter writer = new GroupCommitWriter();
+        ReflectionTestUtils.setField(writer, "enabled", enabled);
+        ReflectionTestUtils.setField(writer, "maxBatch", 64);
+        ReflectionTestUtils.setField(writer, "maxDelayMillis", 5L);
+        ReflectionTestUtils.setField(writer, "timeoutMillis", 10_000L);
+        ReflectionTestUtils.setField(writer, "shardRouter", shardRouter);
+        ReflectionTestUtils.setField(writer, "transactionManager", transactionManager);
+        return writer;
+    }
+}
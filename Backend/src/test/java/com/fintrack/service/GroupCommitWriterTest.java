@@ -0,0 +1,97 @@
+package com.fintrack.service;
+
+import com.fintrack.repository.ShardRouter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GroupCommitWriterTest {
+    
+    private GroupCommitWriter groupCommitWriter;
+    private ExecutorService pool;
+    
+    @BeforeEach
+    void setUp() {
+        ShardRouter shardRouter = mock(ShardRouter.class);
+        when(shardRouter.shardFor(any())).thenReturn(0);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(1)).run();
+            return null;
+        }).when(shardRouter).runOn(anyInt(), any(Runnable.class));
+        
+        groupCommitWriter = new GroupCommitWriter();
+        ReflectionTestUtils.setField(groupCommitWriter, "enabled", true);
+        ReflectionTestUtils.setField(groupCommitWriter, "maxBatch", 8);
+        ReflectionTestUtils.setField(groupCommitWriter, "maxDelayMillis", 1L);
+        ReflectionTestUtils.setField(groupCommitWriter, "timeoutMillis", 300L);
+        ReflectionTestUtils.setField(groupCommitWriter, "shardRouter", shardRouter);
+        ReflectionTestUtils.setField(groupCommitWriter, "transactionManager", mock(PlatformTransactionManager.class));
+        pool = Executors.newSingleThreadExecutor();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        groupCommitWriter.shutdown();
+        pool.shutdownNow();
+    }
+    
+    @Test
+    void writesBehindAStuckFlushTimeOutAndNeverRun() throws Exception {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Integer> stuck = pool.submit(() -> groupCommitWriter.write(1L, () -> {
+            flushing.countDown();
+            await(release);
+            return 1;
+        }));
+        assertThat(flushing.await(5, TimeUnit.SECONDS)).isTrue();
+        
+        AtomicBoolean ran = new AtomicBoolean();
+        assertThatThrownBy(() -> groupCommitWriter.write(2L, () -> {
+            ran.set(true);
+            return 2;
+        })).hasMessageContaining("not started");
+        assertThatThrownBy(() -> stuck.get(5, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class)
+            .hasMessageContaining("may still commit");
+        
+        release.countDown();
+        assertThat(groupCommitWriter.write(3L, () -> 3)).isEqualTo(3);
+        assertThat(ran).isFalse();
+    }
+    
+    @Test
+    void deadWriterFailsItsWritesAndIsReplaced() {
+        assertThatThrownBy(() -> groupCommitWriter.write(1L, () -> {
+            throw new AssertionError("writer killed");
+        })).hasMessageContaining("stopped");
+        
+        assertThat(groupCommitWriter.write(2L, () -> 2)).isEqualTo(2);
+    }
+    
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
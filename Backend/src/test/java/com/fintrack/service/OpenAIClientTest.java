@@ -0,0 +1,206 @@
+package com.fintrack.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs {@link OpenAIClient} against a fake provider on localhost (set as
+ * openai.base-url), whose replies are scripted per request number.
+ */
+class OpenAIClientTest {
+    
+    private static final long BUDGET_MS = 400;
+    private static final long OPEN_MS = 300;
+    private static final String COMPLETION = "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion\",\"created\":0," +
+        "\"model\":\"gpt-3.5-turbo\",\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\"," +
+        "\"content\":\"%s\"},\"finish_reason\":\"stop\"}]}";
+    private static final String ERROR = "{\"error\":{\"message\":\"overloaded\",\"type\":\"server_error\"}}";
+    
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile IntFunction<Reply> replies = n -> Reply.ok(0, "insight");
+    private SimpleMeterRegistry meterRegistry;
+    private OpenAIClient client;
+    
+    @BeforeEach
+    void startProvider() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.createContext("/v1/chat/completions", this::handle);
+        server.start();
+    }
+    
+    @AfterEach
+    void stopProvider() {
+        if (client != null) {
+            client.shutdown();
+        }
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+    
+    @Test
+    void budgetOverrunFallsBackAndCancelsTheRequest() throws Exception {
+        client = client(0);
+        replies = n -> Reply.ok(5_000, "too late");
+        
+        long start = System.nanoTime();
+        Optional<String> result = client.complete(request());
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        
+        assertThat(result).isEmpty();
+        assertThat(elapsedMs).isLessThan(BUDGET_MS + 300);
+        assertThat(fallbacks("timeout")).isEqualTo(1.0);
+        awaitIdle();
+    }
+    
+    @Test
+    void breakerOpensAfterConsecutiveFailures() {
+        client = client(0);
+        replies = n -> Reply.error(500);
+        
+        assertThat(client.complete(request())).isEmpty();
+        assertThat(client.complete(request())).isEmpty();
+        assertThat(breakerState()).isEqualTo(OpenAIClient.State.OPEN.ordinal());
+        
+        assertThat(client.complete(request())).isEmpty();
+        assertThat(requests.get()).isEqualTo(2);
+        assertThat(fallbacks("open")).isEqualTo(1.0);
+    }
+    
+    @Test
+    void halfOpenProbeClosesTheBreakerOnSuccess() throws Exception {
+        client = client(0);
+        replies = n -> Reply.error(500);
+        client.complete(request());
+        client.complete(request());
+        assertThat(breakerState()).isEqualTo(OpenAIClient.State.OPEN.ordinal());
+        
+        Thread.sleep(OPEN_MS + 50);
+        replies = n -> Reply.ok(0, "recovered");
+        
+        assertThat(client.complete(request())).contains("recovered");
+        assertThat(requests.get()).isEqualTo(3);
+        assertThat(breakerState()).isEqualTo(OpenAIClient.State.CLOSED.ordinal());
+    }
+    
+    @Test
+    void failedHalfOpenProbeReopensTheBreaker() throws Exception {
+        client = client(0);
+        replies = n -> Reply.error(500);
+        client.complete(request());
+        client.complete(request());
+        
+        Thread.sleep(OPEN_MS + 50);
+        
+        assertThat(client.complete(request())).isEmpty();
+        assertThat(requests.get()).isEqualTo(3);
+        assertThat(breakerState()).isEqualTo(OpenAIClient.State.OPEN.ordinal());
+        assertThat(client.complete(request())).isEmpty();
+        assertThat(requests.get()).isEqualTo(3);
+    }
+    
+    @Test
+    void hedgeAnswersForASlowFirstRequestAndTheLoserIsCancelled() throws Exception {
+        client = client(100);
+        replies = n -> n == 1 ? Reply.ok(5_000, "slow") : Reply.ok(0, "hedged");
+        
+        long start = System.nanoTime();
+        Optional<String> result = client.complete(request());
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        
+        assertThat(result).contains("hedged");
+        assertThat(elapsedMs).isLessThan(BUDGET_MS);
+        assertThat(requests.get()).isEqualTo(2);
+        assertThat(meterRegistry.get("openai.hedges").counter().count()).isEqualTo(1.0);
+        awaitIdle();
+    }
+    
+    private OpenAIClient client(long hedgeAfterMillis) {
+        meterRegistry = new SimpleMeterRegistry();
+        return new OpenAIClient(meterRegistry, "test-key",
+            "http://127.0.0.1:" + server.getAddress().getPort() + "/",
+            BUDGET_MS, hedgeAfterMillis, 2, OPEN_MS, 4);
+    }
+    
+    private ChatCompletionRequest request() {
+        return ChatCompletionRequest.builder()
+            .model("gpt-3.5-turbo")
+            .messages(List.of(new ChatMessage("user", "Summarize my spending")))
+            .build();
+    }
+    
+    // Attempts left behind by a settled call must stop well before the fake
+    // provider's slow reply would have arrived.
+    private void awaitIdle() throws InterruptedException {
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) ReflectionTestUtils.getField(client, "executor");
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1_000);
+        while (executor.getActiveCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(executor.getActiveCount()).isZero();
+    }
+    
+    private double breakerState() {
+        return meterRegistry.get("openai.breaker.state").gauge().value();
+    }
+    
+    private double fallbacks(String reason) {
+        return meterRegistry.get("openai.insights").tag("result", "fallback").tag("reason", reason).counter().count();
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        Reply reply = replies.apply(requests.incrementAndGet());
+        try {
+            exchange.getRequestBody().readAllBytes();
+            if (reply.delayMillis() > 0) {
+                Thread.sleep(reply.delayMillis());
+            }
+            byte[] body = reply.body().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(reply.status(), body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+    
+    private record Reply(int status, long delayMillis, String body) {
+        
+        static Reply ok(long delayMillis, String content) {
+            return new Reply(200, delayMillis, String.format(COMPLETION, content));
+        }
+        
+        static Reply error(int status) {
+            return new Reply(status, 0, ERROR);
+        }
+    }
+}
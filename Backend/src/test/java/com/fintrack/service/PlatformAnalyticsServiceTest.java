@@ -0,0 +1,104 @@
+package com.fintrack.service;
+
+import com.fintrack.repository.ExpenseRepository;
+import com.fintrack.repository.ShardRouter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PlatformAnalyticsServiceTest {
+    
+    private static final int PARALLELISM = 3;
+    private static final LocalDate START = LocalDate.of(2026, 1, 1);
+    private static final LocalDate END = LocalDate.of(2026, 6, 30);
+    
+    private PlatformAnalyticsService service;
+    private ExpenseRepository expenseRepository;
+    
+    @BeforeEach
+    void setUp() {
+        expenseRepository = mock(ExpenseRepository.class);
+        when(expenseRepository.getUserIdBounds()).thenReturn(List.<Object[]>of(new Object[] {1L, 4_000L}));
+        when(expenseRepository.getPlatformActiveUsers(anyLong(), anyLong(), any(), any())).thenReturn(List.of());
+        when(expenseRepository.getPlatformAmountBuckets(anyLong(), anyLong(), any(), any(), anyDouble()))
+            .thenReturn(List.of());
+        
+        ShardRouter shardRouter = mock(ShardRouter.class);
+        when(shardRouter.shardCount()).thenReturn(1);
+        when(shardRouter.callOn(anyInt(), any())).thenAnswer(invocation ->
+            ((Supplier<?>) invocation.getArgument(1)).get());
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(1)).run();
+            return null;
+        }).when(shardRouter).runOn(anyInt(), any(Runnable.class));
+        
+        ExchangeRateService exchangeRateService = mock(ExchangeRateService.class);
+        when(exchangeRateService.baseCurrency(any())).thenReturn(ExchangeRateService.DEFAULT_CURRENCY);
+        when(exchangeRateService.getSnapshot()).thenReturn(new RateSnapshot("test", ExchangeRateService.DEFAULT_CURRENCY,
+            Map.of(ExchangeRateService.DEFAULT_CURRENCY, BigDecimal.ONE)));
+        
+        service = new PlatformAnalyticsService();
+        ReflectionTestUtils.setField(service, "parallelism", PARALLELISM);
+        ReflectionTestUtils.setField(service, "usersPerTask", 100L);
+        ReflectionTestUtils.setField(service, "timeoutSeconds", 60L);
+        ReflectionTestUtils.setField(service, "relativeAccuracy", 0.01);
+        ReflectionTestUtils.setField(service, "expenseRepository", expenseRepository);
+        ReflectionTestUtils.setField(service, "shardRouter", shardRouter);
+        ReflectionTestUtils.setField(service, "exchangeRateService", exchangeRateService);
+        service.init();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+    
+    @Test
+    void blockingQueriesNeverNeedMoreThreadsThanTheParallelism() throws Exception {
+        ForkJoinPool pool = (ForkJoinPool) ReflectionTestUtils.getField(service, "pool");
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peakQueries = new AtomicInteger();
+        AtomicInteger peakThreads = new AtomicInteger();
+        when(expenseRepository.getPlatformMonthlyTotals(anyLong(), anyLong(), any(), any())).thenAnswer(invocation -> {
+            peakQueries.accumulateAndGet(running.incrementAndGet(), Math::max);
+            peakThreads.accumulateAndGet(pool.getPoolSize(), Math::max);
+            Thread.sleep(20);
+            running.decrementAndGet();
+            return List.of();
+        });
+        
+        // Two reports at once share the pool and its cap.
+        CompletableFuture<Map<String, Object>> first =
+            service.analyze(null, START, END, (done, total) -> { }, new AtomicBoolean());
+        CompletableFuture<Map<String, Object>> second =
+            service.analyze(null, START, END, (done, total) -> { }, new AtomicBoolean());
+        Map<String, Object> result = first.get(30, TimeUnit.SECONDS);
+        second.get(30, TimeUnit.SECONDS);
+        
+        assertThat(result).containsEntry("complete", true);
+        assertThat(((Map<?, ?>) result.get("ranges")).get("total")).isEqualTo(40);
+        assertThat(peakQueries.get()).isLessThanOrEqualTo(PARALLELISM);
+        assertThat(peakThreads.get()).isLessThanOrEqualTo(PARALLELISM);
+    }
+}
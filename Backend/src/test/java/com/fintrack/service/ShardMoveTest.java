@@ -0,0 +1,241 @@
+package com.fintrack.service;
+
+import com.fintrack.model.ShardAssignment;
+import com.fintrack.repository.ShardDataSources;
+import com.fintrack.repository.ShardFenceRepository;
+import com.fintrack.repository.ShardRouter;
+import com.fintrack.repository.ShardSchemaInitializer;
+import com.fintrack.repository.ShardingConfig;
+import com.fintrack.repository.UserMovingException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Moves users between two shards (two databases in one MySQL container) while
+ * writes are in flight or still routed by another instance's cached assignment,
+ * and checks that no write is lost on, or lands on, the shard the user left.
+ */
+@DataJpaTest(properties = {
+    "spring.flyway.locations=filesystem:db/migration",
+    "spring.jpa.hibernate.ddl-auto=none",
+    "fintrack.migrations.location=filesystem:db/migration"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ShardingConfig.class, ShardRouter.class, ShardSchemaInitializer.class, ShardRebalanceService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Testcontainers
+class ShardMoveTest {
+    
+    private static final AtomicLong USER_IDS = new AtomicLong(100);
+    
+    @Container
+    static MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.0").withUsername("root");
+    
+    @DynamicPropertySource
+    static void shards(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", mysql::getJdbcUrl);
+        registry.add("spring.datasource.username", mysql::getUsername);
+        registry.add("spring.datasource.password", mysql::getPassword);
+        registry.add("fintrack.shard.urls", () -> "jdbc:mysql://" + mysql.getHost() + ":" + mysql.getMappedPort(3306)
+            + "/shard1?createDatabaseIfNotExist=true");
+    }
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Autowired
+    private ShardRebalanceService shardRebalanceService;
+    
+    @Autowired
+    private ShardDataSources shardDataSources;
+    
+    @Autowired
+    private ShardFenceRepository shardFenceRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    private TransactionTemplate transaction;
+    private ExecutorService pool;
+    
+    @BeforeEach
+    void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+        pool = Executors.newFixedThreadPool(2);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+    
+    @Test
+    void moveWaitsForAWriteInFlightAndCarriesIt() throws Exception {
+        long userId = createUser();
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        
+        Future<?> write = pool.submit(() -> write(shardRouter, userId, "in flight", () -> {
+            written.countDown();
+            await(release);
+        }));
+        assertThat(written.await(10, TimeUnit.SECONDS)).isTrue();
+        
+        Future<Integer> move = pool.submit(() -> shardRebalanceService.moveUser(userId, 1));
+        Thread.sleep(500);
+        assertThat(move.isDone()).isFalse();
+        
+        release.countDown();
+        write.get(10, TimeUnit.SECONDS);
+        assertThat(move.get(30, TimeUnit.SECONDS)).isPositive();
+        
+        assertThat(expenses(0, userId)).isZero();
+        assertThat(expenses(1, userId)).isEqualTo(1);
+        assertThat(shardRouter.shardFor(userId)).isEqualTo(1);
+    }
+    
+    @Test
+    void staleRouteIsRefusedOnTheOldShardAndRefreshed() {
+        long userId = createUser();
+        ShardRouter otherInstance = otherInstance(60_000);
+        assertThat(otherInstance.shardFor(userId)).isZero();
+        
+        shardRebalanceService.moveUser(userId, 1);
+        
+        assertThat(otherInstance.shardFor(userId)).isZero();
+        assertThatThrownBy(() -> write(otherInstance, userId, "stale", () -> { }))
+            .isInstanceOf(UserMovingException.class);
+        assertThat(expenses(0, userId)).isZero();
+        
+        assertThat(otherInstance.shardFor(userId)).isEqualTo(1);
+        write(otherInstance, userId, "after refresh", () -> { });
+        assertThat(expenses(1, userId)).isEqualTo(1);
+    }
+    
+    @Test
+    void cachedAssignmentExpires() throws Exception {
+        long userId = createUser();
+        ShardRouter otherInstance = otherInstance(100);
+        assertThat(otherInstance.shardFor(userId)).isZero();
+        
+        shardRebalanceService.moveUser(userId, 1);
+        Thread.sleep(200);
+        
+        assertThat(otherInstance.shardFor(userId)).isEqualTo(1);
+    }
+    
+    @Test
+    void lookupAfterTheUsersShardIsBoundStillReadsTheDirectory() {
+        long userId = createUser();
+        shardRebalanceService.moveUser(userId, 1);
+        ShardRouter otherInstance = otherInstance(100);
+        
+        // One unit of work, as a request would be: a read binds shard 1's
+        // connection, then the cached assignment expires and a create looks it up
+        // again from there.
+        otherInstance.runForUser(userId, () -> transaction.executeWithoutResult(status -> {
+            jdbcTemplate.queryForObject("SELECT COUNT(*) FROM expenses WHERE user_id = ?", Integer.class, userId);
+            sleep(200);
+            assertThat(otherInstance.shardFor(userId)).isEqualTo(1);
+            write(otherInstance, userId, "after expiry", () -> { });
+        }));
+        
+        assertThat(otherInstance.shardFor(userId)).isEqualTo(1);
+        assertThat(expenses(0, userId)).isZero();
+        assertThat(expenses(1, userId)).isEqualTo(1);
+    }
+    
+    @Test
+    void movingBackReopensTheFirstShard() {
+        long userId = createUser();
+        write(shardRouter, userId, "first", () -> { });
+        
+        shardRebalanceService.moveUser(userId, 1);
+        shardRebalanceService.moveUser(userId, 0);
+        write(shardRouter, userId, "second", () -> { });
+        
+        assertThat(expenses(0, userId)).isEqualTo(2);
+        assertThat(expenses(1, userId)).isZero();
+    }
+    
+    private long createUser() {
+        long userId = USER_IDS.incrementAndGet();
+        new JdbcTemplate(shardDataSources.get(ShardRouter.DIRECTORY_SHARD)).update(
+            "INSERT INTO users (id, username, email, password, role) VALUES (?, ?, ?, 'x', 'USER')",
+            userId, "user" + userId, "user" + userId + "@example.com");
+        shardRouter.assign(userId, ShardRouter.DIRECTORY_SHARD, ShardAssignment.Status.ACTIVE);
+        return userId;
+    }
+    
+    // One fenced write transaction on the shard the given router picks; beforeCommit
+    // runs after the row is written.
+    private void write(ShardRouter router, long userId, String title, Runnable beforeCommit) {
+        router.runForUser(userId, () -> transaction.executeWithoutResult(status -> {
+            router.lockForWrite(userId);
+            jdbcTemplate.update("INSERT INTO expenses (user_id, title, amount, category, expense_date, payment_method) " +
+                "VALUES (?, ?, 10.00, 'FOOD', CURDATE(), 'CASH')", userId, title);
+            beforeCommit.run();
+        }));
+    }
+    
+    private int expenses(int shard, long userId) {
+        return new JdbcTemplate(shardDataSources.get(shard)).queryForObject(
+            "SELECT COUNT(*) FROM expenses WHERE user_id = ?", Integer.class, userId);
+    }
+    
+    // Another app instance: same databases, its own assignment cache.
+    private ShardRouter otherInstance(long assignmentTtlMillis) {
+        ShardRouter router = new ShardRouter();
+        ReflectionTestUtils.setField(router, "virtualNodes", 128);
+        ReflectionTestUtils.setField(router, "assignmentTtlMillis", assignmentTtlMillis);
+        ReflectionTestUtils.setField(router, "shardDataSources", shardDataSources);
+        ReflectionTestUtils.setField(router, "shardFenceRepository", shardFenceRepository);
+        router.init();
+        return router;
+    }
+    
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.fintrack.service;
+
+import com.fintrack.model.Expense;
+import com.fintrack.model.User;
+import com.fintrack.repository.ExpenseSyncStateRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SpendingDistributionServiceTest {
+    
+    private static final LocalDate START = LocalDate.of(2026, 1, 1);
+    private static final LocalDate END = LocalDate.of(2026, 1, 31);
+    
+    private final SyntheticExpenses data = new SyntheticExpenses(41);
+    private SpendingDistributionService service;
+    private ExpenseService expenseService;
+    private ExpenseSyncStateRepository syncStateRepository;
+    private ExecutorService pool;
+    
+    @BeforeEach
+    void setUp() {
+        expenseService = mock(ExpenseService.class);
+        syncStateRepository = mock(ExpenseSyncStateRepository.class);
+        ExchangeRateService exchangeRateService = mock(ExchangeRateService.class);
+        when(exchangeRateService.baseCurrency(any())).thenReturn(ExchangeRateService.DEFAULT_CURRENCY);
+        when(exchangeRateService.getSnapshot()).thenReturn(new RateSnapshot("test", ExchangeRateService.DEFAULT_CURRENCY,
+            Map.of(ExchangeRateService.DEFAULT_CURRENCY, BigDecimal.ONE)));
+        
+        service = new SpendingDistributionService();
+        ReflectionTestUtils.setField(service, "relativeAccuracy", 0.01);
+        ReflectionTestUtils.setField(service, "idleEvictionMinutes", 30L);
+        ReflectionTestUtils.setField(service, "expenseService", expenseService);
+        ReflectionTestUtils.setField(service, "exchangeRateService", exchangeRateService);
+        ReflectionTestUtils.setField(service, "syncStateRepository", syncStateRepository);
+        ReflectionTestUtils.setField(service, "transactionManager", mock(PlatformTransactionManager.class));
+        service.init();
+        pool = Executors.newFixedThreadPool(3);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+    
+    @Test
+    void slowBuildBlocksNoOneAndReplaysOnlyNewerChanges() throws Exception {
+        User slow = data.user(1);
+        User other = data.user(2);
+        List<Expense> rows = data.expenses(slow, 40, START);
+        when(syncStateRepository.getLastVersion(slow.getId())).thenReturn(40L);
+        when(expenseService.getAllExpenses(other)).thenReturn(data.expenses(other, 10, START));
+        
+        CountDownLatch building = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(expenseService.getAllExpenses(slow)).thenAnswer(invocation -> {
+            building.countDown();
+            release.await(30, TimeUnit.SECONDS);
+            return rows;
+        });
+        
+        Future<Map<String, Object>> first = pool.submit(() -> service.getDistribution(slow, START, END));
+        assertThat(building.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<Map<String, Object>> second = pool.submit(() -> service.getDistribution(slow, START, END));
+        
+        // Other users and change events do not wait for the build.
+        Future<Map<String, Object>> unrelated = pool.submit(() -> service.getDistribution(other, START, END));
+        assertThat(count(unrelated.get(5, TimeUnit.SECONDS))).isEqualTo(10);
+        service.onExpenseChange(created(rows.get(39), 40));
+        service.onExpenseChange(created(expense(slow, 41), 41));
+        
+        release.countDown();
+        assertThat(count(first.get(5, TimeUnit.SECONDS))).isEqualTo(41);
+        assertThat(count(second.get(5, TimeUnit.SECONDS))).isEqualTo(41);
+        verify(expenseService, times(1)).getAllExpenses(slow);
+        
+        service.onExpenseChange(created(expense(slow, 42), 42));
+        assertThat(count(service.getDistribution(slow, START, END))).isEqualTo(42);
+    }
+    
+    @Test
+    void changeDeliveredAfterABuildThatSawItIsNotCountedTwice() {
+        User user = data.user(4);
+        List<Expense> rows = data.expenses(user, 20, START);
+        when(syncStateRepository.getLastVersion(user.getId())).thenReturn(20L);
+        when(expenseService.getAllExpenses(user)).thenReturn(rows);
+        
+        assertThat(count(service.getDistribution(user, START, END))).isEqualTo(20);
+        
+        // Committed before the build's snapshot; its listener runs only now.
+        service.onExpenseChange(created(rows.get(19), 20));
+        assertThat(count(service.getDistribution(user, START, END))).isEqualTo(20);
+        
+        // Listeners for later commits may run out of order; each applies once.
+        service.onExpenseChange(created(expense(user, 22), 22));
+        service.onExpenseChange(created(expense(user, 21), 21));
+        service.onExpenseChange(created(expense(user, 22), 22));
+        assertThat(count(service.getDistribution(user, START, END))).isEqualTo(22);
+    }
+    
+    @Test
+    void categorySummaryCarriesTotalsAndQuantiles() {
+        User user = data.user(3);
+        List<Expense> rows = data.expenses(user, 30, START);
+        when(expenseService.getAllExpenses(user)).thenReturn(rows);
+        Expense.Category category = rows.get(0).getCategory();
+        when(expenseService.getCategoryWiseExpenses(user, START, END))
+            .thenReturn(Map.of(category.name(), new BigDecimal("123.45")));
+        
+        Map<String, Object> summary = service.getCategorySummary(user, START, END);
+        
+        @SuppressWarnings("unchecked")
+        Map<String, Object> entry = (Map<String, Object>) summary.get(category.name());
+        assertThat(entry).containsEntry("total", new BigDecimal("123.45"))
+            .containsKeys("count", "median", "p90", "p99");
+        assertThat((Long) entry.get("count")).isEqualTo(rows.stream().filter(e -> e.getCategory() == category).count());
+    }
+    
+    private Expense expense(User user, long id) {
+        Expense expense = data.expenses(user, 1, START.plusDays(20)).get(0);
+        expense.setId(id);
+        return expense;
+    }
+    
+    private static ExpenseChangeEvent created(Expense expense, long version) {
+        return new ExpenseChangeEvent(ExpenseChangeEvent.Type.CREATED, expense.getUser(), expense, null, version);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static long count(Map<String, Object> distribution) {
+        return (Long) ((Map<String, Object>) distribution.get("overall")).get("count");
+    }
+}
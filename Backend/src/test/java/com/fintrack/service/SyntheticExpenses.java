@@ -0,0 +1,135 @@
+package com.fintrack.service;
+
+import com.fintrack.model.Expense;
+import com.fintrack.model.User;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic expense data for tests and benchmarks. Each category
+ * has its own title words, vendors, amount range and usual payment method,
+ * every user has their own mix of categories, and some titles carry words from
+ * another category or lack a vendor, so the data is learnable but not
+ * trivially separable.
+ */
+public final class SyntheticExpenses {
+    
+    private static final Map<Expense.Category, Profile> PROFILES = new EnumMap<>(Expense.Category.class);
+    private static final String[] NOISE = {"misc", "payment", "monthly", "weekly", "order", "bill", "new", "online"};
+    
+    static {
+        profile(Expense.Category.FOOD, 80, 3_000, new String[] {"lunch", "dinner", "groceries", "coffee", "snacks", "pizza"},
+            new String[] {"Swiggy", "Zomato", "BigBasket", "Starbucks", "Dominos"}, Expense.PaymentMethod.DIGITAL_WALLET);
+        profile(Expense.Category.TRANSPORTATION, 30, 1_500, new String[] {"cab", "metro", "fuel", "parking", "auto", "toll"},
+            new String[] {"Uber", "Ola", "Indian Oil", "Metro Rail"}, Expense.PaymentMethod.DIGITAL_WALLET);
+        profile(Expense.Category.UTILITIES, 300, 6_000, new String[] {"electricity", "water", "internet", "gas", "mobile"},
+            new String[] {"Tata Power", "Airtel", "Jio", "BESCOM"}, Expense.PaymentMethod.BANK_TRANSFER);
+        profile(Expense.Category.ENTERTAINMENT, 150, 2_500, new String[] {"movie", "concert", "streaming", "game", "tickets"},
+            new String[] {"PVR", "Netflix", "BookMyShow", "Spotify"}, Expense.PaymentMethod.CREDIT_CARD);
+        profile(Expense.Category.HEALTHCARE, 200, 20_000, new String[] {"pharmacy", "doctor", "checkup", "medicines", "dental"},
+            new String[] {"Apollo", "1mg", "Practo", "Medplus"}, Expense.PaymentMethod.DEBIT_CARD);
+        profile(Expense.Category.SHOPPING, 400, 15_000, new String[] {"clothes", "shoes", "electronics", "gift", "headphones"},
+            new String[] {"Amazon", "Flipkart", "Myntra", "Croma"}, Expense.PaymentMethod.CREDIT_CARD);
+        profile(Expense.Category.EDUCATION, 500, 40_000, new String[] {"course", "books", "tuition", "exam", "fees"},
+            new String[] {"Coursera", "Udemy", "Byjus", "Crossword"}, Expense.PaymentMethod.BANK_TRANSFER);
+        profile(Expense.Category.TRAVEL, 2_000, 60_000, new String[] {"flight", "hotel", "train", "holiday", "visa"},
+            new String[] {"MakeMyTrip", "IRCTC", "Indigo", "Airbnb"}, Expense.PaymentMethod.CREDIT_CARD);
+        profile(Expense.Category.HOUSING, 8_000, 60_000, new String[] {"rent", "maintenance", "repairs", "furniture"},
+            new String[] {"NoBroker", "Urban Company", "Society Office"}, Expense.PaymentMethod.BANK_TRANSFER);
+        profile(Expense.Category.INSURANCE, 1_000, 30_000, new String[] {"premium", "insurance", "policy", "renewal"},
+            new String[] {"LIC", "HDFC Ergo", "Star Health"}, Expense.PaymentMethod.BANK_TRANSFER);
+        profile(Expense.Category.SAVINGS, 1_000, 50_000, new String[] {"sip", "deposit", "savings", "mutual fund"},
+            new String[] {"Zerodha", "Groww", "SBI"}, Expense.PaymentMethod.BANK_TRANSFER);
+        profile(Expense.Category.OTHER, 50, 5_000, new String[] {"donation", "fine", "charges", "fee", "cash"},
+            new String[] {"Post Office", "Bank"}, Expense.PaymentMethod.CASH);
+    }
+    
+    private final Random random;
+    
+    public SyntheticExpenses(long seed) {
+        this.random = new Random(seed);
+    }
+    
+    public User user(long id) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername("user" + id);
+        user.setEmail("user" + id + "@example.com");
+        return user;
+    }
+    
+    // count expenses for one user, oldest first, one or two a day from start.
+    public List<Expense> expenses(User user, int count, LocalDate start) {
+        Expense.Category[] categories = Expense.Category.values();
+        double[] weights = new double[categories.length];
+        for (int c = 0; c < weights.length; c++) {
+            weights[c] = 0.2 + random.nextDouble();
+        }
+        
+        List<Expense> expenses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Expense.Category category = categories[pick(weights)];
+            Profile profile = PROFILES.get(category);
+            Expense expense = new Expense();
+            expense.setId(user.getId() * 1_000_000L + i);
+            expense.setUser(user);
+            expense.setCategory(category);
+            expense.setTitle(title(category));
+            expense.setVendor(random.nextDouble() < 0.8 ? profile.vendors[random.nextInt(profile.vendors.length)] : null);
+            expense.setAmount(BigDecimal.valueOf(profile.minAmount + random.nextDouble() * (profile.maxAmount - profile.minAmount))
+                .setScale(2, RoundingMode.HALF_UP));
+            expense.setCurrency(ExchangeRateService.DEFAULT_CURRENCY);
+            expense.setPaymentMethod(random.nextDouble() < 0.7
+                ? profile.paymentMethod
+                : Expense.PaymentMethod.values()[random.nextInt(Expense.PaymentMethod.values().length)]);
+            expense.setExpenseDate(start.plusDays(i / 2));
+            expense.setSyncVersion((long) i + 1);
+            expenses.add(expense);
+        }
+        return expenses;
+    }
+    
+    private String title(Expense.Category category) {
+        Profile profile = PROFILES.get(category);
+        StringBuilder title = new StringBuilder(profile.words[random.nextInt(profile.words.length)]);
+        if (random.nextDouble() < 0.15) {
+            Profile other = PROFILES.get(Expense.Category.values()[random.nextInt(Expense.Category.values().length)]);
+            title.append(' ').append(other.words[random.nextInt(other.words.length)]);
+        }
+        if (random.nextDouble() < 0.5) {
+            title.append(' ').append(NOISE[random.nextInt(NOISE.length)]);
+        }
+        return title.toString();
+    }
+    
+    private int pick(double[] weights) {
+        double total = 0;
+        for (double weight : weights) {
+            total += weight;
+        }
+        double r = random.nextDouble() * total;
+        for (int i = 0; i < weights.length; i++) {
+            r -= weights[i];
+            if (r < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+    
+    private static void profile(Expense.Category category, int minAmount, int maxAmount, String[] words, String[] vendors,
+                                Expense.PaymentMethod paymentMethod) {
+        PROFILES.put(category, new Profile(minAmount, maxAmount, words, vendors, paymentMethod));
+    }
+    
+    private record Profile(int minAmount, int maxAmount, String[] words, String[] vendors,
+                           Expense.PaymentMethod paymentMethod) {
+    }
+}
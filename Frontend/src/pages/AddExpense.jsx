@@ -1,16 +1,21 @@
-import React, { useState } from 'react'
+import React, { useState, useRef } from 'react'
 import { useNavigate } from 'react-router-dom'
 import { expenseAPI } from '../services/api'
+import { useSuggestions } from '../services/suggestions'
 import { ArrowLeftIcon } from '@heroicons/react/24/outline'
 import { format } from 'date-fns'
 
 const AddExpense = () => {
   const navigate = useNavigate()
   const [loading, setLoading] = useState(false)
+  const [suggestions, fetchSuggestions] = useSuggestions()
+  const [suggestedCategories, setSuggestedCategories] = useState([])
+  const categoryRequest = useRef(0)
   const [formData, setFormData] = useState({
     title: '',
     description: '',
     amount: '',
+    currency: JSON.parse(localStorage.getItem('user') || '{}').baseCurrency || 'INR',
     category: 'FOOD',
     expenseDate: format(new Date(), 'yyyy-MM-dd'),
     paymentMethod: 'CASH',
@@ -32,6 +37,8 @@ const AddExpense = () => {
     'OTHER',
   ]
 
+  const currencies = ['INR', 'USD', 'EUR', 'GBP', 'AED', 'SGD']
+
   const paymentMethods = [
     'CASH',
     'CREDIT_CARD',
@@ -43,20 +50,65 @@ const AddExpense = () => {
 
   const handleChange = (e) => {
     const { name, value } = e.target
-    setFormData({ ...formData, [name]: value })
+    const next = { ...formData, [name]: value }
+    setFormData(next)
+    if (name === 'title' || name === 'vendor') {
+      fetchSuggestions(name, value)
+    }
+    if (['title', 'vendor', 'paymentMethod', 'amount'].includes(name)) {
+      fetchCategorySuggestions(next)
+    }
+  }
+
+  // Ranked by a local model on the server; the top three are offered as chips.
+  const fetchCategorySuggestions = async (data) => {
+    const request = ++categoryRequest.current
+    if (!data.title && !data.vendor) {
+      setSuggestedCategories([])
+      return
+    }
+    try {
+      const response = await expenseAPI.suggestCategory({
+        title: data.title,
+        vendor: data.vendor,
+        paymentMethod: data.paymentMethod,
+        amount: data.amount || undefined,
+        currency: data.currency,
+      })
+      if (request === categoryRequest.current) {
+        setSuggestedCategories(response.data.slice(0, 3))
+      }
+    } catch (error) {
+      console.error('Error fetching category suggestions:', error)
+    }
   }
 
   const handleSubmit = async (e) => {
     e.preventDefault()
     setLoading(true)
 
+    const expense = { ...formData, amount: parseFloat(formData.amount) }
     try {
-      await expenseAPI.create({
-        ...formData,
-        amount: parseFloat(formData.amount),
-      })
+      await expenseAPI.create(expense, { onDuplicate: 'SKIP' })
       navigate('/expenses')
     } catch (error) {
+      // The server found a matching expense; save only if the user confirms.
+      if (error.response?.status === 409) {
+        if (
+          window.confirm(
+            'A matching expense with the same amount and payee already exists around this date. Save anyway?'
+          )
+        ) {
+          try {
+            await expenseAPI.create(expense, { onDuplicate: 'ALLOW' })
+            navigate('/expenses')
+          } catch (retryError) {
+            console.error('Error creating expense:', retryError)
+            alert('Failed to create expense')
+          }
+        }
+        return
+      }
       console.error('Error creating expense:', error)
       alert('Failed to create expense')
     } finally {
@@ -91,9 +143,16 @@ const AddExpense = () => {
               required
               className="input-field"
               placeholder="e.g., Grocery shopping"
+              list="title-suggestions"
+              autoComplete="off"
               value={formData.title}
               onChange={handleChange}
             />
+            <datalist id="title-suggestions">
+              {suggestions.title.map((s) => (
+                <option key={s} value={s} />
+              ))}
+            </datalist>
           </div>
 
           <div>
@@ -114,20 +173,35 @@ const AddExpense = () => {
           <div className="grid grid-cols-1 md:grid-cols-2 gap-6">
             <div>
               <label htmlFor="amount" className="label">
-                Amount (₹) *
+                Amount *
               </label>
-              <input
-                type="number"
-                id="amount"
-                name="amount"
-                required
-                min="0.01"
-                step="0.01"
-                className="input-field"
-                placeholder="0.00"
-                value={formData.amount}
-                onChange={handleChange}
-              />
+              <div className="flex gap-2">
+                <select
+                  id="currency"
+                  name="currency"
+                  className="input-field w-28"
+                  value={formData.currency}
+                  onChange={handleChange}
+                >
+                  {currencies.map((currency) => (
+                    <option key={currency} value={currency}>
+                      {currency}
+                    </option>
+                  ))}
+                </select>
+                <input
+                  type="number"
+                  id="amount"
+                  name="amount"
+                  required
+                  min="0.01"
+                  step="0.01"
+                  className="input-field"
+                  placeholder="0.00"
+                  value={formData.amount}
+                  onChange={handleChange}
+                />
+              </div>
             </div>
 
             <div>
@@ -165,6 +239,24 @@ const AddExpense = () => {
                   </option>
                 ))}
               </select>
+              {suggestedCategories.length > 0 && (
+                <div className="flex flex-wrap gap-2 mt-2">
+                  {suggestedCategories.map((cat) => (
+                    <button
+                      key={cat}
+                      type="button"
+                      onClick={() => setFormData({ ...formData, category: cat })}
+                      className={`px-2 py-1 rounded text-xs font-medium ${
+                        formData.category === cat
+                          ? 'bg-primary-600 text-white'
+                          : 'bg-gray-100 text-gray-700 hover:bg-gray-200'
+                      }`}
+                    >
+                      {cat}
+                    </button>
+                  ))}
+                </div>
+              )}
             </div>
 
             <div>
@@ -198,9 +290,16 @@ const AddExpense = () => {
               name="vendor"
               className="input-field"
               placeholder="e.g., Walmart, Amazon"
+              list="vendor-suggestions"
+              autoComplete="off"
               value={formData.vendor}
               onChange={handleChange}
             />
+            <datalist id="vendor-suggestions">
+              {suggestions.vendor.map((s) => (
+                <option key={s} value={s} />
+              ))}
+            </datalist>
           </div>
 
           <div className="flex gap-4">
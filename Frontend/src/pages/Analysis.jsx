@@ -192,6 +192,13 @@ const Analysis = () => {
               <p className="text-3xl font-bold text-gray-900">
                 ₹{parseFloat(analysis.averageExpense || 0).toFixed(2)}
               </p>
+              {analysis.distribution && analysis.distribution.overall.count > 0 && (
+                <p className="text-sm text-gray-500 mt-2">
+                  Median ₹{parseFloat(analysis.distribution.overall.median).toFixed(2)}
+                  {' · '}p90 ₹{parseFloat(analysis.distribution.overall.p90).toFixed(2)}
+                  {' · '}p99 ₹{parseFloat(analysis.distribution.overall.p99).toFixed(2)}
+                </p>
+              )}
             </div>
           </div>
 
@@ -274,6 +281,12 @@ const Analysis = () => {
                         <th className="px-6 py-3 text-right text-xs font-medium text-gray-500 uppercase tracking-wider">
                           Percentage
                         </th>
+                        <th className="px-6 py-3 text-right text-xs font-medium text-gray-500 uppercase tracking-wider">
+                          Median
+                        </th>
+                        <th className="px-6 py-3 text-right text-xs font-medium text-gray-500 uppercase tracking-wider">
+                          P90
+                        </th>
                       </tr>
                     </thead>
                     <tbody className="bg-white divide-y divide-gray-200">
@@ -284,6 +297,9 @@ const Analysis = () => {
                             (amount / analysis.totalExpenses) *
                             100
                           ).toFixed(1)
+                          const stats =
+                            analysis.distribution &&
+                            analysis.distribution.byCategory[category]
                           return (
                             <tr key={category}>
                               <td className="px-6 py-4 whitespace-nowrap text-sm font-medium text-gray-900">
@@ -295,6 +311,12 @@ const Analysis = () => {
                               <td className="px-6 py-4 whitespace-nowrap text-sm text-right text-gray-500">
                                 {percentage}%
                               </td>
+                              <td className="px-6 py-4 whitespace-nowrap text-sm text-right text-gray-500">
+                                {stats ? `₹${parseFloat(stats.median).toFixed(2)}` : '-'}
+                              </td>
+                              <td className="px-6 py-4 whitespace-nowrap text-sm text-right text-gray-500">
+                                {stats ? `₹${parseFloat(stats.p90).toFixed(2)}` : '-'}
+                              </td>
                             </tr>
                           )
                         })}
@@ -1,6 +1,7 @@
 import React, { useState, useEffect } from 'react'
 import { Link } from 'react-router-dom'
 import { expenseAPI } from '../services/api'
+import { subscribeToExpenseChanges } from '../services/expenseStream'
 import {
   CurrencyRupeeIcon,
   PlusIcon,
@@ -13,22 +14,68 @@ const Dashboard = () => {
   const [expenses, setExpenses] = useState([])
   const [stats, setStats] = useState({ total: 0, count: 0 })
   const [categoryData, setCategoryData] = useState({})
+  const [forecast, setForecast] = useState(null)
   const [loading, setLoading] = useState(true)
 
   useEffect(() => {
     fetchDashboardData()
+    return subscribeToExpenseChanges(applyChange)
   }, [])
 
+  // Patches the cards in place from a pushed change instead of refetching everything.
+  const applyChange = (change) => {
+    const currentMonth = format(new Date(), 'yyyy-MM')
+    const monthDeltas = change.deltas.filter((d) => d.month === currentMonth)
+
+    // The server keeps the projection current on every write; reading it is cheap.
+    if (monthDeltas.length > 0) {
+      fetchForecast()
+    }
+
+    if (change.monthTotals[currentMonth] !== undefined) {
+      setStats((prev) => ({
+        total: Number(change.monthTotals[currentMonth]),
+        count: prev.count + monthDeltas.reduce((sum, d) => sum + d.count, 0),
+      }))
+    }
+
+    if (monthDeltas.length > 0) {
+      setCategoryData((prev) => {
+        const next = { ...prev }
+        monthDeltas.forEach((d) => {
+          const amount = Number(next[d.category] || 0) + Number(d.amount)
+          if (amount > 0.005) {
+            next[d.category] = amount
+          } else {
+            delete next[d.category]
+          }
+        })
+        return next
+      })
+    }
+
+    setExpenses((prev) => {
+      const rest = prev.filter((e) => e.id !== change.expenseId)
+      if (change.expense && change.expense.expenseDate.startsWith(currentMonth)) {
+        rest.push(change.expense)
+      }
+      return rest
+        .sort((a, b) => b.expenseDate.localeCompare(a.expenseDate))
+        .slice(0, 5)
+    })
+  }
+
   const fetchDashboardData = async () => {
     try {
       const currentDate = new Date()
       const startDate = format(startOfMonth(currentDate), 'yyyy-MM-dd')
       const endDate = format(endOfMonth(currentDate), 'yyyy-MM-dd')
 
-      const [expensesRes, totalRes, categoryRes] = await Promise.all([
+      const [expensesRes, totalRes, categoryRes, forecastRes] = await Promise.all([
         expenseAPI.getByDateRange(startDate, endDate),
         expenseAPI.getTotalByDateRange(startDate, endDate),
         expenseAPI.getCategorySummary(startDate, endDate),
+        expenseAPI.getForecast(),
       ])
 
       setExpenses(expensesRes.data.slice(0, 5))
@@ -37,6 +84,7 @@ const Dashboard = () => {
         count: expensesRes.data.length,
       })
       setCategoryData(categoryRes.data)
+      setForecast(forecastRes.data)
     } catch (error) {
       console.error('Error fetching dashboard data:', error)
     } finally {
@@ -44,6 +92,15 @@ const Dashboard = () => {
     }
   }
 
+  const fetchForecast = async () => {
+    try {
+      const response = await expenseAPI.getForecast()
+      setForecast(response.data)
+    } catch (error) {
+      console.error('Error fetching forecast:', error)
+    }
+  }
+
   if (loading) {
     return (
       <div className="flex justify-center items-center h-64">
@@ -89,6 +146,11 @@ const Dashboard = () => {
                 Total This Month
               </p>
               <p className="text-3xl font-bold">₹{stats.total.toFixed(2)}</p>
+              {forecast && (
+                <p className="text-sm text-primary-100 mt-1">
+                  Projected ₹{parseFloat(forecast.forecast).toFixed(2)} by month end
+                </p>
+              )}
             </div>
           </div>
         </div>
@@ -131,17 +193,20 @@ const Dashboard = () => {
           </h2>
           <div className="space-y-3">
             {Object.entries(categoryData)
-              .sort(([, a], [, b]) => b - a)
-              .map(([category, amount]) => {
-                const percentage = ((amount / stats.total) * 100).toFixed(1)
+              .sort(([, a], [, b]) => b.total - a.total)
+              .map(([category, summary]) => {
+                const percentage = ((summary.total / stats.total) * 100).toFixed(1)
                 return (
                   <div key={category}>
                     <div className="flex justify-between text-sm mb-1">
                       <span className="font-medium text-gray-700">
                         {category}
+                        <span className="ml-2 text-xs font-normal text-gray-500">
+                          median ₹{Number(summary.median).toFixed(2)} · p90 ₹{Number(summary.p90).toFixed(2)}
+                        </span>
                       </span>
                       <span className="text-gray-900 font-semibold">
-                        ₹{amount.toFixed(2)} ({percentage}%)
+                        ₹{Number(summary.total).toFixed(2)} ({percentage}%)
                       </span>
                     </div>
                     <div className="w-full bg-gray-200 rounded-full h-2">
@@ -1,7 +1,12 @@
 import React, { useState, useEffect } from 'react'
 import { useNavigate, useParams } from 'react-router-dom'
-import { expenseAPI } from '../services/api'
-import { ArrowLeftIcon } from '@heroicons/react/24/outline'
+import { expenseAPI, receiptAPI } from '../services/api'
+import { useSuggestions } from '../services/suggestions'
+import {
+  ArrowLeftIcon,
+  PaperClipIcon,
+  TrashIcon,
+} from '@heroicons/react/24/outline'
 import { format } from 'date-fns'
 
 const EditExpense = () => {
@@ -9,10 +14,14 @@ const EditExpense = () => {
   const navigate = useNavigate()
   const [loading, setLoading] = useState(false)
   const [fetchLoading, setFetchLoading] = useState(true)
+  const [receipts, setReceipts] = useState([])
+  const [uploading, setUploading] = useState(false)
+  const [suggestions, fetchSuggestions] = useSuggestions()
   const [formData, setFormData] = useState({
     title: '',
     description: '',
     amount: '',
+    currency: JSON.parse(localStorage.getItem('user') || '{}').baseCurrency || 'INR',
     category: 'FOOD',
     expenseDate: format(new Date(), 'yyyy-MM-dd'),
     paymentMethod: 'CASH',
@@ -34,6 +43,8 @@ const EditExpense = () => {
     'OTHER',
   ]
 
+  const currencies = ['INR', 'USD', 'EUR', 'GBP', 'AED', 'SGD']
+
   const paymentMethods = [
     'CASH',
     'CREDIT_CARD',
@@ -45,8 +56,58 @@ const EditExpense = () => {
 
   useEffect(() => {
     fetchExpense()
+    fetchReceipts()
   }, [id])
 
+  const fetchReceipts = async () => {
+    try {
+      const response = await receiptAPI.getAll(id)
+      setReceipts(response.data)
+    } catch (error) {
+      console.error('Error fetching receipts:', error)
+    }
+  }
+
+  const handleReceiptUpload = async (e) => {
+    const file = e.target.files[0]
+    if (!file) return
+    setUploading(true)
+    try {
+      await receiptAPI.upload(id, file)
+      fetchReceipts()
+    } catch (error) {
+      console.error('Error uploading receipt:', error)
+      alert(error.response?.data?.error || 'Failed to upload receipt')
+    } finally {
+      setUploading(false)
+      e.target.value = ''
+    }
+  }
+
+  const handleReceiptOpen = async (receiptId) => {
+    try {
+      const response = await receiptAPI.download(id, receiptId)
+      const url = URL.createObjectURL(response.data)
+      window.open(url, '_blank')
+      setTimeout(() => URL.revokeObjectURL(url), 60000)
+    } catch (error) {
+      console.error('Error downloading receipt:', error)
+      alert('Failed to open receipt')
+    }
+  }
+
+  const handleReceiptDelete = async (receiptId) => {
+    if (window.confirm('Remove this receipt?')) {
+      try {
+        await receiptAPI.delete(id, receiptId)
+        fetchReceipts()
+      } catch (error) {
+        console.error('Error deleting receipt:', error)
+        alert('Failed to delete receipt')
+      }
+    }
+  }
+
   const fetchExpense = async () => {
     try {
       const response = await expenseAPI.getById(id)
@@ -55,6 +116,7 @@ const EditExpense = () => {
         title: expense.title,
         description: expense.description || '',
         amount: expense.amount.toString(),
+        currency: expense.currency || 'INR',
         category: expense.category,
         expenseDate: expense.expenseDate,
         paymentMethod: expense.paymentMethod,
@@ -72,6 +134,9 @@ const EditExpense = () => {
   const handleChange = (e) => {
     const { name, value } = e.target
     setFormData({ ...formData, [name]: value })
+    if (name === 'title' || name === 'vendor') {
+      fetchSuggestions(name, value)
+    }
   }
 
   const handleSubmit = async (e) => {
@@ -125,9 +190,16 @@ const EditExpense = () => {
               required
               className="input-field"
               placeholder="e.g., Grocery shopping"
+              list="title-suggestions"
+              autoComplete="off"
               value={formData.title}
               onChange={handleChange}
             />
+            <datalist id="title-suggestions">
+              {suggestions.title.map((s) => (
+                <option key={s} value={s} />
+              ))}
+            </datalist>
           </div>
 
           <div>
@@ -148,20 +220,35 @@ const EditExpense = () => {
           <div className="grid grid-cols-1 md:grid-cols-2 gap-6">
             <div>
               <label htmlFor="amount" className="label">
-                Amount (₹) *
+                Amount *
               </label>
-              <input
-                type="number"
-                id="amount"
-                name="amount"
-                required
-                min="0.01"
-                step="0.01"
-                className="input-field"
-                placeholder="0.00"
-                value={formData.amount}
-                onChange={handleChange}
-              />
+              <div className="flex gap-2">
+                <select
+                  id="currency"
+                  name="currency"
+                  className="input-field w-28"
+                  value={formData.currency}
+                  onChange={handleChange}
+                >
+                  {currencies.map((currency) => (
+                    <option key={currency} value={currency}>
+                      {currency}
+                    </option>
+                  ))}
+                </select>
+                <input
+                  type="number"
+                  id="amount"
+                  name="amount"
+                  required
+                  min="0.01"
+                  step="0.01"
+                  className="input-field"
+                  placeholder="0.00"
+                  value={formData.amount}
+                  onChange={handleChange}
+                />
+              </div>
             </div>
 
             <div>
@@ -232,9 +319,16 @@ const EditExpense = () => {
               name="vendor"
               className="input-field"
               placeholder="e.g., Walmart, Amazon"
+              list="vendor-suggestions"
+              autoComplete="off"
               value={formData.vendor}
               onChange={handleChange}
             />
+            <datalist id="vendor-suggestions">
+              {suggestions.vendor.map((s) => (
+                <option key={s} value={s} />
+              ))}
+            </datalist>
           </div>
 
           <div className="flex gap-4">
@@ -255,6 +349,56 @@ const EditExpense = () => {
           </div>
         </form>
       </div>
+
+      <div className="card mt-6">
+        <div className="flex justify-between items-center mb-4">
+          <h2 className="text-xl font-bold text-gray-900">Receipts</h2>
+          <label className="btn-secondary flex items-center cursor-pointer">
+            <PaperClipIcon className="h-5 w-5 mr-2" />
+            {uploading ? 'Uploading...' : 'Attach'}
+            <input
+              type="file"
+              accept="image/*,application/pdf"
+              className="hidden"
+              disabled={uploading}
+              onChange={handleReceiptUpload}
+            />
+          </label>
+        </div>
+
+        {receipts.length > 0 ? (
+          <ul className="divide-y divide-gray-200">
+            {receipts.map((receipt) => (
+              <li
+                key={receipt.id}
+                className="flex justify-between items-center py-3"
+              >
+                <button
+                  type="button"
+                  onClick={() => handleReceiptOpen(receipt.id)}
+                  className="text-primary-600 hover:text-primary-800 text-sm font-medium"
+                >
+                  {receipt.fileName || `Receipt #${receipt.id}`}
+                </button>
+                <div className="flex items-center">
+                  <span className="text-xs text-gray-500 mr-4">
+                    {(receipt.size / 1024).toFixed(1)} KB
+                  </span>
+                  <button
+                    type="button"
+                    onClick={() => handleReceiptDelete(receipt.id)}
+                    className="text-red-600 hover:text-red-900"
+                  >
+                    <TrashIcon className="h-5 w-5" />
+                  </button>
+                </div>
+              </li>
+            ))}
+          </ul>
+        ) : (
+          <p className="text-sm text-gray-500">No receipts attached</p>
+        )}
+      </div>
     </div>
   )
 }
@@ -1,6 +1,7 @@
-import React, { useState, useEffect } from 'react'
+import React, { useState, useEffect, useRef } from 'react'
 import { Link } from 'react-router-dom'
 import { expenseAPI } from '../services/api'
+import { subscribeToExpenseChanges } from '../services/expenseStream'
 import {
   PlusIcon,
   PencilIcon,
@@ -9,29 +10,43 @@ import {
 } from '@heroicons/react/24/outline'
 import { format } from 'date-fns'
 
+const LIST_FIELDS =
+  'title,description,amount,currency,category,expenseDate,paymentMethod,archived'
+
 const Expenses = () => {
   const [expenses, setExpenses] = useState([])
-  const [filteredExpenses, setFilteredExpenses] = useState([])
   const [loading, setLoading] = useState(true)
   const [filter, setFilter] = useState('ALL')
+  const filterRef = useRef(filter)
 
   useEffect(() => {
-    fetchExpenses()
+    return subscribeToExpenseChanges((change) => {
+      const current = filterRef.current
+      setExpenses((prev) => {
+        const rest = prev.filter((e) => e.id !== change.expenseId)
+        if (change.expense && (current === 'ALL' || change.expense.category === current)) {
+          rest.push(change.expense)
+          rest.sort((a, b) => b.expenseDate.localeCompare(a.expenseDate))
+        }
+        return rest
+      })
+    })
   }, [])
 
   useEffect(() => {
-    if (filter === 'ALL') {
-      setFilteredExpenses(expenses)
-    } else {
-      setFilteredExpenses(expenses.filter((e) => e.category === filter))
-    }
-  }, [filter, expenses])
+    filterRef.current = filter
+    fetchExpenses()
+  }, [filter])
 
+  // Filtering happens on the server; only the matching rows, and only the
+  // columns this list shows, are downloaded.
   const fetchExpenses = async () => {
     try {
-      const response = await expenseAPI.getAll()
+      const response = await expenseAPI.search({
+        ...(filter === 'ALL' ? {} : { categories: filter }),
+        fields: LIST_FIELDS,
+      })
       setExpenses(response.data)
-      setFilteredExpenses(response.data)
     } catch (error) {
       console.error('Error fetching expenses:', error)
     } finally {
@@ -110,7 +125,7 @@ const Expenses = () => {
 
       {/* Expenses List */}
       <div className="card">
-        {filteredExpenses.length > 0 ? (
+        {expenses.length > 0 ? (
           <div className="overflow-x-auto">
             <table className="min-w-full divide-y divide-gray-200">
               <thead className="bg-gray-50">
@@ -136,7 +151,7 @@ const Expenses = () => {
                 </tr>
               </thead>
               <tbody className="bg-white divide-y divide-gray-200">
-                {filteredExpenses.map((expense) => (
+                {expenses.map((expense) => (
                   <tr key={expense.id} className="hover:bg-gray-50">
                     <td className="px-6 py-4 whitespace-nowrap">
                       <div>
@@ -156,7 +171,10 @@ const Expenses = () => {
                       </span>
                     </td>
                     <td className="px-6 py-4 whitespace-nowrap text-sm font-semibold text-gray-900">
-                      ₹{expense.amount.toFixed(2)}
+                      {expense.currency && expense.currency !== 'INR'
+                        ? `${expense.currency} `
+                        : '₹'}
+                      {expense.amount.toFixed(2)}
                     </td>
                     <td className="px-6 py-4 whitespace-nowrap text-sm text-gray-500">
                       {format(new Date(expense.expenseDate), 'MMM dd, yyyy')}
@@ -165,18 +183,24 @@ const Expenses = () => {
                       {expense.paymentMethod}
                     </td>
                     <td className="px-6 py-4 whitespace-nowrap text-right text-sm font-medium">
-                      <Link
-                        to={`/expenses/edit/${expense.id}`}
-                        className="text-primary-600 hover:text-primary-900 mr-4"
-                      >
-                        <PencilIcon className="h-5 w-5 inline" />
-                      </Link>
-                      <button
-                        onClick={() => handleDelete(expense.id)}
-                        className="text-red-600 hover:text-red-900"
-                      >
-                        <TrashIcon className="h-5 w-5 inline" />
-                      </button>
+                      {expense.archived ? (
+                        <span className="text-xs text-gray-400">Archived</span>
+                      ) : (
+                        <>
+                          <Link
+                            to={`/expenses/edit/${expense.id}`}
+                            className="text-primary-600 hover:text-primary-900 mr-4"
+                          >
+                            <PencilIcon className="h-5 w-5 inline" />
+                          </Link>
+                          <button
+                            onClick={() => handleDelete(expense.id)}
+                            className="text-red-600 hover:text-red-900"
+                          >
+                            <TrashIcon className="h-5 w-5 inline" />
+                          </button>
+                        </>
+                      )}
                     </td>
                   </tr>
                 ))}
@@ -31,7 +31,9 @@ export const authAPI = {
 export const expenseAPI = {
   getAll: () => api.get('/expenses'),
   getById: (id) => api.get(`/expenses/${id}`),
-  create: (data) => api.post('/expenses', data),
+  create: (data, params) => api.post('/expenses', data, { params }),
+  import: (expenses, onDuplicate) =>
+    api.post('/expenses/import', { expenses }, { params: { onDuplicate } }),
   update: (id, data) => api.put(`/expenses/${id}`, data),
   delete: (id) => api.delete(`/expenses/${id}`),
   getByDateRange: (startDate, endDate) =>
@@ -42,6 +44,30 @@ export const expenseAPI = {
     api.get('/expenses/total/date-range', { params: { startDate, endDate } }),
   getCategorySummary: (startDate, endDate) =>
     api.get('/expenses/category-summary', { params: { startDate, endDate } }),
+  getForecast: () => api.get('/expenses/forecast'),
+  getDistribution: (startDate, endDate) =>
+    api.get('/expenses/distribution', { params: { startDate, endDate } }),
+  search: (params) => api.get('/expenses/search', { params }),
+  autocomplete: (field, prefix) =>
+    api.get('/expenses/autocomplete', { params: { field, prefix } }),
+  suggestCategory: (params) => api.get('/expenses/suggest-category', { params }),
+  sync: (cursor, limit) => api.get('/expenses/sync', { params: { cursor, limit } }),
+}
+
+// Receipt APIs
+export const receiptAPI = {
+  getAll: (expenseId) => api.get(`/expenses/${expenseId}/receipts`),
+  upload: (expenseId, file) =>
+    api.post(`/expenses/${expenseId}/receipts`, file, {
+      params: { fileName: file.name },
+      headers: { 'Content-Type': file.type || 'application/octet-stream' },
+    }),
+  download: (expenseId, receiptId) =>
+    api.get(`/expenses/${expenseId}/receipts/${receiptId}`, {
+      responseType: 'blob',
+    }),
+  delete: (expenseId, receiptId) =>
+    api.delete(`/expenses/${expenseId}/receipts/${receiptId}`),
 }
 
 // Analysis APIs
@@ -0,0 +1,62 @@
+const STREAM_URL = 'http://localhost:8080/api/expenses/stream'
+
+// EventSource cannot send an Authorization header, so the stream is read with
+// fetch and parsed here. Reconnects with backoff until stopped.
+export const subscribeToExpenseChanges = (onChange) => {
+  let controller = null
+  let stopped = false
+  let retryDelay = 1000
+
+  const connect = async () => {
+    const token = localStorage.getItem('token')
+    if (!token || stopped) return
+
+    controller = new AbortController()
+    try {
+      const response = await fetch(STREAM_URL, {
+        headers: { Authorization: `Bearer ${token}` },
+        signal: controller.signal,
+      })
+      if (!response.ok || !response.body) throw new Error(response.status)
+
+      retryDelay = 1000
+      const reader = response.body.getReader()
+      const decoder = new TextDecoder()
+      let buffer = ''
+
+      while (true) {
+        const { value, done } = await reader.read()
+        if (done) break
+        buffer += decoder.decode(value, { stream: true })
+
+        let boundary
+        while ((boundary = buffer.indexOf('\n\n')) >= 0) {
+          const chunk = buffer.slice(0, boundary)
+          buffer = buffer.slice(boundary + 2)
+
+          let event = 'message'
+          let data = ''
+          chunk.split('\n').forEach((line) => {
+            if (line.startsWith('event:')) event = line.slice(6).trim()
+            else if (line.startsWith('data:')) data += line.slice(5).trim()
+          })
+          if (event === 'expense' && data) onChange(JSON.parse(data))
+        }
+      }
+    } catch (error) {
+      if (stopped) return
+    }
+
+    if (!stopped) {
+      setTimeout(connect, retryDelay)
+      retryDelay = Math.min(retryDelay * 2, 30000)
+    }
+  }
+
+  connect()
+
+  return () => {
+    stopped = true
+    if (controller) controller.abort()
+  }
+}
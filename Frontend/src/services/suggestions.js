@@ -0,0 +1,23 @@
+import { useRef, useState } from 'react'
+import { expenseAPI } from './api'
+
+// Vendor/title suggestions, fetched on every keystroke. Responses that arrive
+// after the user has typed further are dropped.
+export const useSuggestions = () => {
+  const [suggestions, setSuggestions] = useState({ title: [], vendor: [] })
+  const latest = useRef({})
+
+  const fetchSuggestions = async (field, prefix) => {
+    latest.current[field] = prefix
+    try {
+      const response = await expenseAPI.autocomplete(field, prefix)
+      if (latest.current[field] === prefix) {
+        setSuggestions((prev) => ({ ...prev, [field]: response.data }))
+      }
+    } catch (error) {
+      console.error('Error fetching suggestions:', error)
+    }
+  }
+
+  return [suggestions, fetchSuggestions]
+}